@@ -0,0 +1,14 @@
+-- 流程历史归档表（workflow.history.archive.enabled=true 时服务启动会自动创建）
+CREATE TABLE IF NOT EXISTS `WF_HISTORY_ARCHIVE`
+(
+    `PROC_INST_ID_` VARCHAR(64)  NOT NULL COMMENT '流程实例ID',
+    `PROC_DEF_ID_`  VARCHAR(64)           DEFAULT NULL COMMENT '流程定义ID',
+    `BUSINESS_KEY_` VARCHAR(255)          DEFAULT NULL COMMENT '业务主键',
+    `END_TIME_`     DATETIME(3)           DEFAULT NULL COMMENT '流程结束时间',
+    `EVENT_COUNT_`  INT          NOT NULL COMMENT '时间线记录条数',
+    `PAYLOAD_`      LONGBLOB     NOT NULL COMMENT '完整时间线（gzip 压缩的 JSON）',
+    `ARCHIVE_TIME_` DATETIME(3)  NOT NULL COMMENT '归档时间',
+    PRIMARY KEY (`PROC_INST_ID_`),
+    KEY `IDX_WF_ARCHIVE_END_TIME` (`END_TIME_`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='流程历史归档';
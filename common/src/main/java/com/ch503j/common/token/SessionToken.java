@@ -0,0 +1,17 @@
+package com.ch503j.common.token;
+
+/**
+ * 会话令牌中携带的身份信息
+ *
+ * @param id        用户主键
+ * @param userId    用户id（游客为空）
+ * @param role      账号角色
+ * @param status    账号状态
+ * @param expiresAt 过期时间（epoch 秒）
+ */
+public record SessionToken(long id, String userId, String role, int status, long expiresAt) {
+
+    public boolean isExpired(long nowSeconds) {
+        return expiresAt <= nowSeconds;
+    }
+}
@@ -0,0 +1,228 @@
+package com.ch503j.common.token;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * 无状态会话令牌的签发与校验（HMAC-SHA256）
+ * <p>
+ * 令牌格式：{@code kid.payload.signature}，payload 为紧凑二进制的 base64url，签名覆盖 {@code kid.payload}。
+ * 支持多把密钥轮换：签发只用当前密钥，校验按 kid 选择密钥，旧密钥保留到旧令牌全部过期即可下线。
+ * <p>
+ * 各服务只需配置相同的密钥即可本地校验身份，不需要调用用户服务或查库。
+ * 校验路径不做字符串切分，Mac 按线程复用，签名比较为常量时间。
+ */
+public final class SessionTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int MAC_LENGTH = 32;
+
+    private static final byte VERSION = 1;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String[] kids;
+
+    private final SecretKeySpec[] keys;
+
+    private final int activeIndex;
+
+    /**
+     * 每个线程按密钥下标缓存已初始化的 Mac
+     */
+    private final ThreadLocal<Mac[]> macs;
+
+    /**
+     * 每个线程复用的签名输出缓冲
+     */
+    private final ThreadLocal<byte[]> macBuffer = ThreadLocal.withInitial(() -> new byte[MAC_LENGTH]);
+
+    /**
+     * @param activeKid 当前签发使用的密钥 id
+     * @param keys      密钥 id -> 密钥（至少 32 字节）
+     */
+    public SessionTokenCodec(String activeKid, Map<String, byte[]> keys) {
+        if (keys == null || !keys.containsKey(activeKid)) {
+            throw new IllegalArgumentException("会话令牌密钥未配置：" + activeKid);
+        }
+        this.kids = new String[keys.size()];
+        this.keys = new SecretKeySpec[keys.size()];
+        int index = 0;
+        int active = -1;
+        for (Map.Entry<String, byte[]> entry : keys.entrySet()) {
+            if (entry.getKey().isEmpty() || entry.getKey().indexOf('.') >= 0) {
+                throw new IllegalArgumentException("密钥 id 不能为空或包含 '.'：" + entry.getKey());
+            }
+            if (entry.getValue() == null || entry.getValue().length < 32) {
+                throw new IllegalArgumentException("会话令牌密钥长度至少 32 字节：" + entry.getKey());
+            }
+            this.kids[index] = entry.getKey();
+            this.keys[index] = new SecretKeySpec(entry.getValue(), ALGORITHM);
+            if (entry.getKey().equals(activeKid)) {
+                active = index;
+            }
+            index++;
+        }
+        this.activeIndex = active;
+        this.macs = ThreadLocal.withInitial(() -> new Mac[this.keys.length]);
+    }
+
+    /**
+     * 签发令牌
+     */
+    public String issue(SessionToken token) {
+        byte[] userId = token.userId() == null ? new byte[0] : token.userId().getBytes(StandardCharsets.UTF_8);
+        byte[] role = token.role() == null ? new byte[0] : token.role().getBytes(StandardCharsets.US_ASCII);
+        if (userId.length > 255 || role.length > 255) {
+            throw new IllegalArgumentException("userId 或 role 过长");
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + 1 + 1 + role.length + 1 + userId.length);
+        payload.put(VERSION)
+                .putLong(token.id())
+                .putLong(token.expiresAt())
+                .put((byte) token.status())
+                .put((byte) role.length).put(role)
+                .put((byte) userId.length).put(userId);
+
+        String signed = kids[activeIndex] + '.' + ENCODER.encodeToString(payload.array());
+        Mac mac = mac(activeIndex);
+        byte[] signature = mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII));
+        return signed + '.' + ENCODER.encodeToString(signature);
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @param token      令牌
+     * @param nowSeconds 当前时间（epoch 秒）
+     * @return 身份信息，签名错误、格式错误或已过期时返回 null
+     */
+    public SessionToken verify(String token, long nowSeconds) {
+        if (token == null) {
+            return null;
+        }
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+
+        int keyIndex = keyIndex(token, firstDot);
+        if (keyIndex < 0) {
+            return null;
+        }
+
+        // 逐字节计算 kid.payload 的签名（令牌只含 ASCII 字符），不创建中间字符串
+        Mac mac = mac(keyIndex);
+        for (int i = 0; i < secondDot; i++) {
+            mac.update((byte) token.charAt(i));
+        }
+        byte[] expected = macBuffer.get();
+        try {
+            mac.doFinal(expected, 0);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+        if (!signatureEquals(expected, token, secondDot + 1)) {
+            return null;
+        }
+
+        SessionToken sessionToken = decodePayload(token.substring(firstDot + 1, secondDot));
+        if (sessionToken == null || sessionToken.isExpired(nowSeconds)) {
+            return null;
+        }
+        return sessionToken;
+    }
+
+    private int keyIndex(String token, int kidLength) {
+        for (int i = 0; i < kids.length; i++) {
+            if (kids[i].length() == kidLength && token.regionMatches(0, kids[i], 0, kidLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private SessionToken decodePayload(String encoded) {
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(DECODER.decode(encoded));
+            if (payload.get() != VERSION) {
+                return null;
+            }
+            long id = payload.getLong();
+            long expiresAt = payload.getLong();
+            int status = payload.get();
+            byte[] role = new byte[payload.get() & 0xFF];
+            payload.get(role);
+            byte[] userId = new byte[payload.get() & 0xFF];
+            payload.get(userId);
+            return new SessionToken(id,
+                    userId.length == 0 ? null : new String(userId, StandardCharsets.UTF_8),
+                    role.length == 0 ? null : new String(role, StandardCharsets.US_ASCII),
+                    status,
+                    expiresAt);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 常量时间比较：直接按 base64url 字符解码签名并与期望值比较
+     */
+    private static boolean signatureEquals(byte[] expected, String token, int offset) {
+        // 32 字节不带填充的 base64url 为 43 个字符
+        if (token.length() - offset != 43) {
+            return false;
+        }
+        int diff = 0;
+        int buffer = 0;
+        int bits = 0;
+        int index = 0;
+        for (int i = offset; i < token.length(); i++) {
+            int value = base64UrlValue(token.charAt(i));
+            if (value < 0) {
+                return false;
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                diff |= expected[index++] ^ (byte) (buffer >> bits);
+            }
+        }
+        return index == MAC_LENGTH && diff == 0;
+    }
+
+    private static int base64UrlValue(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        if (c >= 'a' && c <= 'z') return c - 'a' + 26;
+        if (c >= '0' && c <= '9') return c - '0' + 52;
+        if (c == '-') return 62;
+        if (c == '_') return 63;
+        return -1;
+    }
+
+    private Mac mac(int keyIndex) {
+        Mac[] threadMacs = macs.get();
+        Mac mac = threadMacs[keyIndex];
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(keys[keyIndex]);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化 HMAC 失败", e);
+            }
+            threadMacs[keyIndex] = mac;
+        }
+        return mac;
+    }
+}
@@ -11,6 +11,19 @@ public class IdGenerator {
         return IdWorker.getId();
     }
 
+    /**
+     * 一次生成一批唯一 Long 类型 ID（批量导入时按批预先分配）
+     *
+     * @param count 数量
+     */
+    public static long[] nextIds(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = IdWorker.getId();
+        }
+        return ids;
+    }
+
     /**
      * 生成字符串类型 ID（可选）
      */
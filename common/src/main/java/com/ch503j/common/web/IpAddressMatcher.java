@@ -0,0 +1,263 @@
+package com.ch503j.common.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * IP 网段（CIDR）匹配，支持 IPv4、IPv6 以及 IPv4 映射地址（::ffff:a.b.c.d）
+ * <p>
+ * 所有地址统一按 128 位比较，IPv4 视为 ::ffff:a.b.c.d。
+ * 匹配时直接解析字符串区间，不创建中间对象。
+ */
+public final class IpAddressMatcher {
+
+    private static final long IPV4_MAPPED_HI = 0L;
+
+    private static final long IPV4_MAPPED_LO = 0x0000_ffff_0000_0000L;
+
+    /**
+     * 每个线程复用的解析结果：[0] 高 64 位，[1] 低 64 位
+     */
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final long[] networkHi;
+
+    private final long[] networkLo;
+
+    private final long[] maskHi;
+
+    private final long[] maskLo;
+
+    /**
+     * @param cidrs 网段列表，如 10.0.0.0/8、192.168.1.10、::1/128、fd00::/8
+     */
+    public IpAddressMatcher(Collection<String> cidrs) {
+        List<long[]> parsed = new ArrayList<>();
+        for (String cidr : cidrs) {
+            String value = cidr.trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            int slash = value.indexOf('/');
+            String address = slash < 0 ? value : value.substring(0, slash);
+            long[] ip = new long[2];
+            if (!parse(address, 0, address.length(), ip)) {
+                throw new IllegalArgumentException("无效的网段：" + cidr);
+            }
+            boolean v4 = address.indexOf(':') < 0;
+            int prefix = slash < 0 ? 128 : Integer.parseInt(value.substring(slash + 1));
+            if (v4 && slash >= 0) {
+                prefix += 96;
+            }
+            if (prefix < 0 || prefix > 128) {
+                throw new IllegalArgumentException("无效的网段前缀：" + cidr);
+            }
+            long mHi = prefix >= 64 ? -1L : (prefix == 0 ? 0L : -1L << (64 - prefix));
+            long mLo = prefix <= 64 ? 0L : (prefix == 128 ? -1L : -1L << (128 - prefix));
+            parsed.add(new long[]{ip[0] & mHi, ip[1] & mLo, mHi, mLo});
+        }
+        this.networkHi = new long[parsed.size()];
+        this.networkLo = new long[parsed.size()];
+        this.maskHi = new long[parsed.size()];
+        this.maskLo = new long[parsed.size()];
+        for (int i = 0; i < parsed.size(); i++) {
+            networkHi[i] = parsed.get(i)[0];
+            networkLo[i] = parsed.get(i)[1];
+            maskHi[i] = parsed.get(i)[2];
+            maskLo[i] = parsed.get(i)[3];
+        }
+    }
+
+    public boolean isEmpty() {
+        return networkHi.length == 0;
+    }
+
+    /**
+     * 判断字符串区间 [start, end) 表示的地址是否属于任一网段，无法解析的地址返回 false
+     */
+    public boolean matches(CharSequence s, int start, int end) {
+        if (networkHi.length == 0) {
+            return false;
+        }
+        long[] ip = SCRATCH.get();
+        if (!parse(s, start, end, ip)) {
+            return false;
+        }
+        for (int i = 0; i < networkHi.length; i++) {
+            if ((ip[0] & maskHi[i]) == networkHi[i] && (ip[1] & maskLo[i]) == networkLo[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(String ip) {
+        return ip != null && matches(ip, 0, ip.length());
+    }
+
+    /**
+     * 解析 IPv4 / IPv6 地址为 128 位（IPv4 映射为 ::ffff:a.b.c.d）
+     */
+    static boolean parse(CharSequence s, int start, int end, long[] out) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == ':') {
+                return parseIpv6(s, start, end, out);
+            }
+        }
+        long v4 = parseIpv4(s, start, end);
+        if (v4 < 0) {
+            return false;
+        }
+        out[0] = IPV4_MAPPED_HI;
+        out[1] = IPV4_MAPPED_LO | v4;
+        return true;
+    }
+
+    /**
+     * 解析点分十进制 IPv4，失败返回 -1
+     */
+    private static long parseIpv4(CharSequence s, int start, int end) {
+        long result = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i <= end; i++) {
+            char c = i == end ? '.' : s.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || value > 255 || octets == 4) {
+                    return -1;
+                }
+                result = (result << 8) | value;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? result : -1;
+    }
+
+    private static boolean parseIpv6(CharSequence s, int start, int end, long[] out) {
+        // 按 16 位分组解析，记录 "::" 出现的位置，最后补零展开
+        long hi = 0;
+        long lo = 0;
+        int count = 0;
+        int gap = -1;
+        long head0 = 0;
+        long head1 = 0;
+        int i = start;
+
+        if (s.charAt(i) == ':') {
+            if (i + 1 >= end || s.charAt(i + 1) != ':') {
+                return false;
+            }
+            gap = 0;
+            i += 2;
+        }
+
+        // 用两个 long 依次压入分组（最多 8 组），之后再根据 gap 移位
+        while (i < end) {
+            int j = i;
+            boolean dotted = false;
+            while (j < end && s.charAt(j) != ':') {
+                if (s.charAt(j) == '.') {
+                    dotted = true;
+                }
+                j++;
+            }
+            if (dotted) {
+                // 结尾的内嵌 IPv4 占两组
+                long v4 = j == end ? parseIpv4(s, i, j) : -1;
+                if (v4 < 0 || count > 6) {
+                    return false;
+                }
+                head0 = (head0 << 32) | (head1 >>> 32);
+                head1 = (head1 << 32) | v4;
+                count += 2;
+                i = j;
+                break;
+            }
+            if (j == i || j - i > 4 || count == 8) {
+                return false;
+            }
+            int value = 0;
+            for (int k = i; k < j; k++) {
+                int digit = Character.digit(s.charAt(k), 16);
+                if (digit < 0) {
+                    return false;
+                }
+                value = (value << 4) | digit;
+            }
+            head0 = (head0 << 16) | (head1 >>> 48);
+            head1 = (head1 << 16) | value;
+            count++;
+            i = j;
+            if (i < end) {
+                i++;
+                if (i < end && s.charAt(i) == ':') {
+                    if (gap >= 0) {
+                        return false;
+                    }
+                    gap = count;
+                    i++;
+                } else if (i == end) {
+                    return false;
+                }
+            }
+        }
+
+        if (gap < 0 ? count != 8 : count > 7) {
+            return false;
+        }
+
+        // head0/head1 中依次存放了 count 个分组（右对齐），"::" 之后的 count - gap 组需要放到最低位，之前的 gap 组放到最高位
+        int tail = gap < 0 ? count : count - gap;
+        int headGroups = count - tail;
+        long tailHi = tail > 4 ? (head0 & mask((tail - 4) * 16)) : 0;
+        long tailLo = tail >= 4 ? head1 : (head1 & mask(tail * 16));
+        // 取出前 headGroups 组
+        long headHi;
+        long headLo;
+        int shift = tail * 16;
+        if (shift >= 64) {
+            headLo = head0 >>> (shift - 64);
+            headHi = 0;
+        } else if (shift == 0) {
+            headLo = head1;
+            headHi = head0;
+        } else {
+            headLo = (head1 >>> shift) | (head0 << (64 - shift));
+            headHi = head0 >>> shift;
+        }
+        // head 组左对齐到 128 位最高位
+        int headShift = 128 - headGroups * 16;
+        if (headGroups == 0) {
+            hi = 0;
+            lo = 0;
+        } else if (headShift >= 64) {
+            hi = headLo << (headShift - 64);
+            lo = 0;
+        } else if (headShift == 0) {
+            hi = headHi;
+            lo = headLo;
+        } else {
+            hi = (headHi << headShift) | (headLo >>> (64 - headShift));
+            lo = headLo << headShift;
+        }
+        out[0] = hi | tailHi;
+        out[1] = lo | tailLo;
+        return true;
+    }
+
+    private static long mask(int bits) {
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+}
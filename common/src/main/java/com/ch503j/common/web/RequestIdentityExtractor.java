@@ -0,0 +1,168 @@
+package com.ch503j.common.web;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Collection;
+
+/**
+ * 从请求中解析客户端 IP 和 Cookie
+ * <p>
+ * - 配置了可信代理网段时：只有直连地址是可信代理才读取 X-Forwarded-For，从右往左跳过可信代理，
+ * 第一个不可信的地址即为客户端 IP，防止客户端伪造转发头；
+ * 未配置可信代理时 {@link #clientIp} 保持原有行为，取转发头中最左侧的地址（仅用于记录），
+ * 限流等安全判断使用 {@link #trustedClientIp}，此时直接取直连地址
+ * - 解析过程不使用正则和 split，只在返回结果时截取一次字符串
+ * - 同一请求内解析结果缓存在请求属性中
+ */
+public class RequestIdentityExtractor {
+
+    /**
+     * 客户端 IP 在请求属性中的 key
+     */
+    public static final String CLIENT_IP_ATTRIBUTE = RequestIdentityExtractor.class.getName() + ".clientIp";
+
+    /**
+     * 不可伪造的客户端 IP 在请求属性中的 key
+     */
+    public static final String TRUSTED_CLIENT_IP_ATTRIBUTE = RequestIdentityExtractor.class.getName() + ".trustedClientIp";
+
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private static final String[] LEGACY_HEADERS = {X_FORWARDED_FOR, "Proxy-Client-IP", "WL-Proxy-Client-IP"};
+
+    private final IpAddressMatcher trustedProxies;
+
+    /**
+     * @param trustedProxies 可信代理网段（IPv4/IPv6 CIDR），为空时不校验代理
+     */
+    public RequestIdentityExtractor(Collection<String> trustedProxies) {
+        this.trustedProxies = new IpAddressMatcher(trustedProxies);
+    }
+
+    /**
+     * 解析客户端 IP（同一请求只解析一次）
+     */
+    public String clientIp(HttpServletRequest request) {
+        Object cached = request.getAttribute(CLIENT_IP_ATTRIBUTE);
+        if (cached instanceof String ip) {
+            return ip;
+        }
+        String ip = trustedProxies.isEmpty() ? resolveLegacy(request) : resolveTrusted(request);
+        request.setAttribute(CLIENT_IP_ATTRIBUTE, ip);
+        return ip;
+    }
+
+    /**
+     * 解析客户端无法伪造的 IP（同一请求只解析一次），用于限流等安全相关的判断
+     * 只有直连地址是可信代理时才读取 X-Forwarded-For；未配置可信代理时直接使用直连地址，不读取任何转发头
+     */
+    public String trustedClientIp(HttpServletRequest request) {
+        Object cached = request.getAttribute(TRUSTED_CLIENT_IP_ATTRIBUTE);
+        if (cached instanceof String ip) {
+            return ip;
+        }
+        String ip = trustedProxies.isEmpty() ? request.getRemoteAddr() : resolveTrusted(request);
+        request.setAttribute(TRUSTED_CLIENT_IP_ATTRIBUTE, ip);
+        return ip;
+    }
+
+    /**
+     * 获取指定名称的 Cookie 值
+     */
+    public String cookie(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 未配置可信代理：依次检查转发头，取最左侧的地址
+     */
+    private String resolveLegacy(HttpServletRequest request) {
+        for (String header : LEGACY_HEADERS) {
+            String value = request.getHeader(header);
+            if (value == null) {
+                continue;
+            }
+            int end = value.indexOf(',');
+            String ip = trim(value, 0, end < 0 ? value.length() : end);
+            if (ip != null && !"unknown".equalsIgnoreCase(ip)) {
+                return ip;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 配置了可信代理：从右往左跳过可信代理地址
+     */
+    private String resolveTrusted(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!trustedProxies.matches(remoteAddr)) {
+            return remoteAddr;
+        }
+        String forwarded = request.getHeader(X_FORWARDED_FOR);
+        if (forwarded == null) {
+            return remoteAddr;
+        }
+
+        int end = forwarded.length();
+        int leftmostStart = -1;
+        int leftmostEnd = -1;
+        while (end > 0) {
+            int comma = forwarded.lastIndexOf(',', end - 1);
+            int start = comma + 1;
+
+            // 去掉首尾空白
+            int s = start;
+            int e = end;
+            while (s < e && forwarded.charAt(s) <= ' ') s++;
+            while (e > s && forwarded.charAt(e - 1) <= ' ') e--;
+
+            if (e > s && !forwarded.regionMatches(true, s, "unknown", 0, e - s)) {
+                // [IPv6]:port 或 IPv4:port 形式去掉端口再比较
+                int addrStart = s;
+                int addrEnd = e;
+                if (forwarded.charAt(s) == '[') {
+                    int bracket = forwarded.indexOf(']', s);
+                    if (bracket > s && bracket < e) {
+                        addrStart = s + 1;
+                        addrEnd = bracket;
+                    }
+                } else {
+                    // 只有一个冒号说明是 IPv4:port，多个冒号是未加括号的 IPv6
+                    int colon = forwarded.indexOf(':', s);
+                    if (colon >= 0 && colon < e && forwarded.lastIndexOf(':', e - 1) == colon) {
+                        addrEnd = colon;
+                    }
+                }
+                if (!trustedProxies.matches(forwarded, addrStart, addrEnd)) {
+                    return substring(forwarded, addrStart, addrEnd);
+                }
+                leftmostStart = addrStart;
+                leftmostEnd = addrEnd;
+            }
+            end = comma < 0 ? 0 : comma;
+        }
+        // 全部是可信代理，取最左侧的地址
+        return leftmostStart < 0 ? remoteAddr : substring(forwarded, leftmostStart, leftmostEnd);
+    }
+
+    private static String trim(String value, int start, int end) {
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        return start == end ? null : substring(value, start, end);
+    }
+
+    private static String substring(String value, int start, int end) {
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
+    }
+}
@@ -0,0 +1,14 @@
+package com.ch503j.imagewatermark.cache;
+
+/**
+ * 水印缓存键
+ *
+ * @param content  水印内容：文字为 "T:" + 像素上限 + ":" + 文字，图片为 "L:" + 像素上限 + ":" + 图片内容摘要
+ * @param fontName 字体（图片水印为 null）
+ * @param size     文字字号或图片水印绘制宽度（像素）
+ * @param rgb      文字颜色（图片水印为 0）
+ * @param angle    旋转角度
+ * @param opacity  透明度，千分比
+ */
+public record StampKey(String content, String fontName, int size, int rgb, int angle, int opacity) {
+}
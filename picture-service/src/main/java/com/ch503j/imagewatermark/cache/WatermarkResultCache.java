@@ -0,0 +1,400 @@
+package com.ch503j.imagewatermark.cache;
+
+import com.ch503j.imagewatermark.config.WatermarkProperties;
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.service.ImageInput;
+import com.ch503j.imagewatermark.service.support.ImageEncoder;
+import com.ch503j.imagewatermark.service.support.WatermarkRenderer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 水印结果缓存（内容寻址，落盘）
+ * <p>
+ * 缓存键为 SHA-256(原图内容 + 水印参数 + 影响输出的配置)，文件名为 "缓存键.格式"。
+ * 同一张图用相同参数重复处理（重新下载、重试）时直接返回缓存文件，跳过解码和编码。
+ * 索引在内存中按访问顺序维护（LRU），启动时扫描目录重建，按总字节数淘汰。
+ */
+@Slf4j
+@Component
+public class WatermarkResultCache {
+
+    private static final long MB = 1024L * 1024L;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    private Path dir;
+
+    /**
+     * 缓存键 -> 文件，按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /**
+     * 已淘汰、等待删除的文件
+     */
+    private final Deque<PendingDelete> pendingDeletes = new ArrayDeque<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        dir = Paths.get(watermarkProperties.getResultCache().getDir()).toAbsolutePath();
+        Files.createDirectories(dir);
+        load();
+    }
+
+    public boolean isEnabled() {
+        return watermarkProperties.getResultCache().isEnabled();
+    }
+
+    /**
+     * 计算缓存键：读一遍原图内容做摘要
+     *
+     * @param source    原图
+     * @param logoBytes 图片水印内容，可为 null
+     * @param options   水印参数
+     */
+    public String key(ImageInput source, byte[] logoBytes, WatermarkOptions options) throws IOException {
+        long start = System.nanoTime();
+        MessageDigest digest = sha256();
+        try (InputStream in = source.open()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update((byte) 0);
+        if (logoBytes != null) {
+            digest.update(sha256().digest(logoBytes));
+        }
+        digest.update((byte) 0);
+        digest.update(canonicalParameters(options).getBytes(StandardCharsets.UTF_8));
+        hashNanos.add(System.nanoTime() - start);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 查找缓存
+     *
+     * @return 缓存文件，未命中返回 null
+     */
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && !Files.exists(entry.path())) {
+                // 文件被外部删除
+                entries.remove(key);
+                bytes -= entry.size();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        bytesServed.add(entry.size());
+        return entry;
+    }
+
+    /**
+     * 开始写入缓存：先写临时文件，{@link Writer#commit()} 时原子重命名为正式文件
+     *
+     * @param key    缓存键
+     * @param format 输出格式
+     */
+    public Writer writer(String key, String format) throws IOException {
+        Path temp = dir.resolve(key + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        return new Writer(key, format, temp, Files.newOutputStream(temp));
+    }
+
+    private void commit(Writer writer) throws IOException {
+        long size = Files.size(writer.temp);
+        long capacity = watermarkProperties.getResultCache().getMaxMb() * MB;
+        // 单个文件超过容量时不缓存
+        if (size > capacity) {
+            Files.deleteIfExists(writer.temp);
+            return;
+        }
+        Path target = dir.resolve(writer.key + "." + writer.format);
+        Files.move(writer.temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writes.increment();
+
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(writer.key, new Entry(target, writer.format, size));
+            if (previous != null) {
+                bytes -= previous.size();
+            }
+            bytes += size;
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > capacity && iterator.hasNext()) {
+                Entry eldest = iterator.next().getValue();
+                iterator.remove();
+                bytes -= eldest.size();
+                evictions.increment();
+                evicted.add(eldest.path());
+            }
+        }
+        scheduleDelete(evicted);
+    }
+
+    /**
+     * 被淘汰的文件可能正在被发送（sendfile 在请求线程返回后才打开文件），延迟一段时间再删除
+     */
+    private void scheduleDelete(List<Path> evicted) {
+        long deleteAt = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(watermarkProperties.getResultCache().getDeleteDelaySeconds());
+        synchronized (pendingDeletes) {
+            for (Path path : evicted) {
+                pendingDeletes.addLast(new PendingDelete(path, deleteAt));
+            }
+        }
+        deletePending();
+    }
+
+    /**
+     * 删除已到期的淘汰文件；除了写入新结果时，也定时执行，没有新的写入时文件同样会被删除
+     */
+    @Scheduled(fixedDelayString = "${watermark.result-cache.delete-delay-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void deletePending() {
+        long now = System.currentTimeMillis();
+        List<Path> due = new ArrayList<>();
+        synchronized (pendingDeletes) {
+            while (!pendingDeletes.isEmpty() && pendingDeletes.peekFirst().deleteAt() <= now) {
+                due.add(pendingDeletes.pollFirst().path());
+            }
+        }
+        for (Path path : due) {
+            synchronized (this) {
+                // 淘汰后又被重新写入的文件不删除
+                if (entries.values().stream().anyMatch(entry -> entry.path().equals(path))) {
+                    continue;
+                }
+            }
+            deleteQuietly(path);
+        }
+    }
+
+    /**
+     * 启动时扫描缓存目录重建索引：清理残留的临时文件，按修改时间从旧到新加入（最旧的最先淘汰）
+     */
+    private void load() throws IOException {
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    deleteQuietly(path);
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && name.indexOf('.') == 64) {
+                    files.add(Map.entry(path, attributes));
+                }
+            }
+        }
+        files.sort(Comparator.comparing(file -> file.getValue().lastModifiedTime()));
+
+        List<Path> evicted = new ArrayList<>();
+        long capacity = watermarkProperties.getResultCache().getMaxMb() * MB;
+        synchronized (this) {
+            for (Map.Entry<Path, BasicFileAttributes> file : files) {
+                String name = file.getKey().getFileName().toString();
+                long size = file.getValue().size();
+                entries.put(name.substring(0, 64), new Entry(file.getKey(), name.substring(65), size));
+                bytes += size;
+            }
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > capacity && iterator.hasNext()) {
+                Entry eldest = iterator.next().getValue();
+                iterator.remove();
+                bytes -= eldest.size();
+                evicted.add(eldest.path());
+            }
+        }
+        evicted.forEach(WatermarkResultCache::deleteQuietly);
+        log.info("水印结果缓存目录 {}，已加载 {} 个文件，共 {} MB", dir, entries.size(), bytes / MB);
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("dir", dir == null ? null : dir.toString());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+        stats.put("capacityBytes", watermarkProperties.getResultCache().getMaxMb() * MB);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0D : (double) hitCount / total);
+        stats.put("writes", writes.sum());
+        stats.put("evictions", evictions.sum());
+        synchronized (pendingDeletes) {
+            stats.put("pendingDeletes", pendingDeletes.size());
+        }
+        stats.put("bytesServed", bytesServed.sum());
+        // 计算缓存键（读一遍原图）的平均耗时
+        stats.put("avgHashMicros", total == 0 ? 0 : hashNanos.sum() / total / 1000);
+        return stats;
+    }
+
+    /**
+     * 影响输出结果的全部参数，按固定顺序拼接
+     * 包括会改变渲染结果的配置：解码像素上限（降采样）、logo 解码上限、单个水印像素上限（缩小字号 / logo）、平铺水印个数上限
+     */
+    private String canonicalParameters(WatermarkOptions options) {
+        return "text=" + options.getText()
+                + ";font=" + options.getFontName()
+                + ";fontSize=" + options.getFontSize()
+                + ";color=" + options.getColor()
+                + ";opacity=" + options.getOpacity()
+                + ";angle=" + options.getAngle()
+                + ";position=" + options.getPosition()
+                + ";spacing=" + options.getSpacing()
+                + ";logoScale=" + options.getLogoScale()
+                + ";format=" + (options.getFormat() == null ? null : ImageEncoder.normalize(options.getFormat()))
+                + ";quality=" + (options.getQuality() != null ? options.getQuality() : watermarkProperties.getJpegQuality())
+                + ";maxPixels=" + watermarkProperties.getMaxPixels()
+                + ";logoMaxPixels=" + watermarkProperties.getLogoMaxPixels()
+                + ";stampMaxPixels=" + watermarkProperties.getStampMaxPixels()
+                + ";maxPlacements=" + WatermarkRenderer.MAX_PLACEMENTS;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除缓存文件失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 缓存文件
+     *
+     * @param path   文件路径
+     * @param format 输出格式
+     * @param size   文件大小
+     */
+    public record Entry(Path path, String format, long size) {
+
+        public String contentType() {
+            return ImageEncoder.contentType(format);
+        }
+    }
+
+    private record PendingDelete(Path path, long deleteAt) {
+    }
+
+    /**
+     * 缓存写入：与响应同时写入临时文件，成功后提交，失败时丢弃
+     */
+    public final class Writer extends FilterOutputStream {
+
+        private final String key;
+
+        private final String format;
+
+        private final Path temp;
+
+        private boolean closed;
+
+        private Writer(String key, String format, Path temp, OutputStream out) {
+            super(out);
+            this.key = key;
+            this.format = format;
+            this.temp = temp;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /**
+         * 写入完成，加入缓存
+         */
+        public void commit() throws IOException {
+            close();
+            WatermarkResultCache.this.commit(this);
+        }
+
+        /**
+         * 丢弃（处理失败或客户端断开）
+         */
+        public void abort() {
+            try {
+                close();
+            } catch (IOException ignored) {
+                // 临时文件随后删除
+            }
+            deleteQuietly(temp);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ch503j.imagewatermark.cache;
+
+import com.ch503j.imagewatermark.config.WatermarkProperties;
+import com.ch503j.imagewatermark.service.support.WatermarkStamp;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 水印栅格缓存
+ * <p>
+ * 同一批任务大多复用少量 logo 和文字，缓存按（内容、字体、尺寸、颜色、角度、透明度）保存渲染好的预乘 alpha 水印，
+ * 命中时直接合成，不再重复排版字体、旋转和缩放。按占用字节数做 LRU 淘汰。
+ */
+@Component
+public class WatermarkStampCache {
+
+    private static final long MB = 1024L * 1024L;
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    /**
+     * 按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<StampKey, WatermarkStamp> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+
+    /**
+     * 读取水印，未命中时渲染并放入缓存
+     *
+     * @param key    缓存键
+     * @param render 渲染水印
+     */
+    public WatermarkStamp getOrRender(StampKey key, Supplier<WatermarkStamp> render) {
+        if (watermarkProperties.isStampCacheEnabled()) {
+            synchronized (this) {
+                WatermarkStamp stamp = entries.get(key);
+                if (stamp != null) {
+                    hits.increment();
+                    return stamp;
+                }
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        WatermarkStamp stamp = render.get();
+        renderNanos.add(System.nanoTime() - start);
+
+        if (watermarkProperties.isStampCacheEnabled()) {
+            put(key, stamp);
+        }
+        return stamp;
+    }
+
+    private synchronized void put(StampKey key, WatermarkStamp stamp) {
+        long capacity = watermarkProperties.getStampCacheMb() * MB;
+        // 单个水印超过容量时不缓存
+        if (stamp.bytes() > capacity) {
+            return;
+        }
+        WatermarkStamp previous = entries.put(key, stamp);
+        if (previous != null) {
+            bytes -= previous.bytes();
+        }
+        bytes += stamp.bytes();
+
+        Iterator<Map.Entry<StampKey, WatermarkStamp>> iterator = entries.entrySet().iterator();
+        while (bytes > capacity && iterator.hasNext()) {
+            WatermarkStamp eldest = iterator.next().getValue();
+            iterator.remove();
+            bytes -= eldest.bytes();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", watermarkProperties.isStampCacheEnabled());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+        stats.put("capacityBytes", watermarkProperties.getStampCacheMb() * MB);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0D : (double) hitCount / total);
+        stats.put("evictions", evictions.sum());
+        // 未命中时渲染一个水印的平均耗时，即命中时节省的时间
+        stats.put("avgRenderMicros", missCount == 0 ? 0 : renderNanos.sum() / missCount / 1000);
+        return stats;
+    }
+}
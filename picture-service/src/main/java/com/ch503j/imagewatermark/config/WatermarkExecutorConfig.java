@@ -0,0 +1,46 @@
+package com.ch503j.imagewatermark.config;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 水印服务内部使用的线程池
+ */
+@Configuration
+public class WatermarkExecutorConfig {
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    /**
+     * 批量结果 ZIP 由 StreamingResponseBody 在这个线程池里写出，写出线程同时消费编码队列；
+     * 不能和 batchPipelineExecutor 共用，否则流水线线程可能全部被写出任务占住
+     */
+    @Primary
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * 批量任务的解码 / 编码线程
+     * 任务数由 watermark.batch.max-jobs 限制，线程数按所有任务同时运行所需配置；
+     * 前一个任务的线程可能在任务结束后稍晚才归还，队列按同样大小配置，避免新任务的线程被拒绝
+     */
+    @Bean(name = "batchPipelineExecutor")
+    public ThreadPoolTaskExecutor batchPipelineExecutor() {
+        WatermarkProperties.Batch batch = watermarkProperties.getBatch();
+        int threads = Math.max(1, batch.getMaxJobs() * (batch.getDecodeThreads() + batch.getEncodeThreads()));
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.setThreadNamePrefix("batch-pipeline-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ch503j.imagewatermark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 水印处理配置（watermark.*）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "watermark")
+public class WatermarkProperties {
+
+    /**
+     * 解码后图片的最大像素数，超出时按整数倍降采样解码
+     */
+    private long maxPixels = 25_000_000L;
+
+    /**
+     * 原图允许的最大像素数（防止解压炸弹），超出直接拒绝
+     */
+    private long maxSourcePixels = 400_000_000L;
+
+    /**
+     * 图片水印（logo）解码后的最大像素数，logo 只会被缩小绘制，不需要原尺寸
+     */
+    private long logoMaxPixels = 4_000_000L;
+
+    /**
+     * 渲染后单个水印（旋转后的文字或 logo）的最大像素数，超出时缩小字号 / logo；同时不超过目标图片的像素数
+     */
+    private long stampMaxPixels = 4_000_000L;
+
+    /**
+     * 文字水印的最大长度（字符数），超出返回 400
+     */
+    private int textMaxLength = 200;
+
+    /**
+     * 所有请求解码后图片占用内存的总预算（MB），超出预算的请求排队等待
+     */
+    private int memoryBudgetMb = 512;
+
+    /**
+     * 等待内存预算的超时时间（毫秒），超时返回 503
+     */
+    private long acquireTimeoutMs = 10_000L;
+
+    /**
+     * 图片水印（logo）文件的最大字节数，logo 需要整体读入以计算缓存键
+     */
+    private int logoMaxBytes = 10 * 1024 * 1024;
+
+    /**
+     * 是否缓存渲染好的水印
+     */
+    private boolean stampCacheEnabled = true;
+
+    /**
+     * 水印缓存容量（MB）
+     */
+    private long stampCacheMb = 64;
+
+    /**
+     * 水印合成的并行度，0 表示使用 CPU 核数
+     */
+    private int compositeParallelism = 0;
+
+    /**
+     * 图片像素数达到该值才并行合成，小图在请求线程上直接合成
+     */
+    private long parallelMinPixels = 1_000_000L;
+
+    /**
+     * JPEG 输出默认质量（0~1）
+     */
+    private float jpegQuality = 0.9f;
+
+    /**
+     * 批量处理配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 结果缓存配置
+     */
+    private ResultCache resultCache = new ResultCache();
+
+    @Data
+    public static class Batch {
+
+        /**
+         * 同时运行的批量任务数上限，超出返回 503
+         */
+        private int maxJobs = 2;
+
+        /**
+         * 单个批量任务的图片数上限
+         */
+        private int maxImages = 1000;
+
+        /**
+         * 每个任务的解码线程数
+         */
+        private int decodeThreads = 2;
+
+        /**
+         * 每个任务的加水印 / 编码线程数
+         */
+        private int encodeThreads = 2;
+
+        /**
+         * 阶段之间的队列容量，队列满时上游阻塞（背压）
+         */
+        private int queueCapacity = 4;
+
+        /**
+         * 解码时等待内存预算的超时时间（毫秒），批量任务可以等得比单张请求更久
+         */
+        private long acquireTimeoutMs = 60_000L;
+
+        /**
+         * 保留的已结束任务数（用于查询状态）
+         */
+        private int historySize = 100;
+    }
+
+    @Data
+    public static class ResultCache {
+
+        /**
+         * 是否缓存编码后的结果
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存目录
+         */
+        private String dir = System.getProperty("java.io.tmpdir") + "/watermark-result-cache";
+
+        /**
+         * 缓存容量（MB），超出时按最近最少使用淘汰
+         */
+        private long maxMb = 1024;
+
+        /**
+         * 被淘汰的文件延迟删除的时间（秒），避免正在下载的文件被删除
+         */
+        private long deleteDelaySeconds = 60;
+    }
+}
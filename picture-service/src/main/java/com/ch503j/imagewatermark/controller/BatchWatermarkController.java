@@ -0,0 +1,90 @@
+package com.ch503j.imagewatermark.controller;
+
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.pojo.vo.BatchJobVO;
+import com.ch503j.imagewatermark.service.BatchWatermarkService;
+import com.ch503j.imagewatermark.service.support.BatchJob;
+import jakarta.annotation.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 批量加水印接口
+ */
+@RestController
+@RequestMapping("/watermark/batch")
+public class BatchWatermarkController {
+
+    @Resource
+    private BatchWatermarkService batchWatermarkService;
+
+    /**
+     * 批量加水印：上传 ZIP 压缩包或多个图片文件，响应体为边处理边输出的结果 ZIP；
+     * 任务 id 在响应头 X-Batch-Job-Id 中，处理过程中可通过 /watermark/batch/{jobId} 查询进度
+     *
+     * @param zip     ZIP 压缩包（与 files 二选一）
+     * @param files   图片文件
+     * @param logo    图片水印（可选）
+     * @param options 水印参数
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> batch(@RequestPart(value = "zip", required = false) MultipartFile zip,
+                                                       @RequestPart(value = "files", required = false) List<MultipartFile> files,
+                                                       @RequestPart(value = "logo", required = false) MultipartFile logo,
+                                                       @ModelAttribute WatermarkOptions options) throws IOException {
+        BatchJob job = batchWatermarkService.submit(zip, files, logo, options);
+        StreamingResponseBody body = out -> batchWatermarkService.run(job, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"watermark-" + job.getId() + ".zip\"")
+                .header("X-Batch-Job-Id", job.getId())
+                .body(body);
+    }
+
+    /**
+     * 最近的批量任务
+     */
+    @GetMapping("/jobs")
+    public List<BatchJobVO> jobs() {
+        return batchWatermarkService.jobs();
+    }
+
+    /**
+     * 任务状态与吞吐（张/秒、MB/秒）
+     */
+    @GetMapping("/{jobId}")
+    public BatchJobVO status(@PathVariable String jobId) {
+        return requireJob(batchWatermarkService.status(jobId));
+    }
+
+    /**
+     * 取消任务，已输出的图片保留在结果 ZIP 中
+     */
+    @DeleteMapping("/{jobId}")
+    public BatchJobVO cancel(@PathVariable String jobId) {
+        return requireJob(batchWatermarkService.cancel(jobId));
+    }
+
+    private BatchJobVO requireJob(BatchJobVO job) {
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "任务不存在");
+        }
+        return job;
+    }
+}
@@ -0,0 +1,117 @@
+package com.ch503j.imagewatermark.controller;
+
+import com.ch503j.imagewatermark.cache.WatermarkResultCache;
+import com.ch503j.imagewatermark.cache.WatermarkStampCache;
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.service.WatermarkService;
+import com.ch503j.imagewatermark.service.support.RasterCompositor;
+import com.ch503j.imagewatermark.service.support.ServletImageOutput;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/watermark")
+public class WatermarkController {
+
+    @Resource
+    private WatermarkService watermarkService;
+
+    @Resource
+    private WatermarkStampCache watermarkStampCache;
+
+    @Resource
+    private RasterCompositor rasterCompositor;
+
+    @Resource
+    private WatermarkResultCache watermarkResultCache;
+
+    /**
+     * 给单张图片加水印，结果图片直接写回响应体
+     *
+     * @param file    原图
+     * @param logo    图片水印（可选）
+     * @param options 水印参数
+     */
+    @PostMapping(value = "/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void image(@RequestPart("file") MultipartFile file,
+                      @RequestPart(value = "logo", required = false) MultipartFile logo,
+                      @ModelAttribute WatermarkOptions options,
+                      @RequestParam(value = "download", defaultValue = "false") boolean download,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "请上传图片");
+        }
+        try (InputStream logoStream = logo == null || logo.isEmpty() ? null : logo.getInputStream()) {
+            watermarkService.watermark(file::getInputStream, logoStream, options,
+                    new ServletImageOutput(request, response, download));
+        }
+    }
+
+    /**
+     * 处理统计
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return watermarkService.stats();
+    }
+
+    /**
+     * 水印缓存统计
+     */
+    @GetMapping("/stamp-cache/stats")
+    public Map<String, Object> stampCacheStats() {
+        return watermarkStampCache.stats();
+    }
+
+    /**
+     * 清空水印缓存
+     */
+    @PostMapping("/stamp-cache/clear")
+    public Map<String, Object> clearStampCache() {
+        watermarkStampCache.clear();
+        return watermarkStampCache.stats();
+    }
+
+    /**
+     * 合成统计
+     */
+    @GetMapping("/composite/stats")
+    public Map<String, Object> compositeStats() {
+        return rasterCompositor.stats();
+    }
+
+    /**
+     * 合成耗时测试，用于确认多核扩展性和选择 watermark.composite-parallelism
+     *
+     * @param megapixels 测试图大小（百万像素）
+     */
+    @PostMapping("/composite/benchmark")
+    public Map<String, Object> benchmarkComposite(@RequestParam(value = "megapixels", defaultValue = "20") int megapixels) {
+        return watermarkService.benchmarkComposite(megapixels);
+    }
+
+    /**
+     * 结果缓存统计
+     */
+    @GetMapping("/result-cache/stats")
+    public Map<String, Object> resultCacheStats() {
+        return watermarkResultCache.stats();
+    }
+}
@@ -0,0 +1,65 @@
+package com.ch503j.imagewatermark.pojo.dto;
+
+import lombok.Data;
+
+/**
+ * 水印参数
+ */
+@Data
+public class WatermarkOptions {
+
+    /**
+     * 文字水印内容（与图片水印二选一，同时提供时都绘制）
+     */
+    private String text;
+
+    /**
+     * 字体名称
+     */
+    private String fontName = "SansSerif";
+
+    /**
+     * 字号（像素），为空时按图片短边的 1/20 计算
+     */
+    private Integer fontSize;
+
+    /**
+     * 文字颜色，#RRGGBB
+     */
+    private String color = "#FFFFFF";
+
+    /**
+     * 不透明度（0~1）
+     */
+    private float opacity = 0.35f;
+
+    /**
+     * 旋转角度（度）
+     */
+    private double angle = -30;
+
+    /**
+     * 位置：TILE 平铺、CENTER 居中、BOTTOM_RIGHT 右下角
+     */
+    private String position = "TILE";
+
+    /**
+     * 平铺时水印之间的间距（像素），不能为负，为空时按水印尺寸计算
+     */
+    private Integer spacing;
+
+    /**
+     * 图片水印缩放比例（相对原图短边，取值 (0, 1]），如 0.2 表示水印宽度为短边的 20%
+     */
+    private double logoScale = 0.2;
+
+    /**
+     * 输出格式：png、jpg，为空时与原图一致
+     */
+    private String format;
+
+    /**
+     * JPEG 输出质量（0~1），为空时使用默认配置
+     */
+    private Float quality;
+}
@@ -0,0 +1,70 @@
+package com.ch503j.imagewatermark.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 批量任务状态
+ */
+@Data
+public class BatchJobVO {
+
+    private String jobId;
+
+    /**
+     * RUNNING / COMPLETED / FAILED / CANCELLED
+     */
+    private String status;
+
+    /**
+     * 图片总数
+     */
+    private int total;
+
+    /**
+     * 已解码数
+     */
+    private long decoded;
+
+    /**
+     * 已写入结果 ZIP 的图片数
+     */
+    private long succeeded;
+
+    /**
+     * 处理失败数（原因写在结果 ZIP 的 errors.txt 中）
+     */
+    private long failed;
+
+    /**
+     * 超过解码像素上限、按降采样尺寸输出的图片数（明细写在结果 ZIP 的 subsampled.txt 中）
+     */
+    private long subsampled;
+
+    /**
+     * 已读取的原图大小（MB）
+     */
+    private double inputMb;
+
+    /**
+     * 已输出的结果大小（MB）
+     */
+    private double outputMb;
+
+    /**
+     * 解码队列、编码队列当前长度
+     */
+    private int decodeQueue;
+
+    private int encodeQueue;
+
+    private long elapsedMillis;
+
+    /**
+     * 吞吐：每秒图片数、每秒读取的原图 MB 数
+     */
+    private double imagesPerSecond;
+
+    private double mbPerSecond;
+
+    private String error;
+}
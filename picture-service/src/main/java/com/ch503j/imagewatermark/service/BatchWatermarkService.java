@@ -0,0 +1,50 @@
+package com.ch503j.imagewatermark.service;
+
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.pojo.vo.BatchJobVO;
+import com.ch503j.imagewatermark.service.support.BatchJob;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 批量加水印
+ */
+public interface BatchWatermarkService {
+
+    /**
+     * 创建批量任务
+     *
+     * @param zip     ZIP 压缩包（与 files 二选一）
+     * @param files   多个图片文件
+     * @param logo    图片水印，可为 null
+     * @param options 水印参数
+     * @return 任务
+     */
+    BatchJob submit(MultipartFile zip, List<MultipartFile> files, MultipartFile logo, WatermarkOptions options) throws IOException;
+
+    /**
+     * 运行任务：解码 → 加水印 / 编码 两个阶段并行处理，结果按完成顺序写入 ZIP 输出流
+     *
+     * @param job 任务
+     * @param out 输出流
+     */
+    void run(BatchJob job, OutputStream out) throws IOException;
+
+    /**
+     * 任务状态，任务不存在时返回 null
+     */
+    BatchJobVO status(String jobId);
+
+    /**
+     * 最近的任务
+     */
+    List<BatchJobVO> jobs();
+
+    /**
+     * 取消任务
+     */
+    BatchJobVO cancel(String jobId);
+}
@@ -0,0 +1,18 @@
+package com.ch503j.imagewatermark.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 可重复打开的原图输入
+ * <p>
+ * 启用结果缓存时需要先读一遍原图计算内容摘要，未命中再打开一次解码
+ */
+@FunctionalInterface
+public interface ImageInput {
+
+    /**
+     * 打开输入流（由调用方负责关闭）
+     */
+    InputStream open() throws IOException;
+}
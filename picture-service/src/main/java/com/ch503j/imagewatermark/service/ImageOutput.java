@@ -0,0 +1,60 @@
+package com.ch503j.imagewatermark.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 水印结果的输出目标
+ * <p>
+ * 输出格式在读取图片文件头之后才能确定，因此由调用方在拿到 Content-Type 时再打开输出流
+ */
+@FunctionalInterface
+public interface ImageOutput {
+
+    /**
+     * 打开输出流
+     *
+     * @param contentType 结果图片的 Content-Type
+     * @return 输出流（由调用方负责关闭）
+     */
+    OutputStream open(String contentType) throws IOException;
+
+    /**
+     * 原图超过解码像素上限、结果是降采样后的图片时调用（在 {@link #open(String)} 之前），默认不处理
+     *
+     * @param sourceWidth  原图宽度
+     * @param sourceHeight 原图高度
+     * @param width        结果图片宽度
+     * @param height       结果图片高度
+     */
+    default void subsampled(int sourceWidth, int sourceHeight, int width, int height) {
+    }
+
+    /**
+     * 直接输出已编码好的文件（结果缓存命中时），默认通过 FileChannel.transferTo 写到输出流
+     *
+     * @param file        文件
+     * @param contentType Content-Type
+     * @param length      文件大小
+     */
+    default void sendFile(Path file, String contentType, long length) throws IOException {
+        OutputStream out = open(contentType);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < length) {
+                long sent = channel.transferTo(position, length - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+        out.flush();
+    }
+}
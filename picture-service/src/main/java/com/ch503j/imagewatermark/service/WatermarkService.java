@@ -0,0 +1,76 @@
+package com.ch503j.imagewatermark.service;
+
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.service.support.PreparedImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+public interface WatermarkService {
+
+    /**
+     * 给图片加水印并把结果写到输出；启用结果缓存时，原图内容和参数相同的请求直接返回缓存文件
+     *
+     * @param source  原图（启用结果缓存时会打开两次：计算摘要、解码）
+     * @param logo    图片水印，可为 null
+     * @param options 水印参数
+     * @param output  输出目标
+     */
+    void watermark(ImageInput source, InputStream logo, WatermarkOptions options, ImageOutput output) throws IOException;
+
+    /**
+     * 校验水印参数（至少一种水印、输出格式可写出）
+     *
+     * @param options 水印参数
+     * @param hasLogo 是否有图片水印
+     */
+    void checkOptions(WatermarkOptions options, boolean hasLogo);
+
+    /**
+     * 读取水印图片的全部内容，用于计算缓存键（命中缓存时不再解码）
+     */
+    byte[] readLogoBytes(InputStream logo) throws IOException;
+
+    /**
+     * 解码图片：超过像素上限时降采样解码，解码前申请内存预算
+     *
+     * @param source           原图
+     * @param options          水印参数（用于确定输出格式）
+     * @param hasLogo          是否有图片水印（计入内存预算）
+     * @param acquireTimeoutMs 等待内存预算的超时时间
+     * @return 解码结果，用完必须关闭
+     */
+    PreparedImage prepare(InputStream source, WatermarkOptions options, boolean hasLogo, long acquireTimeoutMs) throws IOException;
+
+    /**
+     * 合成水印
+     *
+     * @param image     解码结果
+     * @param options   水印参数
+     * @param logoBytes 图片水印内容，可为 null
+     */
+    void apply(PreparedImage image, WatermarkOptions options, byte[] logoBytes) throws IOException;
+
+    /**
+     * 编码并写出
+     *
+     * @param image   已合成水印的图片
+     * @param options 水印参数（用于确定 JPEG 质量）
+     * @param out     输出流（不会被关闭）
+     */
+    void encode(PreparedImage image, WatermarkOptions options, OutputStream out) throws IOException;
+
+    /**
+     * 合成耗时测试：用 1~N 个线程合成同一张测试图，返回每百万像素耗时
+     *
+     * @param megapixels 测试图大小（百万像素），不超过 watermark.max-pixels
+     */
+    Map<String, Object> benchmarkComposite(int megapixels);
+
+    /**
+     * 处理统计
+     */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,593 @@
+package com.ch503j.imagewatermark.service.impl;
+
+import com.ch503j.imagewatermark.config.WatermarkProperties;
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.pojo.vo.BatchJobVO;
+import com.ch503j.imagewatermark.service.BatchWatermarkService;
+import com.ch503j.imagewatermark.service.WatermarkService;
+import com.ch503j.imagewatermark.service.support.BatchInput;
+import com.ch503j.imagewatermark.service.support.BatchJob;
+import com.ch503j.imagewatermark.service.support.PreparedImage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+@Slf4j
+@Service
+public class BatchWatermarkServiceImpl implements BatchWatermarkService {
+
+    /**
+     * 队列结束标记
+     */
+    private static final Decoded DECODE_END = new Decoded(null, null, null);
+
+    private static final Encoded ENCODE_END = new Encoded(null, null, null);
+
+    @Resource
+    private WatermarkService watermarkService;
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    @Resource(name = "batchPipelineExecutor")
+    private ThreadPoolTaskExecutor batchPipelineExecutor;
+
+    /**
+     * 同时运行的任务数
+     */
+    private Semaphore jobSlots;
+
+    /**
+     * jobId -> 任务，按创建顺序排列
+     */
+    private final LinkedHashMap<String, BatchJob> jobs = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        jobSlots = new Semaphore(Math.max(1, watermarkProperties.getBatch().getMaxJobs()));
+    }
+
+    @Override
+    public BatchJob submit(MultipartFile zip, List<MultipartFile> files, MultipartFile logo, WatermarkOptions options) throws IOException {
+        boolean hasZip = zip != null && !zip.isEmpty();
+        boolean hasFiles = files != null && files.stream().anyMatch(file -> !file.isEmpty());
+        if (!hasZip && !hasFiles) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "请上传 ZIP 压缩包或图片文件");
+        }
+        boolean hasLogo = logo != null && !logo.isEmpty();
+        watermarkService.checkOptions(options, hasLogo);
+
+        if (!jobSlots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "批量任务过多，请稍后重试");
+        }
+        Path workDir = null;
+        Closeable resources = null;
+        try {
+            byte[] logoBytes;
+            try (InputStream logoStream = hasLogo ? logo.getInputStream() : null) {
+                logoBytes = hasLogo ? watermarkService.readLogoBytes(logoStream) : null;
+            }
+
+            // multipart 临时文件在请求结束后删除，任务期间需要保留，移动到任务目录（同一磁盘时只是重命名）
+            workDir = Files.createTempDirectory("watermark-batch-");
+            List<BatchInput> inputs;
+            if (hasZip) {
+                Path zipPath = workDir.resolve("source.zip");
+                zip.transferTo(zipPath);
+                ZipFile zipFile = openZip(zipPath);
+                resources = zipFile;
+                inputs = zipInputs(zipFile);
+            } else {
+                inputs = fileInputs(files, workDir);
+            }
+
+            if (inputs.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "没有可处理的图片");
+            }
+            if (inputs.size() > watermarkProperties.getBatch().getMaxImages()) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "图片数量超过上限：" + watermarkProperties.getBatch().getMaxImages());
+            }
+
+            BatchJob job = new BatchJob(UUID.randomUUID().toString().replace("-", ""),
+                    inputs, options, logoBytes, workDir, resources);
+            register(job);
+            log.info("批量任务 {} 已创建，共 {} 张图片", job.getId(), inputs.size());
+            return job;
+        } catch (IOException | RuntimeException e) {
+            jobSlots.release();
+            if (resources != null) {
+                resources.close();
+            }
+            deleteQuietly(workDir);
+            throw e;
+        }
+    }
+
+    @Override
+    public void run(BatchJob job, OutputStream out) throws IOException {
+        WatermarkProperties.Batch config = watermarkProperties.getBatch();
+        int decodeThreads = Math.max(1, config.getDecodeThreads());
+        int encodeThreads = Math.max(1, config.getEncodeThreads());
+        BlockingQueue<Decoded> decodeQueue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        BlockingQueue<Encoded> encodeQueue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        job.start(decodeQueue, encodeQueue);
+
+        BatchJob.Status status = BatchJob.Status.COMPLETED;
+        String error = null;
+        try {
+            startPipeline(job, decodeQueue, encodeQueue, decodeThreads, encodeThreads);
+            writeZip(job, encodeQueue, out);
+            if (job.isCancelled()) {
+                status = BatchJob.Status.CANCELLED;
+            }
+        } catch (IOException | RuntimeException e) {
+            // 客户端断开或写出失败：停止流水线，继续消费编码队列直到所有线程退出，释放内存预算
+            job.cancel();
+            drain(encodeQueue);
+            status = BatchJob.Status.FAILED;
+            error = e.getMessage();
+            throw e;
+        } finally {
+            finish(job, status, error);
+        }
+    }
+
+    /**
+     * 启动流水线：decodeThreads 个线程解码并放入解码队列，encodeThreads 个线程合成水印、编码后放入编码队列；
+     * 队列有界，下游处理不过来（包括客户端下载慢）时上游阻塞，内存中的图片数量固定。
+     * <p>
+     * 先启动编码线程再启动解码线程；线程池拒绝时取消任务，并替未启动的线程发出结束标记，
+     * 已启动的线程照常退出（归还已解码图片的内存预算），调用方随后可以消费到编码队列的结束标记
+     */
+    private void startPipeline(BatchJob job, BlockingQueue<Decoded> decodeQueue, BlockingQueue<Encoded> encodeQueue,
+                               int decodeThreads, int encodeThreads) {
+        AtomicInteger nextInput = new AtomicInteger();
+        AtomicInteger activeDecoders = new AtomicInteger(decodeThreads);
+        AtomicInteger activeEncoders = new AtomicInteger(encodeThreads);
+        Runnable encoderExit = () -> {
+            if (activeEncoders.decrementAndGet() == 0) {
+                putUninterruptibly(encodeQueue, ENCODE_END);
+            }
+        };
+
+        int startedEncoders = 0;
+        try {
+            for (; startedEncoders < encodeThreads; startedEncoders++) {
+                batchPipelineExecutor.execute(() -> {
+                    try {
+                        encodeLoop(job, decodeQueue, encodeQueue);
+                    } finally {
+                        encoderExit.run();
+                    }
+                });
+            }
+        } catch (TaskRejectedException e) {
+            job.cancel();
+            // 还没有解码线程：直接通知已启动的编码线程结束
+            for (int i = 0; i < startedEncoders; i++) {
+                putUninterruptibly(decodeQueue, DECODE_END);
+            }
+            for (int i = startedEncoders; i < encodeThreads; i++) {
+                encoderExit.run();
+            }
+            throw rejected(e);
+        }
+
+        // 最后一个解码线程退出时通知所有编码线程
+        Runnable decoderExit = () -> {
+            if (activeDecoders.decrementAndGet() == 0) {
+                for (int j = 0; j < encodeThreads; j++) {
+                    putUninterruptibly(decodeQueue, DECODE_END);
+                }
+            }
+        };
+        int startedDecoders = 0;
+        try {
+            for (; startedDecoders < decodeThreads; startedDecoders++) {
+                batchPipelineExecutor.execute(() -> {
+                    try {
+                        decodeLoop(job, nextInput, decodeQueue);
+                    } finally {
+                        decoderExit.run();
+                    }
+                });
+            }
+        } catch (TaskRejectedException e) {
+            // 已启动的解码线程看到取消后退出，编码线程丢弃已解码的图片
+            job.cancel();
+            for (int i = startedDecoders; i < decodeThreads; i++) {
+                decoderExit.run();
+            }
+            throw rejected(e);
+        }
+    }
+
+    private ResponseStatusException rejected(TaskRejectedException e) {
+        log.warn("批量任务线程池已满：{}", e.getMessage());
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后重试");
+    }
+
+    private void decodeLoop(BatchJob job, AtomicInteger nextInput, BlockingQueue<Decoded> decodeQueue) {
+        List<BatchInput> inputs = job.getInputs();
+        long acquireTimeoutMs = watermarkProperties.getBatch().getAcquireTimeoutMs();
+        int index;
+        while (!job.isCancelled() && (index = nextInput.getAndIncrement()) < inputs.size()) {
+            BatchInput input = inputs.get(index);
+            Decoded decoded;
+            try (InputStream in = input.open()) {
+                PreparedImage image = watermarkService.prepare(in, job.getOptions(), job.getLogoBytes() != null, acquireTimeoutMs);
+                job.recordDecoded(input.size());
+                if (image.isSubsampled()) {
+                    job.recordSubsampled(input.name(), image.getSourceWidth(), image.getSourceHeight(),
+                            image.getImage().getWidth(), image.getImage().getHeight());
+                }
+                decoded = new Decoded(input, image, null);
+            } catch (Exception e) {
+                decoded = new Decoded(input, null, errorMessage(e));
+            }
+            putUninterruptibly(decodeQueue, decoded);
+        }
+    }
+
+    private void encodeLoop(BatchJob job, BlockingQueue<Decoded> decodeQueue, BlockingQueue<Encoded> encodeQueue) {
+        while (true) {
+            Decoded decoded = takeUninterruptibly(decodeQueue);
+            if (decoded == DECODE_END) {
+                return;
+            }
+            if (decoded.error() != null) {
+                putUninterruptibly(encodeQueue, new Encoded(decoded.input().name(), null, decoded.error()));
+                continue;
+            }
+            try (PreparedImage image = decoded.image()) {
+                if (job.isCancelled()) {
+                    continue;
+                }
+                watermarkService.apply(image, job.getOptions(), job.getLogoBytes());
+                EncodedBuffer buffer = new EncodedBuffer();
+                watermarkService.encode(image, job.getOptions(), buffer);
+                putUninterruptibly(encodeQueue, new Encoded(outputName(decoded.input().name(), image.getFormat()), buffer, null));
+            } catch (Exception e) {
+                putUninterruptibly(encodeQueue, new Encoded(decoded.input().name(), null, errorMessage(e)));
+            }
+        }
+    }
+
+    /**
+     * 按完成顺序把结果写入 ZIP；图片本身已压缩，使用 STORED 不再压缩。处理失败的图片写入 errors.txt，
+     * 降采样输出的图片写入 subsampled.txt
+     */
+    private void writeZip(BatchJob job, BlockingQueue<Encoded> encodeQueue, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Set<String> names = new HashSet<>();
+        StringBuilder errors = new StringBuilder();
+        while (true) {
+            Encoded encoded = takeUninterruptibly(encodeQueue);
+            if (encoded == ENCODE_END) {
+                break;
+            }
+            if (encoded.error() != null) {
+                job.recordFailed();
+                errors.append(encoded.name()).append(": ").append(encoded.error()).append('\n');
+                continue;
+            }
+            EncodedBuffer buffer = encoded.buffer();
+            ZipEntry entry = new ZipEntry(uniqueName(names, encoded.name()));
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(buffer.size());
+            entry.setCompressedSize(buffer.size());
+            entry.setCrc(buffer.crc());
+            zip.putNextEntry(entry);
+            buffer.writeTo(zip);
+            zip.closeEntry();
+            // 每张图片写完立即推给客户端
+            zip.flush();
+            job.recordSucceeded(buffer.size());
+        }
+        if (job.isCancelled()) {
+            errors.append("任务已取消\n");
+        }
+        if (!errors.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(uniqueName(names, "errors.txt")));
+            zip.write(errors.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        List<String> subsampled = job.getSubsampled();
+        if (!subsampled.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(uniqueName(names, "subsampled.txt")));
+            zip.write((String.join("\n", subsampled) + "\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * 写出失败后继续消费编码队列，直到流水线全部退出
+     */
+    private void drain(BlockingQueue<Encoded> encodeQueue) {
+        while (takeUninterruptibly(encodeQueue) != ENCODE_END) {
+            // 丢弃结果
+        }
+    }
+
+    private void finish(BatchJob job, BatchJob.Status status, String error) {
+        job.finish(status, error);
+        jobSlots.release();
+        BatchJobVO vo = job.toVO();
+        log.info("批量任务 {} 结束：{}，成功 {}，失败 {}，{} 张/秒，{} MB/秒", job.getId(), vo.getStatus(),
+                vo.getSucceeded(), vo.getFailed(), String.format("%.2f", vo.getImagesPerSecond()),
+                String.format("%.2f", vo.getMbPerSecond()));
+    }
+
+    @Override
+    public BatchJobVO status(String jobId) {
+        BatchJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        return job == null ? null : job.toVO();
+    }
+
+    @Override
+    public List<BatchJobVO> jobs() {
+        List<BatchJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        List<BatchJobVO> result = new ArrayList<>(snapshot.size());
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            result.add(snapshot.get(i).toVO());
+        }
+        return result;
+    }
+
+    @Override
+    public BatchJobVO cancel(String jobId) {
+        BatchJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            return null;
+        }
+        job.cancel();
+        return job.toVO();
+    }
+
+    private void register(BatchJob job) {
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            // 只保留最近的已结束任务
+            int excess = jobs.size() - Math.max(1, watermarkProperties.getBatch().getHistorySize());
+            Iterator<Map.Entry<String, BatchJob>> iterator = jobs.entrySet().iterator();
+            while (excess > 0 && iterator.hasNext()) {
+                if (iterator.next().getValue().isFinished()) {
+                    iterator.remove();
+                    excess--;
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开 ZIP：优先按 UTF-8 解析文件名，失败时按 GBK（Windows 资源管理器压缩的中文文件名）
+     */
+    private ZipFile openZip(Path zipPath) throws IOException {
+        try {
+            return new ZipFile(zipPath.toFile(), StandardCharsets.UTF_8);
+        } catch (ZipException e) {
+            try {
+                return new ZipFile(zipPath.toFile(), Charset.forName("GBK"));
+            } catch (ZipException ignored) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "无法解析 ZIP 文件");
+            }
+        }
+    }
+
+    private List<BatchInput> zipInputs(ZipFile zipFile) {
+        List<BatchInput> inputs = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = sanitizeName(entry.getName());
+            // 跳过目录和 macOS 生成的元数据文件
+            if (entry.isDirectory() || name == null || name.startsWith("__MACOSX/")
+                    || fileName(name).startsWith(".")) {
+                continue;
+            }
+            inputs.add(new BatchInput(name, entry.getSize(), () -> zipFile.getInputStream(entry)));
+        }
+        return inputs;
+    }
+
+    private List<BatchInput> fileInputs(List<MultipartFile> files, Path workDir) throws IOException {
+        List<BatchInput> inputs = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            if (file.isEmpty()) {
+                continue;
+            }
+            int index = inputs.size();
+            Path path = workDir.resolve(String.valueOf(index));
+            file.transferTo(path);
+            String name = sanitizeName(file.getOriginalFilename());
+            inputs.add(new BatchInput(name == null ? "image-" + index : name, file.getSize(), () -> Files.newInputStream(path)));
+        }
+        return inputs;
+    }
+
+    /**
+     * 规范化文件名：统一分隔符，去掉盘符、开头的斜杠以及 . / .. 路径段，防止结果 ZIP 中出现路径穿越
+     *
+     * @return 规范化后的名称，为空时返回 null
+     */
+    private static String sanitizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(name.length());
+        for (String segment : name.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment) || segment.endsWith(":")) {
+                continue;
+            }
+            if (!result.isEmpty()) {
+                result.append('/');
+            }
+            result.append(segment);
+        }
+        return result.isEmpty() ? null : result.toString();
+    }
+
+    private static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 结果文件名：扩展名替换为输出格式
+     */
+    private static String outputName(String name, String format) {
+        String extension = "jpeg".equals(format) ? "jpg" : format;
+        int dot = name.lastIndexOf('.');
+        String base = dot > name.lastIndexOf('/') ? name.substring(0, dot) : name;
+        return base + "." + extension;
+    }
+
+    /**
+     * 同名文件追加序号
+     */
+    private static String uniqueName(Set<String> names, String name) {
+        if (names.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > name.lastIndexOf('/') ? name.substring(0, dot) : name;
+        String extension = dot > name.lastIndexOf('/') ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + "-" + i + extension;
+            if (names.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static String errorMessage(Exception e) {
+        if (e instanceof ResponseStatusException statusException && statusException.getReason() != null) {
+            return statusException.getReason();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // 临时目录删除失败时由系统清理
+        }
+    }
+
+    /**
+     * 流水线线程之间通过有界队列传递数据，阻塞时不响应中断，保证结束标记一定送达、内存预算一定归还
+     */
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T item) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(item);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 解码结果
+     */
+    private record Decoded(BatchInput input, PreparedImage image, String error) {
+    }
+
+    /**
+     * 编码结果
+     */
+    private record Encoded(String name, EncodedBuffer buffer, String error) {
+    }
+
+    /**
+     * 编码输出缓冲，直接用内部数组计算 CRC、写入 ZIP，避免 toByteArray 复制
+     */
+    private static final class EncodedBuffer extends ByteArrayOutputStream {
+
+        private EncodedBuffer() {
+            super(64 * 1024);
+        }
+
+        long crc() {
+            CRC32 crc = new CRC32();
+            crc.update(buf, 0, count);
+            return crc.getValue();
+        }
+    }
+}
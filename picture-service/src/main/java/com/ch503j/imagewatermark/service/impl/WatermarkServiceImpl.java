@@ -0,0 +1,499 @@
+package com.ch503j.imagewatermark.service.impl;
+
+import com.ch503j.imagewatermark.cache.StampKey;
+import com.ch503j.imagewatermark.cache.WatermarkResultCache;
+import com.ch503j.imagewatermark.cache.WatermarkStampCache;
+import com.ch503j.imagewatermark.config.WatermarkProperties;
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.service.ImageInput;
+import com.ch503j.imagewatermark.service.ImageOutput;
+import com.ch503j.imagewatermark.service.WatermarkService;
+import com.ch503j.imagewatermark.service.support.ImageEncoder;
+import com.ch503j.imagewatermark.service.support.ImageSource;
+import com.ch503j.imagewatermark.service.support.MemoryBudget;
+import com.ch503j.imagewatermark.service.support.PreparedImage;
+import com.ch503j.imagewatermark.service.support.RasterCompositor;
+import com.ch503j.imagewatermark.service.support.WatermarkRenderer;
+import com.ch503j.imagewatermark.service.support.WatermarkStamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Service
+public class WatermarkServiceImpl implements WatermarkService {
+
+    /**
+     * 渲染好的水印为 INT_ARGB_PRE，每像素 4 字节
+     */
+    private static final int STAMP_BYTES_PER_PIXEL = 4;
+
+    /**
+     * 解码前不知道 logo 的像素布局，按最大的 16 位 RGBA（8 字节）估算
+     */
+    private static final int LOGO_BYTES_PER_PIXEL = 8;
+
+    /**
+     * 灰度、索引色等类型合成前复制为 INT_RGB / INT_ARGB，每像素 4 字节
+     */
+    private static final int CONVERTED_BYTES_PER_PIXEL = 4;
+
+    /**
+     * 带透明通道的图片输出 JPEG 时需要额外一份 3 字节/像素的 RGB 副本
+     */
+    private static final int JPEG_COPY_BYTES_PER_PIXEL = 3;
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    @Resource
+    private WatermarkStampCache watermarkStampCache;
+
+    @Resource
+    private RasterCompositor rasterCompositor;
+
+    @Resource
+    private WatermarkResultCache watermarkResultCache;
+
+    private MemoryBudget memoryBudget;
+
+    private final LongAdder processed = new LongAdder();
+
+    private final LongAdder servedFromCache = new LongAdder();
+
+    private final LongAdder subsampled = new LongAdder();
+
+    private final LongAdder rejectedBusy = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder sourcePixels = new LongAdder();
+
+    private final LongAdder processNanos = new LongAdder();
+
+    private final LongAdder compositeNanos = new LongAdder();
+
+    private final LongAdder stampNanos = new LongAdder();
+
+    private final LongAdder stampCalls = new LongAdder();
+
+    private final LongAdder compositePixels = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        // 不使用磁盘缓存，解码 / 编码的中间数据只在内存中流转
+        ImageIO.setUseCache(false);
+        memoryBudget = new MemoryBudget(watermarkProperties.getMemoryBudgetMb());
+    }
+
+    @Override
+    public void watermark(ImageInput source, InputStream logo, WatermarkOptions options, ImageOutput output) throws IOException {
+        checkOptions(options, logo != null);
+        long start = System.nanoTime();
+        try {
+            byte[] logoBytes = logo == null ? null : readLogoBytes(logo);
+            String cacheKey = watermarkResultCache.isEnabled() ? watermarkResultCache.key(source, logoBytes, options) : null;
+            if (cacheKey != null) {
+                WatermarkResultCache.Entry cached = watermarkResultCache.get(cacheKey);
+                if (cached != null) {
+                    // 命中结果缓存：跳过解码、合成和编码，直接发送文件
+                    output.sendFile(cached.path(), cached.contentType(), cached.size());
+                    servedFromCache.increment();
+                    return;
+                }
+            }
+
+            try (InputStream in = source.open();
+                 PreparedImage image = prepare(in, options, logoBytes != null, watermarkProperties.getAcquireTimeoutMs())) {
+                apply(image, options, logoBytes);
+                BufferedImage result = image.getImage();
+                if (image.isSubsampled()) {
+                    // 告诉客户端结果比原图小；降采样的结果不缓存，否则命中缓存时无法再返回原图尺寸
+                    output.subsampled(image.getSourceWidth(), image.getSourceHeight(), result.getWidth(), result.getHeight());
+                }
+                OutputStream out = output.open(ImageEncoder.contentType(image.getFormat()));
+                WatermarkResultCache.Writer cacheWriter = cacheKey == null || image.isSubsampled()
+                        ? null : openCacheWriter(cacheKey, image.getFormat());
+                if (cacheWriter == null) {
+                    encode(image, options, out);
+                    out.flush();
+                } else {
+                    CachingOutputStream caching = new CachingOutputStream(out, cacheWriter);
+                    try {
+                        encode(image, options, caching);
+                        out.flush();
+                    } catch (IOException | RuntimeException e) {
+                        cacheWriter.abort();
+                        throw e;
+                    }
+                    caching.commit();
+                }
+            }
+            processed.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            processNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 打开结果缓存的写入，失败（如磁盘已满）时不缓存
+     */
+    private WatermarkResultCache.Writer openCacheWriter(String cacheKey, String format) {
+        try {
+            return watermarkResultCache.writer(cacheKey, format);
+        } catch (IOException e) {
+            log.warn("写入水印结果缓存失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void checkOptions(WatermarkOptions options, boolean hasLogo) {
+        if ((options.getText() == null || options.getText().isEmpty()) && !hasLogo) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "文字水印和图片水印至少需要一个");
+        }
+        if (options.getText() != null && options.getText().length() > watermarkProperties.getTextMaxLength()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "文字水印不能超过 " + watermarkProperties.getTextMaxLength() + " 个字符");
+        }
+        if (options.getSpacing() != null && options.getSpacing() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "水印间距不能为负数");
+        }
+        if (hasLogo && !(options.getLogoScale() > 0 && options.getLogoScale() <= 1)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "图片水印缩放比例须在 (0, 1] 范围内");
+        }
+        String format = options.getFormat();
+        if (format != null && !format.isBlank() && !ImageIO.getImageWritersByFormatName(ImageEncoder.normalize(format)).hasNext()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的输出格式：" + format);
+        }
+    }
+
+    @Override
+    public PreparedImage prepare(InputStream source, WatermarkOptions options, boolean hasLogo, long acquireTimeoutMs) throws IOException {
+        try (ImageSource image = openImage(source)) {
+            if (image.getPixels() > watermarkProperties.getMaxSourcePixels()) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "图片像素数超过上限：" + image.getWidth() + "x" + image.getHeight());
+            }
+            String format = resolveFormat(options.getFormat(), image.getFormatName());
+            int subsampling = image.subsamplingFor(watermarkProperties.getMaxPixels());
+            long decodedPixels = image.decodedPixels(subsampling);
+            long estimate = decodedPixels * image.bytesPerPixel();
+            // 转换期间解码结果和副本同时存在
+            if (RasterCompositor.needsConversion(image.imageType())) {
+                estimate += decodedPixels * CONVERTED_BYTES_PER_PIXEL;
+            }
+            if (ImageEncoder.isJpeg(format)) {
+                estimate += decodedPixels * JPEG_COPY_BYTES_PER_PIXEL;
+            }
+            // 水印缓存未命中时渲染的水印图片
+            if (options.getText() != null && !options.getText().isEmpty()) {
+                estimate += stampMaxPixels(decodedPixels) * STAMP_BYTES_PER_PIXEL;
+            }
+            if (hasLogo) {
+                estimate += watermarkProperties.getLogoMaxPixels() * LOGO_BYTES_PER_PIXEL
+                        + stampMaxPixels(decodedPixels) * STAMP_BYTES_PER_PIXEL;
+            }
+
+            MemoryBudget.Reservation reservation = reserve(estimate, acquireTimeoutMs);
+            try {
+                BufferedImage target = rasterCompositor.prepare(image.read(subsampling));
+                if (subsampling > 1) {
+                    subsampled.increment();
+                    log.info("图片 {}x{} 超过解码像素上限，按 1/{} 降采样处理", image.getWidth(), image.getHeight(), subsampling);
+                }
+                sourcePixels.add(image.getPixels());
+                return new PreparedImage(target, format, image.getWidth(), image.getHeight(), subsampling, reservation);
+            } catch (IOException | RuntimeException | Error e) {
+                reservation.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void apply(PreparedImage image, WatermarkOptions options, byte[] logoBytes) throws IOException {
+        BufferedImage target = image.getImage();
+        // 合成耗时包含取得水印（缓存未命中时渲染），才能对比水印缓存开 / 关的效果
+        long compositeStart = System.nanoTime();
+        List<WatermarkStamp> stamps = resolveStamps(options, logoBytes, target.getWidth(), target.getHeight());
+        stampNanos.add(System.nanoTime() - compositeStart);
+        stampCalls.increment();
+
+        List<RasterCompositor.Layer> layers = new ArrayList<>(stamps.size());
+        for (WatermarkStamp stamp : stamps) {
+            layers.add(new RasterCompositor.Layer(stamp, WatermarkRenderer.placements(target.getWidth(), target.getHeight(),
+                    stamp, options.getPosition(), stampAngle(options), options.getSpacing())));
+        }
+        rasterCompositor.composite(target, layers);
+        compositeNanos.add(System.nanoTime() - compositeStart);
+        compositePixels.add((long) target.getWidth() * target.getHeight());
+    }
+
+    @Override
+    public void encode(PreparedImage image, WatermarkOptions options, OutputStream out) throws IOException {
+        float quality = options.getQuality() != null ? options.getQuality() : watermarkProperties.getJpegQuality();
+        ImageEncoder.encode(image.getImage(), image.getFormat(), quality, out);
+    }
+
+    @Override
+    public Map<String, Object> benchmarkComposite(int megapixels) {
+        int limit = (int) Math.max(1, watermarkProperties.getMaxPixels() / 1_000_000L);
+        int size = Math.max(1, Math.min(megapixels, limit));
+        // 4:3 的测试图
+        int width = (int) Math.sqrt(size * 1_000_000L * 4 / 3);
+        int height = (int) (size * 1_000_000L / width);
+
+        long pixels = (long) width * height;
+        long estimate = pixels * 3 + stampMaxPixels(pixels) * STAMP_BYTES_PER_PIXEL;
+        try (MemoryBudget.Reservation ignored = reserve(estimate, watermarkProperties.getAcquireTimeoutMs())) {
+            WatermarkOptions options = new WatermarkOptions();
+            options.setText("Tools-AIO");
+            WatermarkStamp stamp = resolveStamps(options, null, width, height).get(0);
+            int[] placements = WatermarkRenderer.placements(width, height, stamp, options.getPosition(),
+                    stampAngle(options), options.getSpacing());
+            return rasterCompositor.benchmark(size, stamp, placements, width, height);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ImageSource openImage(InputStream source) throws IOException {
+        ImageSource image = ImageSource.open(source);
+        if (image == null) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "无法识别的图片格式");
+        }
+        return image;
+    }
+
+    /**
+     * 单个水印渲染后的像素数上限：不超过配置值，也不超过目标图片本身
+     */
+    private long stampMaxPixels(long targetPixels) {
+        return Math.max(1, Math.min(watermarkProperties.getStampMaxPixels(), targetPixels));
+    }
+
+    /**
+     * 取得本次需要的水印（文字在前、图片在后），优先从缓存读取
+     */
+    private List<WatermarkStamp> resolveStamps(WatermarkOptions options, byte[] logoBytes, int width, int height) throws IOException {
+        int shortSide = Math.min(width, height);
+        long maxPixels = stampMaxPixels((long) width * height);
+        int angle = stampAngle(options);
+        int opacity = Math.round(Math.max(0f, Math.min(1f, options.getOpacity())) * 1000);
+        List<WatermarkStamp> stamps = new ArrayList<>(2);
+
+        String text = options.getText();
+        if (text != null && !text.isEmpty()) {
+            int fontSize = options.getFontSize() != null ? options.getFontSize() : shortSide / 20;
+            int size = Math.max(12, Math.min(fontSize, shortSide));
+            int rgb = WatermarkRenderer.parseColor(options.getColor()).getRGB();
+            // 像素上限会影响渲染结果（超出时缩小字号），作为缓存键的一部分
+            StampKey key = new StampKey("T:" + maxPixels + ":" + text, options.getFontName(), size, rgb, angle, opacity);
+            stamps.add(watermarkStampCache.getOrRender(key, () -> WatermarkRenderer.textStamp(
+                    text, options.getFontName(), size, new Color(rgb, true), opacity / 1000f, angle, maxPixels)));
+        }
+
+        if (logoBytes != null) {
+            int size = Math.max(1, (int) (shortSide * options.getLogoScale()));
+            StampKey key = new StampKey("L:" + maxPixels + ":" + sha256(logoBytes), null, size, 0, angle, opacity);
+            WatermarkStamp stamp;
+            try {
+                stamp = watermarkStampCache.getOrRender(key, () -> {
+                    try {
+                        return WatermarkRenderer.logoStamp(readLogo(logoBytes), size, opacity / 1000f, angle, maxPixels);
+                    } catch (IOException e) {
+                        throw new LogoDecodeException(e);
+                    }
+                });
+            } catch (LogoDecodeException e) {
+                throw e.getCause();
+            }
+            stamps.add(stamp);
+        }
+        return stamps;
+    }
+
+    /**
+     * 水印旋转角度（取整到度，作为缓存键的一部分），右下角水印不旋转
+     */
+    private int stampAngle(WatermarkOptions options) {
+        return WatermarkRenderer.BOTTOM_RIGHT.equals(WatermarkRenderer.normalizePosition(options.getPosition()))
+                ? 0 : (int) Math.round(options.getAngle());
+    }
+
+    @Override
+    public byte[] readLogoBytes(InputStream logo) throws IOException {
+        int limit = watermarkProperties.getLogoMaxBytes();
+        byte[] bytes = logo.readNBytes(limit + 1);
+        if (bytes.length > limit) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "水印图片文件过大");
+        }
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BufferedImage readLogo(byte[] logoBytes) throws IOException {
+        try (ImageSource logoSource = openImage(new ByteArrayInputStream(logoBytes))) {
+            if (logoSource.getPixels() > watermarkProperties.getMaxSourcePixels()) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "水印图片像素数超过上限");
+            }
+            return logoSource.read(logoSource.subsamplingFor(watermarkProperties.getLogoMaxPixels()));
+        }
+    }
+
+    private MemoryBudget.Reservation reserve(long bytes, long timeoutMs) {
+        try {
+            MemoryBudget.Reservation reservation = memoryBudget.tryReserve(bytes, timeoutMs);
+            if (reservation == null) {
+                rejectedBusy.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后重试");
+            }
+            return reservation;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后重试");
+        }
+    }
+
+    /**
+     * 输出格式：优先使用请求参数，否则与原图一致；原图格式无法写出时退回 png
+     */
+    private String resolveFormat(String requested, String sourceFormat) {
+        if (requested != null && !requested.isBlank()) {
+            String format = ImageEncoder.normalize(requested);
+            if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的输出格式：" + requested);
+            }
+            return format;
+        }
+        String format = ImageEncoder.normalize(sourceFormat);
+        return ImageIO.getImageWritersByFormatName(format).hasNext() ? format : "png";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long count = processed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("processed", count);
+        stats.put("servedFromCache", servedFromCache.sum());
+        stats.put("failed", failed.sum());
+        stats.put("subsampled", subsampled.sum());
+        stats.put("rejectedBusy", rejectedBusy.sum());
+        stats.put("sourceMegapixels", sourcePixels.sum() / 1_000_000L);
+        stats.put("avgMillis", count == 0 ? 0 : processNanos.sum() / count / 1_000_000L);
+        long pixels = compositePixels.sum();
+        // 每百万像素的合成耗时（含取得水印），配合 watermark.stamp-cache-enabled 开关对比缓存效果
+        stats.put("compositeMicrosPerMegapixel", pixels == 0 ? 0 : compositeNanos.sum() * 1000L / pixels);
+        // 其中取得水印（缓存命中或渲染）的平均耗时
+        long stampCount = stampCalls.sum();
+        stats.put("avgStampMicros", stampCount == 0 ? 0 : stampNanos.sum() / stampCount / 1000L);
+        stats.put("memoryBudgetMb", memoryBudget.getTotalMb());
+        stats.put("memoryAvailableMb", memoryBudget.getAvailableMb());
+        stats.put("waiting", memoryBudget.getQueueLength());
+        return stats;
+    }
+
+    /**
+     * 在缓存的渲染回调中传递 logo 解码失败
+     */
+    private static final class LogoDecodeException extends RuntimeException {
+
+        private LogoDecodeException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * 写响应的同时写入结果缓存；缓存写入失败只放弃缓存，不影响响应
+     */
+    private static final class CachingOutputStream extends FilterOutputStream {
+
+        private final WatermarkResultCache.Writer cacheWriter;
+
+        private boolean cacheFailed;
+
+        private CachingOutputStream(OutputStream out, WatermarkResultCache.Writer cacheWriter) {
+            super(out);
+            this.cacheWriter = cacheWriter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (!cacheFailed) {
+                try {
+                    cacheWriter.write(b);
+                } catch (IOException e) {
+                    abortCache();
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (!cacheFailed) {
+                try {
+                    cacheWriter.write(b, off, len);
+                } catch (IOException e) {
+                    abortCache();
+                }
+            }
+        }
+
+        /**
+         * 响应写完后提交缓存
+         */
+        void commit() {
+            if (cacheFailed) {
+                return;
+            }
+            try {
+                cacheWriter.commit();
+            } catch (IOException e) {
+                abortCache();
+            }
+        }
+
+        private void abortCache() {
+            cacheFailed = true;
+            cacheWriter.abort();
+        }
+    }
+}
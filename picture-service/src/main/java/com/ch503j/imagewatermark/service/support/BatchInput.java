@@ -0,0 +1,23 @@
+package com.ch503j.imagewatermark.service.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 批量任务中的一张图片
+ *
+ * @param name   结果 ZIP 中使用的名称（已去掉非法路径）
+ * @param size   文件大小（字节），未知时为 -1
+ * @param opener 打开输入流
+ */
+public record BatchInput(String name, long size, Opener opener) {
+
+    public InputStream open() throws IOException {
+        return opener.open();
+    }
+
+    @FunctionalInterface
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+}
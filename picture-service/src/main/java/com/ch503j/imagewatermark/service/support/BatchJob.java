@@ -0,0 +1,215 @@
+package com.ch503j.imagewatermark.service.support;
+
+import com.ch503j.imagewatermark.pojo.dto.WatermarkOptions;
+import com.ch503j.imagewatermark.pojo.vo.BatchJobVO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 批量加水印任务
+ * <p>
+ * 上传的文件在提交时移动到任务目录（multipart 临时文件在请求结束后会被删除），任务结束后删除；
+ * 结果 ZIP 在下载时边处理边输出，不落盘。
+ */
+public class BatchJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+
+    private final int total;
+
+    /**
+     * 原图和 logo 在任务结束时释放，已结束的任务只保留统计用于查询状态
+     */
+    private volatile List<BatchInput> inputs;
+
+    private final WatermarkOptions options;
+
+    private volatile byte[] logoBytes;
+
+    private final Path workDir;
+
+    private final Closeable resources;
+
+    /**
+     * 开始处理的时间（下载开始时），吞吐按此计算
+     */
+    private volatile long startMillis = System.currentTimeMillis();
+
+    private volatile long endMillis;
+
+    private volatile Status status = Status.RUNNING;
+
+    private volatile String error;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private volatile BlockingQueue<?> decodeQueue;
+
+    private volatile BlockingQueue<?> encodeQueue;
+
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder inputBytes = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+
+    /**
+     * 降采样输出的图片：文件名和原图 / 结果尺寸
+     */
+    private final Queue<String> subsampled = new ConcurrentLinkedQueue<>();
+
+    public BatchJob(String id, List<BatchInput> inputs, WatermarkOptions options, byte[] logoBytes,
+                    Path workDir, Closeable resources) {
+        this.id = id;
+        this.total = inputs.size();
+        this.inputs = inputs;
+        this.options = options;
+        this.logoBytes = logoBytes;
+        this.workDir = workDir;
+        this.resources = resources;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<BatchInput> getInputs() {
+        return inputs;
+    }
+
+    public WatermarkOptions getOptions() {
+        return options;
+    }
+
+    public byte[] getLogoBytes() {
+        return logoBytes;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    /**
+     * 请求取消，流水线各阶段在处理下一张图片前检查
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * 开始处理
+     */
+    public void start(BlockingQueue<?> decodeQueue, BlockingQueue<?> encodeQueue) {
+        this.startMillis = System.currentTimeMillis();
+        this.decodeQueue = decodeQueue;
+        this.encodeQueue = encodeQueue;
+    }
+
+    public void recordDecoded(long bytes) {
+        decoded.increment();
+        if (bytes > 0) {
+            inputBytes.add(bytes);
+        }
+    }
+
+    public void recordSubsampled(String name, int sourceWidth, int sourceHeight, int width, int height) {
+        subsampled.add(name + ": " + sourceWidth + "x" + sourceHeight + " -> " + width + "x" + height);
+    }
+
+    public List<String> getSubsampled() {
+        return List.copyOf(subsampled);
+    }
+
+    public void recordSucceeded(long bytes) {
+        succeeded.increment();
+        outputBytes.add(bytes);
+    }
+
+    public void recordFailed() {
+        failed.increment();
+    }
+
+    /**
+     * 结束任务：记录状态并释放任务目录、打开的 ZIP 文件、原图列表和 logo
+     */
+    public synchronized void finish(Status finalStatus, String errorMessage) {
+        if (isFinished()) {
+            return;
+        }
+        this.error = errorMessage;
+        this.endMillis = System.currentTimeMillis();
+        this.decodeQueue = null;
+        this.encodeQueue = null;
+        this.status = finalStatus;
+        this.inputs = List.of();
+        this.logoBytes = null;
+        release();
+    }
+
+    private void release() {
+        try {
+            if (resources != null) {
+                resources.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败不影响结果
+        }
+        if (workDir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // 临时目录删除失败时由系统清理
+        }
+    }
+
+    public BatchJobVO toVO() {
+        long elapsed = (isFinished() ? endMillis : System.currentTimeMillis()) - startMillis;
+        double seconds = Math.max(elapsed, 1) / 1000.0;
+        double inputMb = inputBytes.sum() / 1024.0 / 1024.0;
+
+        BatchJobVO vo = new BatchJobVO();
+        vo.setJobId(id);
+        vo.setStatus(status.name());
+        vo.setTotal(total);
+        vo.setDecoded(decoded.sum());
+        vo.setSucceeded(succeeded.sum());
+        vo.setFailed(failed.sum());
+        vo.setSubsampled(subsampled.size());
+        vo.setInputMb(inputMb);
+        vo.setOutputMb(outputBytes.sum() / 1024.0 / 1024.0);
+        BlockingQueue<?> decodeQueueRef = decodeQueue;
+        BlockingQueue<?> encodeQueueRef = encodeQueue;
+        vo.setDecodeQueue(decodeQueueRef == null ? 0 : decodeQueueRef.size());
+        vo.setEncodeQueue(encodeQueueRef == null ? 0 : encodeQueueRef.size());
+        vo.setElapsedMillis(elapsed);
+        vo.setImagesPerSecond((succeeded.sum() + failed.sum()) / seconds);
+        vo.setMbPerSecond(inputMb / seconds);
+        vo.setError(error);
+        return vo;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ch503j.imagewatermark.service.support;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * 图片编码，直接写到输出流（不在内存中生成完整的结果文件）
+ */
+public final class ImageEncoder {
+
+    private ImageEncoder() {
+    }
+
+    /**
+     * 输出格式对应的 Content-Type
+     */
+    public static String contentType(String format) {
+        return isJpeg(format) ? "image/jpeg" : "image/" + format;
+    }
+
+    /**
+     * 规范化输出格式：jpeg / jpg 统一为 jpeg，其他原样返回（小写）
+     */
+    public static String normalize(String format) {
+        String lower = format.toLowerCase();
+        return isJpeg(lower) ? "jpeg" : lower;
+    }
+
+    public static boolean isJpeg(String format) {
+        return "jpeg".equalsIgnoreCase(format) || "jpg".equalsIgnoreCase(format);
+    }
+
+    /**
+     * 编码并写出
+     *
+     * @param image   图片
+     * @param format  输出格式
+     * @param quality JPEG 质量（0~1）
+     * @param out     输出流（不会被关闭）
+     */
+    public static void encode(BufferedImage image, String format, float quality, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("不支持的输出格式：" + format);
+        }
+        ImageWriter writer = writers.next();
+
+        BufferedImage output = image;
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (isJpeg(format)) {
+            // JPEG 不支持透明通道
+            if (image.getColorModel().hasAlpha()) {
+                output = toRgb(image);
+            }
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+
+        ImageOutputStream stream = new MemoryCacheImageOutputStream(out);
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(output, null, null), param);
+            stream.flush();
+        } finally {
+            writer.dispose();
+            stream.close();
+        }
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, java.awt.Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ch503j.imagewatermark.service.support;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * 待解码的图片
+ * <p>
+ * 打开时只读取文件头获得尺寸和格式，不解码像素；真正解码时可指定降采样倍数，
+ * 由 ImageReader 在解码过程中直接跳过像素，不会先生成原尺寸的图片。
+ */
+public class ImageSource implements Closeable {
+
+    private final ImageInputStream input;
+
+    private final ImageReader reader;
+
+    private final int width;
+
+    private final int height;
+
+    private final String formatName;
+
+    private ImageSource(ImageInputStream input, ImageReader reader) throws IOException {
+        this.input = input;
+        this.reader = reader;
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        this.formatName = reader.getFormatName().toLowerCase();
+    }
+
+    /**
+     * 打开图片流并读取文件头
+     *
+     * @return 图片；无法识别的格式返回 null
+     */
+    public static ImageSource open(InputStream in) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(in);
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        try {
+            return new ImageSource(input, reader);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            input.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getPixels() {
+        return (long) width * height;
+    }
+
+    /**
+     * 格式名称，如 jpeg、png
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * 为了让解码后像素数不超过 maxPixels 所需的降采样倍数（1 表示不降采样）
+     */
+    public int subsamplingFor(long maxPixels) {
+        long pixels = getPixels();
+        if (pixels <= maxPixels) {
+            return 1;
+        }
+        int factor = (int) Math.ceil(Math.sqrt((double) pixels / maxPixels));
+        while ((long) ceilDiv(width, factor) * ceilDiv(height, factor) > maxPixels) {
+            factor++;
+        }
+        return factor;
+    }
+
+    /**
+     * 按降采样倍数解码后的像素数
+     */
+    public long decodedPixels(int subsampling) {
+        return (long) ceilDiv(width, subsampling) * ceilDiv(height, subsampling);
+    }
+
+    /**
+     * 解码后每个像素占用的字节数，按 ImageReader 默认输出的像素布局计算（如 16 位 RGBA 的 PNG 为 8 字节）；
+     * 无法确定时按 8 字节估算
+     */
+    public int bytesPerPixel() throws IOException {
+        ImageTypeSpecifier type = defaultType();
+        if (type == null) {
+            return 8;
+        }
+        SampleModel model = type.getSampleModel(1, 1);
+        int bits = DataBuffer.getDataTypeSize(model.getDataType());
+        if (!(model instanceof SinglePixelPackedSampleModel)) {
+            bits *= model.getNumBands();
+        }
+        return Math.max(1, (bits + 7) / 8);
+    }
+
+    /**
+     * 解码结果的 BufferedImage 类型（如 TYPE_3BYTE_BGR），无法确定时为 TYPE_CUSTOM
+     */
+    public int imageType() throws IOException {
+        ImageTypeSpecifier type = defaultType();
+        return type == null ? BufferedImage.TYPE_CUSTOM : type.getBufferedImageType();
+    }
+
+    /**
+     * 不指定目标类型时 ImageReader 解码使用的像素布局
+     */
+    private ImageTypeSpecifier defaultType() throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        return types == null || !types.hasNext() ? null : types.next();
+    }
+
+    /**
+     * 解码第一帧
+     *
+     * @param subsampling 降采样倍数
+     */
+    public BufferedImage read(int subsampling) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return reader.read(0, param);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
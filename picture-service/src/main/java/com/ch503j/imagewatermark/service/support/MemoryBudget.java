@@ -0,0 +1,77 @@
+package com.ch503j.imagewatermark.service.support;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解码内存预算
+ * <p>
+ * 以 MB 为单位的信号量：每个请求在解码前按预估的像素内存申请许可，处理完成后归还，
+ * 保证同时驻留在堆中的图片总大小不超过预算。单个请求超过总预算时按总预算申请（独占）。
+ */
+public class MemoryBudget {
+
+    private static final long MB = 1024L * 1024L;
+
+    private final int totalMb;
+
+    private final Semaphore permits;
+
+    public MemoryBudget(int totalMb) {
+        this.totalMb = Math.max(1, totalMb);
+        this.permits = new Semaphore(this.totalMb, true);
+    }
+
+    /**
+     * 申请内存
+     *
+     * @param bytes     预估字节数
+     * @param timeoutMs 等待超时时间
+     * @return 申请成功返回 Reservation（需关闭归还），超时返回 null
+     */
+    public Reservation tryReserve(long bytes, long timeoutMs) throws InterruptedException {
+        int mb = (int) Math.min(totalMb, Math.max(1, (bytes + MB - 1) / MB));
+        if (!permits.tryAcquire(mb, timeoutMs, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        return new Reservation(mb);
+    }
+
+    public int getTotalMb() {
+        return totalMb;
+    }
+
+    public int getAvailableMb() {
+        return permits.availablePermits();
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * 已申请的内存，关闭时归还（重复关闭无副作用）
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final int mb;
+
+        private boolean released;
+
+        private Reservation(int mb) {
+            this.mb = mb;
+        }
+
+        public int getMb() {
+            return mb;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                permits.release(mb);
+            }
+        }
+    }
+}
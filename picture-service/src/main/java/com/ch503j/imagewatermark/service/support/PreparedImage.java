@@ -0,0 +1,69 @@
+package com.ch503j.imagewatermark.service.support;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 已解码、待加水印 / 编码的图片
+ * <p>
+ * 持有解码时申请的内存预算，编码完成后必须关闭以归还预算
+ */
+public class PreparedImage implements AutoCloseable {
+
+    private BufferedImage image;
+
+    private final String format;
+
+    private final int sourceWidth;
+
+    private final int sourceHeight;
+
+    private final int subsampling;
+
+    private final MemoryBudget.Reservation reservation;
+
+    public PreparedImage(BufferedImage image, String format, int sourceWidth, int sourceHeight, int subsampling,
+                         MemoryBudget.Reservation reservation) {
+        this.image = image;
+        this.format = format;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.subsampling = subsampling;
+        this.reservation = reservation;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * 输出格式
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * 解码时的降采样倍数，1 表示原尺寸
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    public boolean isSubsampled() {
+        return subsampling > 1;
+    }
+
+    @Override
+    public void close() {
+        image = null;
+        reservation.close();
+    }
+}
@@ -0,0 +1,453 @@
+package com.ch503j.imagewatermark.service.support;
+
+import com.ch503j.imagewatermark.config.WatermarkProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 水印像素合成
+ * <p>
+ * 直接读写 DataBufferInt / DataBufferByte（不走 getRGB / setRGB，也不走 Java2D 的通用合成管线），
+ * 把图片按行切成若干条带，在 ForkJoinPool 上并行做 SRC_OVER 混合。
+ * 水印是预乘 alpha 的 INT_ARGB_PRE，混合公式为 dst = src + dst * (255 - srcAlpha) / 255。
+ */
+@Component
+public class RasterCompositor {
+
+    /**
+     * 条带最少行数，避免任务切得过碎
+     */
+    private static final int MIN_BAND_ROWS = 32;
+
+    @Resource
+    private WatermarkProperties watermarkProperties;
+
+    private ForkJoinPool pool;
+
+    private final LongAdder parallelCalls = new LongAdder();
+    private final LongAdder serialCalls = new LongAdder();
+    private final LongAdder parallelNanos = new LongAdder();
+    private final LongAdder parallelPixels = new LongAdder();
+    private final LongAdder serialNanos = new LongAdder();
+    private final LongAdder serialPixels = new LongAdder();
+    private final LongAdder converted = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(resolveParallelism(watermarkProperties.getCompositeParallelism()));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdown();
+    }
+
+    /**
+     * 转换为可直接合成的图片类型
+     * <p>
+     * INT_RGB / INT_ARGB / INT_ARGB_PRE / 3BYTE_BGR / 4BYTE_ABGR 原样返回，
+     * 灰度、索引色等其他类型转换为 INT_RGB（有透明通道时为 INT_ARGB），否则彩色水印会被量化
+     */
+    public BufferedImage prepare(BufferedImage image) {
+        if (!needsConversion(image.getType())) {
+            return image;
+        }
+        converted.increment();
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * 把水印合成到目标图片上
+     *
+     * @param target     目标图片，须先经过 {@link #prepare(BufferedImage)}
+     * @param stamp      水印
+     * @param placements 水印左上角坐标，依次为 x0, y0, x1, y1 ...
+     */
+    public void composite(BufferedImage target, WatermarkStamp stamp, int[] placements) {
+        composite(target, List.of(new Layer(stamp, placements)));
+    }
+
+    /**
+     * 把多层水印依次合成到目标图片上（每个条带内按层顺序混合，只切分一次任务）
+     */
+    public void composite(BufferedImage target, List<Layer> layers) {
+        long start = System.nanoTime();
+        long pixels = (long) target.getWidth() * target.getHeight();
+        boolean parallel = pool.getParallelism() > 1 && pixels >= watermarkProperties.getParallelMinPixels();
+        compositeWith(parallel ? pool : null, target, layers);
+        long elapsed = System.nanoTime() - start;
+        if (parallel) {
+            parallelCalls.increment();
+            parallelNanos.add(elapsed);
+            parallelPixels.add(pixels);
+        } else {
+            serialCalls.increment();
+            serialNanos.add(elapsed);
+            serialPixels.add(pixels);
+        }
+    }
+
+    /**
+     * 合成耗时测试：在合成的测试图上分别用 1~N 个线程平铺合成，返回每百万像素耗时，用于确认多核扩展性和选择并行度
+     *
+     * @param megapixels 测试图大小（百万像素）
+     * @param stamp      水印
+     * @param placements 水印坐标
+     * @param width      测试图宽度
+     * @param height     测试图高度
+     */
+    public Map<String, Object> benchmark(int megapixels, WatermarkStamp stamp, int[] placements, int width, int height) {
+        int maxParallelism = resolveParallelism(watermarkProperties.getCompositeParallelism());
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        List<Layer> layers = List.of(new Layer(stamp, placements));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("width", width);
+        result.put("height", height);
+        result.put("stamps", placements.length / 2);
+        Map<Integer, Long> microsPerMegapixel = new LinkedHashMap<>();
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism = nextParallelism(parallelism, maxParallelism)) {
+            ForkJoinPool benchmarkPool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+            try {
+                // 第一次作为预热
+                compositeWith(benchmarkPool, target, layers);
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < 3; i++) {
+                    long start = System.nanoTime();
+                    compositeWith(benchmarkPool, target, layers);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                microsPerMegapixel.put(parallelism, best / 1000 / Math.max(1, megapixels));
+            } finally {
+                if (benchmarkPool != null) {
+                    benchmarkPool.shutdown();
+                }
+            }
+        }
+        result.put("microsPerMegapixel", microsPerMegapixel);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parallelism", pool.getParallelism());
+        stats.put("parallelMinPixels", watermarkProperties.getParallelMinPixels());
+        stats.put("parallelCalls", parallelCalls.sum());
+        stats.put("parallelMicrosPerMegapixel", perMegapixel(parallelNanos.sum(), parallelPixels.sum()));
+        stats.put("serialCalls", serialCalls.sum());
+        stats.put("serialMicrosPerMegapixel", perMegapixel(serialNanos.sum(), serialPixels.sum()));
+        stats.put("converted", converted.sum());
+        stats.put("poolActiveThreads", pool.getActiveThreadCount());
+        stats.put("poolSteals", pool.getStealCount());
+        return stats;
+    }
+
+    private void compositeWith(ForkJoinPool forkJoinPool, BufferedImage target, List<Layer> layers) {
+        Blender blender = Blender.of(target);
+        int height = target.getHeight();
+        if (forkJoinPool == null) {
+            blender.blendRows(layers, 0, height);
+            return;
+        }
+        // 每个线程大约分到 4 个条带，便于负载均衡（水印可能集中在部分行）
+        int bandRows = Math.max(MIN_BAND_ROWS, height / (forkJoinPool.getParallelism() * 4));
+        forkJoinPool.invoke(new BandTask(blender, layers, 0, height, bandRows));
+    }
+
+    /**
+     * 该类型的图片在 {@link #prepare(BufferedImage)} 中是否需要复制为 INT_RGB / INT_ARGB（每像素 4 字节），
+     * 解码前用于估算内存预算
+     */
+    public static boolean needsConversion(int imageType) {
+        return switch (imageType) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+                    BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> false;
+            default -> true;
+        };
+    }
+
+    private static int resolveParallelism(int configured) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return configured <= 0 ? processors : Math.min(configured, Math.max(processors, 1) * 2);
+    }
+
+    private static int nextParallelism(int current, int max) {
+        return current == max ? max + 1 : Math.min(max, current * 2);
+    }
+
+    private static long perMegapixel(long nanos, long pixels) {
+        return pixels == 0 ? 0 : nanos * 1000L / pixels;
+    }
+
+    /**
+     * 一层水印及其坐标
+     *
+     * @param stamp      水印
+     * @param placements 水印左上角坐标，依次为 x0, y0, x1, y1 ...
+     */
+    public record Layer(WatermarkStamp stamp, int[] placements) {
+    }
+
+    /**
+     * 按行二分的合成任务
+     */
+    private static final class BandTask extends RecursiveAction {
+
+        private final Blender blender;
+        private final List<Layer> layers;
+        private final int fromRow;
+        private final int toRow;
+        private final int bandRows;
+
+        private BandTask(Blender blender, List<Layer> layers, int fromRow, int toRow, int bandRows) {
+            this.blender = blender;
+            this.layers = layers;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= bandRows) {
+                blender.blendRows(layers, fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new BandTask(blender, layers, fromRow, middle, bandRows),
+                    new BandTask(blender, layers, middle, toRow, bandRows));
+        }
+    }
+
+    /**
+     * 针对目标图片像素布局的混合实现
+     */
+    private abstract static class Blender {
+
+        static Blender of(BufferedImage target) {
+            WritableRaster raster = target.getRaster();
+            return switch (target.getType()) {
+                case BufferedImage.TYPE_INT_RGB -> new IntBlender(raster, IntBlender.OPAQUE);
+                case BufferedImage.TYPE_INT_ARGB -> new IntBlender(raster, IntBlender.STRAIGHT);
+                case BufferedImage.TYPE_INT_ARGB_PRE -> new IntBlender(raster, IntBlender.PREMULTIPLIED);
+                default -> new ByteBlender(raster);
+            };
+        }
+
+        /**
+         * 合成 [fromRow, toRow) 行范围内的所有水印
+         */
+        void blendRows(List<Layer> layers, int fromRow, int toRow) {
+            for (Layer layer : layers) {
+                Raster stampRaster = layer.stamp().image().getRaster();
+                int[] src = ((DataBufferInt) stampRaster.getDataBuffer()).getData();
+                int stampWidth = stampRaster.getWidth();
+                int stampHeight = stampRaster.getHeight();
+                int[] placements = layer.placements();
+                for (int i = 0; i < placements.length; i += 2) {
+                    int x = placements[i];
+                    int y = placements[i + 1];
+                    int rowStart = Math.max(fromRow, y);
+                    int rowEnd = Math.min(toRow, y + stampHeight);
+                    int colStart = Math.max(0, x);
+                    int colEnd = Math.min(width(), x + stampWidth);
+                    if (rowStart >= rowEnd || colStart >= colEnd) {
+                        continue;
+                    }
+                    for (int row = rowStart; row < rowEnd; row++) {
+                        blendSpan(src, (row - y) * stampWidth + (colStart - x), row, colStart, colEnd - colStart);
+                    }
+                }
+            }
+        }
+
+        abstract int width();
+
+        /**
+         * 把水印的一段像素混合到目标图片的一行上
+         *
+         * @param src       水印像素（INT_ARGB_PRE）
+         * @param srcOffset 水印起始下标
+         * @param row       目标行
+         * @param col       目标起始列
+         * @param length    像素个数
+         */
+        abstract void blendSpan(int[] src, int srcOffset, int row, int col, int length);
+
+        /**
+         * x / 255，四舍五入（x 取值 0 ~ 255 * 255）
+         */
+        static int div255(int x) {
+            x += 128;
+            return (x + (x >> 8)) >> 8;
+        }
+    }
+
+    /**
+     * INT_RGB / INT_ARGB / INT_ARGB_PRE
+     */
+    private static final class IntBlender extends Blender {
+
+        static final int OPAQUE = 0;
+        static final int STRAIGHT = 1;
+        static final int PREMULTIPLIED = 2;
+
+        private final int[] data;
+        private final int offset;
+        private final int stride;
+        private final int width;
+        private final int mode;
+
+        IntBlender(WritableRaster raster, int mode) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            this.data = buffer.getData();
+            this.stride = model.getScanlineStride();
+            this.offset = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+            this.width = raster.getWidth();
+            this.mode = mode;
+        }
+
+        @Override
+        int width() {
+            return width;
+        }
+
+        @Override
+        void blendSpan(int[] src, int srcOffset, int row, int col, int length) {
+            int index = offset + row * stride + col;
+            for (int i = 0; i < length; i++, index++) {
+                int s = src[srcOffset + i];
+                int sa = s >>> 24;
+                if (sa == 0) {
+                    continue;
+                }
+                int d = data[index];
+                int inverse = 255 - sa;
+                int r = ((s >> 16) & 0xFF) + div255(((d >> 16) & 0xFF) * inverse);
+                int g = ((s >> 8) & 0xFF) + div255(((d >> 8) & 0xFF) * inverse);
+                int b = (s & 0xFF) + div255((d & 0xFF) * inverse);
+                switch (mode) {
+                    case OPAQUE -> data[index] = (r << 16) | (g << 8) | b;
+                    case PREMULTIPLIED -> data[index] = ((sa + div255((d >>> 24) * inverse)) << 24) | (r << 16) | (g << 8) | b;
+                    default -> data[index] = blendStraight(s, sa, d);
+                }
+            }
+        }
+
+        /**
+         * 目标为非预乘 alpha：按预乘计算后再除以结果 alpha
+         */
+        private static int blendStraight(int s, int sa, int d) {
+            int da = d >>> 24;
+            int inverse = div255(da * (255 - sa));
+            int outAlpha = sa + inverse;
+            if (outAlpha == 0) {
+                return 0;
+            }
+            int r = (((s >> 16) & 0xFF) * 255 + ((d >> 16) & 0xFF) * inverse) / outAlpha;
+            int g = (((s >> 8) & 0xFF) * 255 + ((d >> 8) & 0xFF) * inverse) / outAlpha;
+            int b = ((s & 0xFF) * 255 + (d & 0xFF) * inverse) / outAlpha;
+            return (outAlpha << 24) | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
+        }
+    }
+
+    /**
+     * 3BYTE_BGR / 4BYTE_ABGR（4BYTE_ABGR 为非预乘 alpha）
+     */
+    private static final class ByteBlender extends Blender {
+
+        private final byte[] data;
+        private final int offset;
+        private final int stride;
+        private final int pixelStride;
+        private final int width;
+        private final int redOffset;
+        private final int greenOffset;
+        private final int blueOffset;
+        private final int alphaOffset;
+
+        ByteBlender(WritableRaster raster) {
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+            int[] bandOffsets = model.getBandOffsets();
+            this.data = buffer.getData();
+            this.stride = model.getScanlineStride();
+            this.pixelStride = model.getPixelStride();
+            this.offset = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * pixelStride;
+            this.width = raster.getWidth();
+            // 波段顺序为 R、G、B(、A)，内存中的字节位置由 bandOffsets 给出
+            this.redOffset = bandOffsets[0];
+            this.greenOffset = bandOffsets[1];
+            this.blueOffset = bandOffsets[2];
+            this.alphaOffset = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+        }
+
+        @Override
+        int width() {
+            return width;
+        }
+
+        @Override
+        void blendSpan(int[] src, int srcOffset, int row, int col, int length) {
+            int index = offset + row * stride + col * pixelStride;
+            for (int i = 0; i < length; i++, index += pixelStride) {
+                int s = src[srcOffset + i];
+                int sa = s >>> 24;
+                if (sa == 0) {
+                    continue;
+                }
+                int sr = (s >> 16) & 0xFF;
+                int sg = (s >> 8) & 0xFF;
+                int sb = s & 0xFF;
+                int dr = data[index + redOffset] & 0xFF;
+                int dg = data[index + greenOffset] & 0xFF;
+                int db = data[index + blueOffset] & 0xFF;
+                if (alphaOffset < 0) {
+                    int inverse = 255 - sa;
+                    data[index + redOffset] = (byte) (sr + div255(dr * inverse));
+                    data[index + greenOffset] = (byte) (sg + div255(dg * inverse));
+                    data[index + blueOffset] = (byte) (sb + div255(db * inverse));
+                    continue;
+                }
+                int da = data[index + alphaOffset] & 0xFF;
+                int inverse = div255(da * (255 - sa));
+                int outAlpha = sa + inverse;
+                if (outAlpha == 0) {
+                    continue;
+                }
+                data[index + redOffset] = (byte) Math.min(255, (sr * 255 + dr * inverse) / outAlpha);
+                data[index + greenOffset] = (byte) Math.min(255, (sg * 255 + dg * inverse) / outAlpha);
+                data[index + blueOffset] = (byte) Math.min(255, (sb * 255 + db * inverse) / outAlpha);
+                data[index + alphaOffset] = (byte) outAlpha;
+            }
+        }
+    }
+}
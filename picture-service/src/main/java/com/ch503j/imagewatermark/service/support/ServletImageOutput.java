@@ -0,0 +1,77 @@
+package com.ch503j.imagewatermark.service.support;
+
+import com.ch503j.imagewatermark.service.ImageOutput;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * 输出到 HTTP 响应
+ * <p>
+ * 发送缓存文件时优先使用 Tomcat 的 sendfile：设置请求属性后由连接器在请求线程返回后
+ * 直接用 FileChannel.transferTo 写入 socket（零拷贝）；连接器不支持时退回到写响应流
+ */
+public class ServletImageOutput implements ImageOutput {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 结果图片经过降采样时返回原图尺寸和结果尺寸，如 8000x6000 / 4000x3000
+     */
+    private static final String SOURCE_SIZE_HEADER = "X-Watermark-Source-Size";
+
+    private static final String SUBSAMPLED_SIZE_HEADER = "X-Watermark-Subsampled-Size";
+
+    private final HttpServletRequest request;
+
+    private final HttpServletResponse response;
+
+    private final boolean download;
+
+    public ServletImageOutput(HttpServletRequest request, HttpServletResponse response, boolean download) {
+        this.request = request;
+        this.response = response;
+        this.download = download;
+    }
+
+    @Override
+    public OutputStream open(String contentType) throws IOException {
+        prepareHeaders(contentType);
+        return response.getOutputStream();
+    }
+
+    @Override
+    public void subsampled(int sourceWidth, int sourceHeight, int width, int height) {
+        response.setHeader(SOURCE_SIZE_HEADER, sourceWidth + "x" + sourceHeight);
+        response.setHeader(SUBSAMPLED_SIZE_HEADER, width + "x" + height);
+    }
+
+    @Override
+    public void sendFile(Path file, String contentType, long length) throws IOException {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            ImageOutput.super.sendFile(file, contentType, length);
+            return;
+        }
+        prepareHeaders(contentType);
+        response.setContentLengthLong(length);
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, length);
+    }
+
+    private void prepareHeaders(String contentType) {
+        response.setContentType(contentType);
+        if (download) {
+            response.setHeader("Content-Disposition", "attachment; filename=\"watermark." + contentType.substring(6) + "\"");
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.ch503j.imagewatermark.service.support;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * 水印渲染与合成
+ * <p>
+ * 先把单个水印（文字或图片）按角度、透明度渲染成预乘 alpha 的小图（{@link WatermarkStamp}），
+ * 再按位置参数计算每个水印的坐标，由 {@link RasterCompositor} 做像素合成；前者结果可以缓存。
+ */
+public final class WatermarkRenderer {
+
+    public static final String TILE = "TILE";
+
+    public static final String CENTER = "CENTER";
+
+    public static final String BOTTOM_RIGHT = "BOTTOM_RIGHT";
+
+    /**
+     * 平铺水印个数上限，间距过小时按比例放大网格
+     */
+    public static final int MAX_PLACEMENTS = 10_000;
+
+    private WatermarkRenderer() {
+    }
+
+    /**
+     * 渲染文字水印
+     *
+     * @param text      文字
+     * @param fontName  字体
+     * @param fontSize  字号（像素）
+     * @param color     颜色
+     * @param opacity   透明度（0~1）
+     * @param angle     旋转角度
+     * @param maxPixels 水印图片的最大像素数，超出时缩小字号
+     */
+    public static WatermarkStamp textStamp(String text, String fontName, int fontSize, Color color, float opacity, int angle,
+                                           long maxPixels) {
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D probeGraphics = probe.createGraphics();
+        Font font;
+        FontMetrics metrics;
+        try {
+            probeGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            int size = Math.max(1, fontSize);
+            while (true) {
+                font = new Font(fontName, Font.BOLD, size);
+                metrics = probeGraphics.getFontMetrics(font);
+                long pixels = stampPixels(Math.max(1, metrics.stringWidth(text)), Math.max(1, metrics.getHeight()), angle);
+                if (pixels <= maxPixels || size == 1) {
+                    break;
+                }
+                // 像素数与字号的平方成正比
+                size = Math.max(1, Math.min(size - 1, (int) (size * Math.sqrt((double) maxPixels / pixels))));
+            }
+        } finally {
+            probeGraphics.dispose();
+        }
+        int markWidth = Math.max(1, metrics.stringWidth(text));
+        int markHeight = Math.max(1, metrics.getHeight());
+        Font drawFont = font;
+        int ascent = metrics.getAscent();
+
+        return stamp(markWidth, markHeight, opacity, angle, g -> {
+            g.setFont(drawFont);
+            g.setColor(color);
+            g.drawString(text, 0, ascent);
+        });
+    }
+
+    /**
+     * 渲染图片水印
+     *
+     * @param logo      水印图片
+     * @param width     绘制宽度（高度按比例）
+     * @param opacity   透明度（0~1）
+     * @param angle     旋转角度
+     * @param maxPixels 水印图片的最大像素数，超出时按比例缩小
+     */
+    public static WatermarkStamp logoStamp(BufferedImage logo, int width, float opacity, int angle, long maxPixels) {
+        double scaledWidth = Math.max(1, width);
+        double scaledHeight = Math.min(Integer.MAX_VALUE / 4.0, (double) logo.getHeight() * scaledWidth / logo.getWidth());
+        long pixels = stampPixels(size(scaledWidth), size(scaledHeight), angle);
+        if (pixels > maxPixels) {
+            double scale = Math.sqrt((double) maxPixels / pixels);
+            scaledWidth *= scale;
+            scaledHeight *= scale;
+        }
+        // 取整到至少 1 像素后可能仍超出（极端宽高比），继续按比例缩小
+        while (stampPixels(size(scaledWidth), size(scaledHeight), angle) > maxPixels
+                && (size(scaledWidth) > 1 || size(scaledHeight) > 1)) {
+            scaledWidth *= 0.9;
+            scaledHeight *= 0.9;
+        }
+        int markWidth = size(scaledWidth);
+        int markHeight = size(scaledHeight);
+        return stamp(markWidth, markHeight, opacity, angle,
+                g -> g.drawImage(logo, 0, 0, markWidth, markHeight, null));
+    }
+
+    private static int size(double length) {
+        return Math.max(1, (int) length);
+    }
+
+    /**
+     * 水印旋转后（含抗锯齿边距）的像素数，与 {@link #stamp} 的尺寸计算一致
+     */
+    private static long stampPixels(int markWidth, int markHeight, int angle) {
+        double radians = Math.toRadians(angle);
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        double width = Math.ceil(markWidth * cos + markHeight * sin) + 2;
+        double height = Math.ceil(markWidth * sin + markHeight * cos) + 2;
+        return (long) Math.min(Long.MAX_VALUE, width * height);
+    }
+
+    private static WatermarkStamp stamp(int markWidth, int markHeight, float opacity, int angle, Painter painter) {
+        double radians = Math.toRadians(angle);
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        // 旋转后的外接矩形，四周各留 1 像素给抗锯齿
+        int width = (int) Math.ceil(markWidth * cos + markHeight * sin) + 2;
+        int height = (int) Math.ceil(markWidth * sin + markHeight * cos) + 2;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, clamp(opacity)));
+            g.translate(width / 2.0, height / 2.0);
+            g.rotate(radians);
+            g.translate(-markWidth / 2.0, -markHeight / 2.0);
+            painter.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return new WatermarkStamp(image, markWidth, markHeight);
+    }
+
+    /**
+     * 计算水印在目标图片上的位置（左上角坐标），只返回与图片有交集的位置
+     *
+     * @param width    目标图片宽度
+     * @param height   目标图片高度
+     * @param stamp    水印
+     * @param position 位置：TILE / CENTER / BOTTOM_RIGHT
+     * @param angle    旋转角度（与水印渲染时一致，用于计算平铺网格）
+     * @param spacing  平铺间距，为空时按水印高度计算；水印个数超过 {@link #MAX_PLACEMENTS} 时按比例放大间距
+     * @return 依次为 x0, y0, x1, y1 ...
+     */
+    public static int[] placements(int width, int height, WatermarkStamp stamp, String position, int angle, Integer spacing) {
+        int stampWidth = stamp.image().getWidth();
+        int stampHeight = stamp.image().getHeight();
+        int halfWidth = stampWidth / 2;
+        int halfHeight = stampHeight / 2;
+        switch (normalizePosition(position)) {
+            case BOTTOM_RIGHT -> {
+                int margin = Math.max(stamp.markHeight() / 2, 8);
+                return new int[]{width - margin - stamp.markWidth() / 2 - halfWidth,
+                        height - margin - stamp.markHeight() / 2 - halfHeight};
+            }
+            case CENTER -> {
+                return new int[]{width / 2 - halfWidth, height / 2 - halfHeight};
+            }
+            default -> {
+                // 在旋转后的坐标系里按网格排布，网格覆盖整张图的对角线范围
+                int diagonal = (int) Math.ceil(Math.hypot(width, height));
+                long gap = Math.max(0, spacing != null ? spacing : Math.max(stamp.markHeight() * 2, 16));
+                long stepX = Math.min(diagonal + 1L, Math.max(1L, stamp.markWidth() + gap));
+                long stepY = Math.min(diagonal + 1L, Math.max(1L, stamp.markHeight() + gap));
+                double cells = (double) (diagonal / stepX + 2) * (diagonal / stepY + 2);
+                if (cells > MAX_PLACEMENTS) {
+                    double scale = Math.sqrt(cells / MAX_PLACEMENTS);
+                    stepX = Math.min(diagonal + 1L, (long) Math.ceil(stepX * scale));
+                    stepY = Math.min(diagonal + 1L, (long) Math.ceil(stepY * scale));
+                }
+                double radians = Math.toRadians(angle);
+                double cos = Math.cos(radians);
+                double sin = Math.sin(radians);
+                double centerX = width / 2.0;
+                double centerY = height / 2.0;
+                int[] result = new int[64];
+                int count = 0;
+                int row = 0;
+                for (long y = -diagonal / 2; y < diagonal / 2 + stepY; y += stepY, row++) {
+                    // 隔行错开半个间距
+                    long offset = (row & 1) == 0 ? 0 : stepX / 2;
+                    for (long x = -diagonal / 2 - offset; x < diagonal / 2 + stepX; x += stepX) {
+                        int stampX = (int) Math.round(centerX + x * cos - y * sin) - halfWidth;
+                        int stampY = (int) Math.round(centerY + x * sin + y * cos) - halfHeight;
+                        if (stampX < width && stampY < height && stampX + stampWidth > 0 && stampY + stampHeight > 0) {
+                            if (count == MAX_PLACEMENTS * 2) {
+                                return result;
+                            }
+                            if (count == result.length) {
+                                result = Arrays.copyOf(result, Math.min(count * 2, MAX_PLACEMENTS * 2));
+                            }
+                            result[count++] = stampX;
+                            result[count++] = stampY;
+                        }
+                    }
+                }
+                return Arrays.copyOf(result, count);
+            }
+        }
+    }
+
+    /**
+     * 位置参数规范化，无法识别的按平铺处理
+     */
+    public static String normalizePosition(String position) {
+        if (position == null) {
+            return TILE;
+        }
+        String upper = position.toUpperCase();
+        return CENTER.equals(upper) || BOTTOM_RIGHT.equals(upper) ? upper : TILE;
+    }
+
+    public static Color parseColor(String color) {
+        try {
+            return Color.decode(color == null ? "#FFFFFF" : color);
+        } catch (NumberFormatException e) {
+            return Color.WHITE;
+        }
+    }
+
+    private static float clamp(float opacity) {
+        return Math.max(0f, Math.min(1f, opacity));
+    }
+
+    /**
+     * 在水印坐标系（左上角为原点、未旋转）中绘制水印内容
+     */
+    @FunctionalInterface
+    private interface Painter {
+        void paint(Graphics2D g);
+    }
+}
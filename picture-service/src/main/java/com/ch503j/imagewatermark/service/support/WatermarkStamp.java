@@ -0,0 +1,20 @@
+package com.ch503j.imagewatermark.service.support;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 预先栅格化好的单个水印
+ *
+ * @param image      已旋转、已乘透明度的水印图（TYPE_INT_ARGB_PRE）
+ * @param markWidth  旋转前水印宽度，用于计算平铺间距
+ * @param markHeight 旋转前水印高度
+ */
+public record WatermarkStamp(BufferedImage image, int markWidth, int markHeight) {
+
+    /**
+     * 占用内存（字节）
+     */
+    public long bytes() {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ch503j.userservice.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 字符串布隆过滤器（线程安全）
+ * <p>
+ * mightContain 返回 false 时一定不存在，返回 true 时可能存在（有误判），不支持删除。
+ * 位数组和哈希函数个数按预计元素数和目标误判率计算。
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    private final double expectedFpp;
+
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions 预计元素数
+     * @param fpp                目标误判率（0~1）
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1L, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        // 按 64 位对齐
+        this.bitSize = Math.max(64L, (m + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (bitSize / 64));
+        this.expectedFpp = fpp;
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            setBit(index);
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 位数组占用的字节数
+     */
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    public long insertions() {
+        return insertions.sum();
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public double expectedFpp() {
+        return expectedFpp;
+    }
+
+    /**
+     * 按当前插入数量估算的理论误判率：(1 - e^(-kn/m))^k
+     */
+    public double currentFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.sum() / bitSize), hashCount);
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * FNV-1a 64 位哈希，再做一次混合打散低位
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
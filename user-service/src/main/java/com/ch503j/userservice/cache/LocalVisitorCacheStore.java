@@ -0,0 +1,68 @@
+package com.ch503j.userservice.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地内存版二级缓存，单节点部署或没有共享缓存时使用
+ * <p>
+ * 条目数达到上限时先清理过期条目，仍然满则放弃写入（一级缓存和数据库仍可兜底）
+ */
+public class LocalVisitorCacheStore implements VisitorCacheStore {
+
+    private final Map<String, Expiring> entries = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    public LocalVisitorCacheStore(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public VisitorSession get(String visitorId) {
+        Expiring entry = entries.get(visitorId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt() < System.currentTimeMillis()) {
+            entries.remove(visitorId, entry);
+            return null;
+        }
+        return entry.session();
+    }
+
+    @Override
+    public void put(VisitorSession session, long ttlMillis) {
+        if (entries.size() >= maxEntries && !entries.containsKey(session.visitorId())) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(session.visitorId(), new Expiring(session, System.currentTimeMillis() + ttlMillis));
+    }
+
+    @Override
+    public void evict(String visitorId) {
+        entries.remove(visitorId);
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Expiring> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expireAt() < now) {
+                it.remove();
+            }
+        }
+    }
+
+    private record Expiring(VisitorSession session, long expireAt) {
+    }
+}
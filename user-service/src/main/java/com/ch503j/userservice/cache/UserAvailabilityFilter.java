@@ -0,0 +1,214 @@
+package com.ch503j.userservice.cache;
+
+import com.ch503j.userservice.mapper.UserMapper;
+import com.ch503j.userservice.pojo.entity.User;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * userId / phone 可用性预检
+ * <p>
+ * 内存中维护两个布隆过滤器，定期按主键分页全量重建（过滤器不支持删除，重建顺便清理已注销的数据）。
+ * 过滤器判定一定不存在时直接返回可用，不查数据库；判定可能存在时才查库确认。
+ * 重建期间新注册的用户会暂存下来，切换到新过滤器后补录，避免漏判。
+ */
+@Slf4j
+@Component
+public class UserAvailabilityFilter {
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Value("${user.availability-filter.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 目标误判率
+     */
+    @Value("${user.availability-filter.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 重建时按当前用户数预留的增长比例
+     */
+    @Value("${user.availability-filter.growth-factor:1.5}")
+    private double growthFactor;
+
+    /**
+     * 重建时每页读取的行数
+     */
+    @Value("${user.availability-filter.page-size:5000}")
+    private int pageSize;
+
+    private volatile Filters filters;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * 重建期间新增的 userId / phone，切换后补录
+     */
+    private final Queue<String[]> addedDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder possibleHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile long lastRebuildMillis;
+    private volatile long lastRebuildTime;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    /**
+     * 定期全量重建
+     */
+    @Scheduled(initialDelayString = "${user.availability-filter.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${user.availability-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            long expected = (long) (userMapper.selectCount(null) * growthFactor) + 1024;
+            Filters next = new Filters(new BloomFilter(expected, fpp), new BloomFilter(expected, fpp));
+
+            long afterId = Long.MIN_VALUE;
+            while (true) {
+                List<User> page = userMapper.selectIdentityPage(afterId, pageSize);
+                for (User user : page) {
+                    next.put(user.getUserId(), user.getPhone());
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+
+            filters = next;
+            // 切换后再补录重建期间的新增，切换之后的新增直接写入新过滤器
+            String[] added;
+            while ((added = addedDuringRebuild.poll()) != null) {
+                next.put(added[0], added[1]);
+            }
+
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            lastRebuildTime = System.currentTimeMillis();
+            log.info("userId/phone 布隆过滤器重建完成：{} 条，占用 {} 字节，耗时 {} ms",
+                    next.userIds().insertions(), next.memoryBytes(), lastRebuildMillis);
+        } catch (Exception e) {
+            log.warn("userId/phone 布隆过滤器重建失败，继续使用旧过滤器", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 记录新注册的 userId / phone
+     */
+    public void add(String userId, String phone) {
+        if (rebuilding.get()) {
+            addedDuringRebuild.add(new String[]{userId, phone});
+        }
+        Filters current = filters;
+        if (current != null) {
+            current.put(userId, phone);
+        }
+    }
+
+    /**
+     * userId 是否可能已存在
+     */
+    public boolean mightContainUserId(String userId) {
+        Filters current = filters;
+        return record(current == null || current.userIds().mightContain(userId));
+    }
+
+    /**
+     * 手机号是否可能已存在
+     */
+    public boolean mightContainPhone(String phone) {
+        Filters current = filters;
+        return record(current == null || current.phones().mightContain(phone));
+    }
+
+    /**
+     * 过滤器判定可能存在、查库后实际不存在时调用，用于统计实际误判率
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * 过滤器统计信息
+     */
+    public Map<String, Object> stats() {
+        Filters current = filters;
+        long falsePositiveCount = falsePositives.sum();
+        long missCount = definiteMisses.sum();
+        long negatives = falsePositiveCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        stats.put("checks", checks.sum());
+        stats.put("definiteMisses", missCount);
+        stats.put("possibleHits", possibleHits.sum());
+        stats.put("falsePositives", falsePositiveCount);
+        // 实际误判率：实际不存在的值中被判为可能存在的比例
+        stats.put("observedFpp", negatives == 0 ? 0D : (double) falsePositiveCount / negatives);
+        stats.put("targetFpp", fpp);
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("lastRebuildTime", lastRebuildTime);
+        if (current != null) {
+            stats.put("memoryBytes", current.memoryBytes());
+            stats.put("userIdInsertions", current.userIds().insertions());
+            stats.put("phoneInsertions", current.phones().insertions());
+            stats.put("hashCount", current.userIds().hashCount());
+            stats.put("estimatedUserIdFpp", current.userIds().currentFpp());
+            stats.put("estimatedPhoneFpp", current.phones().currentFpp());
+        }
+        return stats;
+    }
+
+    private boolean record(boolean mightContain) {
+        checks.increment();
+        if (mightContain) {
+            possibleHits.increment();
+        } else {
+            definiteMisses.increment();
+        }
+        return mightContain;
+    }
+
+    private record Filters(BloomFilter userIds, BloomFilter phones) {
+
+        void put(String userId, String phone) {
+            if (userId != null && !userId.isEmpty()) {
+                userIds.put(userId);
+            }
+            if (phone != null && !phone.isEmpty()) {
+                phones.put(phone);
+            }
+        }
+
+        long memoryBytes() {
+            return userIds.memoryBytes() + phones.memoryBytes();
+        }
+    }
+}
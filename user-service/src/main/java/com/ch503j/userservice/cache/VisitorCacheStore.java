@@ -0,0 +1,37 @@
+package com.ch503j.userservice.cache;
+
+/**
+ * 游客会话二级缓存
+ * <p>
+ * 多节点部署时可替换为 Redis 等共享实现（声明一个 VisitorCacheStore 类型的 Bean 即可覆盖默认的本地实现）
+ */
+public interface VisitorCacheStore {
+
+    /**
+     * 读取会话
+     *
+     * @param visitorId 访客id
+     * @return 会话摘要，不存在或已过期时返回 null
+     */
+    VisitorSession get(String visitorId);
+
+    /**
+     * 写入会话
+     *
+     * @param session    会话摘要
+     * @param ttlMillis  过期时间（毫秒）
+     */
+    void put(VisitorSession session, long ttlMillis);
+
+    /**
+     * 删除会话
+     *
+     * @param visitorId 访客id
+     */
+    void evict(String visitorId);
+
+    /**
+     * 实现名称（用于监控展示）
+     */
+    String name();
+}
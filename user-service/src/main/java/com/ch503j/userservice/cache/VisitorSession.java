@@ -0,0 +1,53 @@
+package com.ch503j.userservice.cache;
+
+import com.ch503j.userservice.pojo.entity.User;
+import com.ch503j.userservice.pojo.vo.UserVO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 游客会话摘要（缓存中保存的不可变快照）
+ *
+ * @param id             主键
+ * @param userId         用户id
+ * @param visitorId      访客id
+ * @param username       用户名
+ * @param role           账号角色
+ * @param status         账号状态
+ * @param lastIp         最近一次写入数据库的登录ip
+ * @param lastTouchMillis 最近一次写入数据库的登录时间（毫秒）
+ */
+public record VisitorSession(Long id,
+                             String userId,
+                             String visitorId,
+                             String username,
+                             String role,
+                             Integer status,
+                             String lastIp,
+                             long lastTouchMillis) {
+
+    public static VisitorSession of(User user) {
+        LocalDateTime lastSeen = user.getLastSeen();
+        long lastTouch = lastSeen == null ? 0L : lastSeen.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new VisitorSession(user.getId(), user.getUserId(), user.getVisitorId(), user.getUsername(),
+                user.getRole(), user.getStatus(), user.getLastIp(), lastTouch);
+    }
+
+    /**
+     * 返回刷新了登录时间和ip的新快照
+     */
+    public VisitorSession touched(String ip, long nowMillis) {
+        return new VisitorSession(id, userId, visitorId, username, role, status, ip, nowMillis);
+    }
+
+    public UserVO toUserVO() {
+        UserVO userVO = new UserVO();
+        userVO.setUserId(userId);
+        userVO.setVisitorId(visitorId);
+        userVO.setUsername(username);
+        userVO.setRole(role);
+        userVO.setStatus(status);
+        return userVO;
+    }
+}
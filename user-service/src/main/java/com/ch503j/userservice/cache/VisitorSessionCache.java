@@ -0,0 +1,197 @@
+package com.ch503j.userservice.cache;
+
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 游客会话缓存：visitorId -> 用户摘要
+ * <p>
+ * 一级缓存为本地 LRU（带过期时间、限制条目数），一级未命中再查二级缓存（{@link VisitorCacheStore}），
+ * 都未命中才查数据库。回访游客命中缓存时不再查询 user 表，登录时间/ip 也只按间隔写回。
+ */
+@Component
+public class VisitorSessionCache {
+
+    @Resource
+    private VisitorCacheStore visitorCacheStore;
+
+    @Value("${user.visitor-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存过期时间（秒）
+     */
+    @Value("${user.visitor-cache.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    /**
+     * 一级缓存条目数上限
+     */
+    @Value("${user.visitor-cache.max-entries:100000}")
+    private int maxEntries;
+
+    /**
+     * 登录时间写回数据库的最小间隔（秒），ip 变化时立即写回
+     */
+    @Value("${user.visitor-cache.touch-interval-seconds:300}")
+    private long touchIntervalSeconds;
+
+    /**
+     * visitorId -> 会话，按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder dbQueries = new LongAdder();
+    private final LongAdder dbWrites = new LongAdder();
+    private final LongAdder touchesSkipped = new LongAdder();
+    private final LongAdder logins = new LongAdder();
+
+    /**
+     * 读取游客会话
+     *
+     * @param visitorId 访客id
+     * @return 会话摘要，未命中时返回 null
+     */
+    public VisitorSession get(String visitorId) {
+        logins.increment();
+        if (!enabled || visitorId == null) {
+            return null;
+        }
+
+        VisitorSession session = getLocal(visitorId);
+        if (session != null) {
+            localHits.increment();
+            return session;
+        }
+
+        session = visitorCacheStore.get(visitorId);
+        if (session != null) {
+            storeHits.increment();
+            putLocal(session);
+            return session;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入游客会话（一级、二级缓存）
+     */
+    public void put(VisitorSession session) {
+        if (!enabled || session.visitorId() == null) {
+            return;
+        }
+        putLocal(session);
+        visitorCacheStore.put(session, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    /**
+     * 失效游客会话，用户资料或角色变化时调用
+     */
+    public void evict(String visitorId) {
+        if (visitorId == null) {
+            return;
+        }
+        synchronized (this) {
+            entries.remove(visitorId);
+        }
+        visitorCacheStore.evict(visitorId);
+    }
+
+    /**
+     * 是否需要把登录时间/ip 写回数据库：超过写回间隔或 ip 变化
+     */
+    public boolean needsTouch(VisitorSession session, String ip, long nowMillis) {
+        boolean needed = nowMillis - session.lastTouchMillis() >= TimeUnit.SECONDS.toMillis(touchIntervalSeconds)
+                || !Objects.equals(ip, session.lastIp());
+        if (!needed) {
+            touchesSkipped.increment();
+        }
+        return needed;
+    }
+
+    /**
+     * 记录一次数据库查询
+     */
+    public void recordDbQuery() {
+        dbQueries.increment();
+    }
+
+    /**
+     * 记录一次数据库写入
+     */
+    public void recordDbWrite() {
+        dbWrites.increment();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        long localHitCount = localHits.sum();
+        long storeHitCount = storeHits.sum();
+        long missCount = misses.sum();
+        long total = localHitCount + storeHitCount + missCount;
+        long loginCount = logins.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("store", visitorCacheStore.name());
+        stats.put("localHits", localHitCount);
+        stats.put("storeHits", storeHitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0D : (double) (localHitCount + storeHitCount) / total);
+        stats.put("evictions", evictions.sum());
+        stats.put("logins", loginCount);
+        stats.put("dbQueries", dbQueries.sum());
+        stats.put("dbWrites", dbWrites.sum());
+        stats.put("dbQueriesPerLogin", loginCount == 0 ? 0D : (double) dbQueries.sum() / loginCount);
+        stats.put("touchesSkipped", touchesSkipped.sum());
+        return stats;
+    }
+
+    private synchronized VisitorSession getLocal(String visitorId) {
+        Entry entry = entries.get(visitorId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt() < System.currentTimeMillis()) {
+            entries.remove(visitorId);
+            return null;
+        }
+        return entry.session();
+    }
+
+    private synchronized void putLocal(VisitorSession session) {
+        entries.put(session.visitorId(), new Entry(session, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds)));
+
+        // 按最久未访问的顺序淘汰
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry(VisitorSession session, long expireAt) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.ch503j.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 接口限流配置（user.rate-limit.*）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "user.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否开启限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存中最多保留的令牌桶数量，超出时先清理空闲桶，仍然超出则新 key 按哈希分到溢出桶
+     */
+    private int maxBuckets = 100000;
+
+    /**
+     * 每条规则的溢出桶数量，同一溢出桶内的 key 共用额度
+     */
+    private int overflowShards = 1024;
+
+    /**
+     * 限流规则
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 接口路径，如 /auth/visitorLogin
+         */
+        private String path;
+
+        /**
+         * 限流维度：ip 按客户端 IP，visitor 按 visitorId cookie（没有 cookie 时按 IP）
+         */
+        private String key = "ip";
+
+        /**
+         * 每秒补充的令牌数
+         */
+        private double permitsPerSecond = 1;
+
+        /**
+         * 桶容量（允许的突发请求数）
+         */
+        private int burst = 10;
+    }
+}
@@ -0,0 +1,23 @@
+package com.ch503j.userservice.config;
+
+import com.ch503j.common.web.RequestIdentityExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * 请求身份解析配置
+ */
+@Configuration
+public class RequestIdentityConfig {
+
+    /**
+     * @param trustedProxies 可信代理网段（逗号分隔），为空时按原有方式取转发头最左侧地址
+     */
+    @Bean
+    public RequestIdentityExtractor requestIdentityExtractor(@Value("${user.trusted-proxies:}") List<String> trustedProxies) {
+        return new RequestIdentityExtractor(trustedProxies);
+    }
+}
@@ -0,0 +1,34 @@
+package com.ch503j.userservice.config;
+
+import com.ch503j.common.token.SessionTokenCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会话令牌配置
+ */
+@Slf4j
+@Configuration
+public class SessionTokenConfig {
+
+    @Bean
+    public SessionTokenCodec sessionTokenCodec(SessionTokenProperties properties) {
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        properties.getKeys().forEach((kid, secret) -> keys.put(kid, Base64.getDecoder().decode(secret)));
+
+        if (keys.isEmpty()) {
+            // 未配置密钥时生成临时密钥，重启后已签发的令牌全部失效，且多个节点之间无法互认
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            keys.put(properties.getActiveKid(), secret);
+            log.warn("未配置 user.token.keys，已生成临时会话令牌密钥，仅适用于本地开发");
+        }
+        return new SessionTokenCodec(properties.getActiveKid(), keys);
+    }
+}
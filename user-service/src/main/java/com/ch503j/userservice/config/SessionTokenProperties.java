@@ -0,0 +1,38 @@
+package com.ch503j.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会话令牌配置（user.token.*）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "user.token")
+public class SessionTokenProperties {
+
+    /**
+     * 令牌 cookie 名称
+     */
+    private String cookieName = "sessionToken";
+
+    /**
+     * 令牌有效期（秒）
+     */
+    private long ttlSeconds = 7 * 24 * 3600;
+
+    /**
+     * 当前签发使用的密钥 id
+     */
+    private String activeKid = "k1";
+
+    /**
+     * 密钥 id -> base64 编码的密钥（至少 32 字节）
+     * 轮换时先新增密钥并切换 activeKid，旧密钥保留到旧令牌全部过期后再删除
+     */
+    private Map<String, String> keys = new LinkedHashMap<>();
+}
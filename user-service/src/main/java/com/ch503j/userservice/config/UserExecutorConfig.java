@@ -0,0 +1,45 @@
+package com.ch503j.userservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 用户服务内部使用的线程池
+ */
+@Configuration
+public class UserExecutorConfig {
+
+    /**
+     * 用户导出接口按流写出时使用的异步请求线程池；
+     * 有了 passwordHashExecutor 之后 Boot 不会再自动配置它，设为 @Primary 以免按类型注入时选中密码线程池
+     */
+    @Primary
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * 密码哈希/校验线程池
+     * BCrypt 是 CPU 密集型计算，单独限制并发，登录高峰时不会占满 Tomcat 请求线程；
+     * 队列有界，满了直接拒绝（登录返回繁忙），避免请求无限堆积
+     */
+    @Bean(name = "passwordHashExecutor")
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${user.password.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+            @Value("${user.password.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,24 @@
+package com.ch503j.userservice.config;
+
+import com.ch503j.userservice.cache.LocalVisitorCacheStore;
+import com.ch503j.userservice.cache.VisitorCacheStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 游客会话缓存配置
+ */
+@Configuration
+public class VisitorCacheConfig {
+
+    /**
+     * 默认的二级缓存为本地内存实现，需要多节点共享时声明自己的 VisitorCacheStore 即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean(VisitorCacheStore.class)
+    public VisitorCacheStore visitorCacheStore(@Value("${user.visitor-cache.store-max-entries:500000}") int maxEntries) {
+        return new LocalVisitorCacheStore(maxEntries);
+    }
+}
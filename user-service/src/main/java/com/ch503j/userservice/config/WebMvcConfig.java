@@ -0,0 +1,30 @@
+package com.ch503j.userservice.config;
+
+import com.ch503j.userservice.interceptor.RateLimitInterceptor;
+import jakarta.annotation.Resource;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web MVC 配置
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Resource
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 只拦截配置了限流规则的接口
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns(rateLimitProperties.getRules().stream()
+                        .map(RateLimitProperties.Rule::getPath)
+                        .distinct()
+                        .toList());
+    }
+}
@@ -2,13 +2,16 @@ package com.ch503j.userservice.controller;
 
 import com.ch503j.common.pojo.dto.BaseResponse;
 import com.ch503j.userservice.pojo.dto.UserDTO;
+import com.ch503j.userservice.pojo.vo.AvailabilityVO;
 import com.ch503j.userservice.pojo.vo.UserVO;
 import com.ch503j.userservice.service.AuthService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -44,8 +47,32 @@ public class AuthController {
         return BaseResponse.success(authService.register(userDto, request, response));
     }
 
+    /**
+     * userId、手机号可用性检查（注册表单实时校验用）
+     *
+     * @param userId 用户ID，可为空
+     * @param phone  手机号，可为空
+     * @return BaseResponse<AvailabilityVO> 各字段是否可用，未传入的字段为 null
+     */
+    @GetMapping("/availability")
+    public BaseResponse<AvailabilityVO> availability(@RequestParam(required = false) String userId,
+                                                     @RequestParam(required = false) String phone) {
+        return BaseResponse.success(authService.checkAvailability(userId, phone));
+    }
+
     @PostMapping("/login")
     public BaseResponse<UserVO> login(UserDTO userDto, HttpServletRequest request, HttpServletResponse response){
         return BaseResponse.success(authService.login(userDto, request, response));
     }
+
+    /**
+     * 获取当前登录用户（根据会话令牌本地校验，不查库）
+     *
+     * @param request HTTP请求对象，用于读取会话令牌
+     * @return BaseResponse<UserVO> 当前用户的 userId、角色和状态
+     */
+    @GetMapping("/me")
+    public BaseResponse<UserVO> me(HttpServletRequest request) {
+        return BaseResponse.success(authService.currentUser(request));
+    }
 }
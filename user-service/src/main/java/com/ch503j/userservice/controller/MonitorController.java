@@ -0,0 +1,107 @@
+package com.ch503j.userservice.controller;
+
+import com.ch503j.common.pojo.dto.BaseResponse;
+import com.ch503j.userservice.cache.UserAvailabilityFilter;
+import com.ch503j.userservice.cache.VisitorSessionCache;
+import com.ch503j.userservice.job.VisitorPurgeJob;
+import com.ch503j.userservice.service.support.PasswordHasher;
+import com.ch503j.userservice.service.support.RateLimiter;
+import com.ch503j.userservice.service.support.VisitorHeartbeatBuffer;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 运行指标查询
+ * <p>
+ * 提供用户服务内各类缓存的命中率等指标
+ */
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Resource
+    private VisitorSessionCache visitorSessionCache;
+
+    @Resource
+    private VisitorHeartbeatBuffer visitorHeartbeatBuffer;
+
+    @Resource
+    private UserAvailabilityFilter userAvailabilityFilter;
+
+    @Resource
+    private PasswordHasher passwordHasher;
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private VisitorPurgeJob visitorPurgeJob;
+
+    /**
+     * 游客会话缓存统计（条目数、命中率、每次登录的数据库查询数）
+     */
+    @GetMapping("/visitor-cache/stats")
+    public BaseResponse<Map<String, Object>> visitorCacheStats() {
+
+        return BaseResponse.success(visitorSessionCache.stats());
+    }
+
+    /**
+     * 游客心跳写缓冲统计（待写回数量、合并比、写回耗时）
+     */
+    @GetMapping("/heartbeat/stats")
+    public BaseResponse<Map<String, Object>> heartbeatStats() {
+
+        return BaseResponse.success(visitorHeartbeatBuffer.stats());
+    }
+
+    /**
+     * userId/phone 可用性过滤器统计（内存占用、跳过查库次数、实际误判率）
+     */
+    @GetMapping("/availability-filter/stats")
+    public BaseResponse<Map<String, Object>> availabilityFilterStats() {
+
+        return BaseResponse.success(userAvailabilityFilter.stats());
+    }
+
+    /**
+     * 立即重建 userId/phone 可用性过滤器
+     */
+    @PostMapping("/availability-filter/rebuild")
+    public BaseResponse<Map<String, Object>> rebuildAvailabilityFilter() {
+        userAvailabilityFilter.rebuild();
+        return BaseResponse.success(userAvailabilityFilter.stats());
+    }
+
+    /**
+     * 密码哈希统计（线程池排队、平均耗时、校验缓存命中、拒绝次数）
+     */
+    @GetMapping("/password-hash/stats")
+    public BaseResponse<Map<String, Object>> passwordHashStats() {
+
+        return BaseResponse.success(passwordHasher.stats());
+    }
+
+    /**
+     * 接口限流统计（令牌桶数量、各规则放行/拒绝次数）
+     */
+    @GetMapping("/rate-limit/stats")
+    public BaseResponse<Map<String, Object>> rateLimitStats() {
+
+        return BaseResponse.success(rateLimiter.stats());
+    }
+
+    /**
+     * 过期游客清理统计（累计清理行数、最近一次的清理速度以及前后表大小、查询耗时）
+     */
+    @GetMapping("/visitor-purge/stats")
+    public BaseResponse<Map<String, Object>> visitorPurgeStats() {
+
+        return BaseResponse.success(visitorPurgeJob.stats());
+    }
+}
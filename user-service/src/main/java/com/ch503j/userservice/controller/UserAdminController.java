@@ -0,0 +1,101 @@
+package com.ch503j.userservice.controller;
+
+import com.ch503j.common.enums.RoleEnum;
+import com.ch503j.common.exception.BusinessException;
+import com.ch503j.common.pojo.dto.BaseResponse;
+import com.ch503j.userservice.pojo.vo.UserImportResultVO;
+import com.ch503j.userservice.pojo.vo.UserVO;
+import com.ch503j.userservice.service.AuthService;
+import com.ch503j.userservice.service.UserTransferService;
+import com.ch503j.userservice.service.support.PasswordHasher;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 用户管理接口（仅管理员）
+ */
+@RestController
+@RequestMapping("/user/admin")
+public class UserAdminController {
+
+    @Resource
+    private AuthService authService;
+
+    @Resource
+    private UserTransferService userTransferService;
+
+    @Resource
+    private PasswordHasher passwordHasher;
+
+    /**
+     * 批量导入用户，请求体直接为文件内容（Content-Type 为 text/csv 或 application/x-ndjson，流式读取）
+     *
+     * @param format  格式：csv（首行为表头）或 ndjson
+     * @param request HTTP请求对象，读取请求体和会话令牌
+     * @return BaseResponse<UserImportResultVO> 导入结果
+     */
+    @PostMapping("/import")
+    public BaseResponse<UserImportResultVO> importUsers(@RequestParam(defaultValue = "csv") String format,
+                                                        HttpServletRequest request) throws IOException {
+        requireAdmin(request);
+        return BaseResponse.success(userTransferService.importUsers(format, request.getInputStream()));
+    }
+
+    /**
+     * 导出全部用户（流式输出）
+     *
+     * @param format  格式：csv 或 ndjson
+     * @param request HTTP请求对象，读取会话令牌
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "csv") String format,
+                                                             HttpServletRequest request) {
+        requireAdmin(request);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new BusinessException(400, "不支持的格式：" + format + "，仅支持 csv、ndjson");
+        }
+        StreamingResponseBody body = out -> userTransferService.exportUsers(format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users." + (csv ? "csv" : "ndjson"))
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 测量本机不同 BCrypt 强度下的单次耗时和吞吐，用于选择 user.password.bcrypt-strength
+     * 计算在密码哈希线程池中进行，强度最高 12，每个强度最多 10 次，同一时间只允许一次测量
+     *
+     * @param from    起始强度
+     * @param to      结束强度
+     * @param rounds  每个强度计算的次数
+     * @param request HTTP请求对象，读取会话令牌
+     */
+    @PostMapping("/password-hash/calibrate")
+    public BaseResponse<Map<String, Object>> calibratePasswordHash(@RequestParam(defaultValue = "8") int from,
+                                                                  @RequestParam(defaultValue = "12") int to,
+                                                                  @RequestParam(defaultValue = "5") int rounds,
+                                                                  HttpServletRequest request) {
+        requireAdmin(request);
+        return BaseResponse.success(passwordHasher.calibrate(from, to, rounds));
+    }
+
+    private void requireAdmin(HttpServletRequest request) {
+        UserVO current = authService.currentUser(request);
+        if (!RoleEnum.ADMIN.getRole().equals(current.getRole())) {
+            throw new BusinessException(403, "无权限，仅管理员可操作");
+        }
+    }
+}
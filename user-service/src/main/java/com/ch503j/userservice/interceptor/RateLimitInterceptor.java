@@ -0,0 +1,50 @@
+package com.ch503j.userservice.interceptor;
+
+import com.ch503j.common.exception.BusinessException;
+import com.ch503j.common.web.RequestIdentityExtractor;
+import com.ch503j.userservice.service.support.RateLimiter;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.List;
+
+/**
+ * 按客户端 IP / visitorId 对登录、注册等接口限流
+ * IP 取不可伪造的地址：直连地址，只有直连方是可信代理时才采用其转发的客户端地址
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private RequestIdentityExtractor requestIdentityExtractor;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!rateLimiter.isEnabled()) {
+            return true;
+        }
+        List<RateLimiter.RuleState> rules = rateLimiter.rules(request.getServletPath());
+        for (RateLimiter.RuleState rule : rules) {
+            String key = null;
+            if (rule.keyByVisitor()) {
+                key = requestIdentityExtractor.cookie(request, "visitorId");
+            }
+            if (key == null) {
+                key = requestIdentityExtractor.trustedClientIp(request);
+            }
+            if (!rateLimiter.tryAcquire(rule, key)) {
+                log.warn("请求过于频繁，已限流：path={}, key={}", request.getServletPath(), key);
+                throw new BusinessException(429, "请求过于频繁，请稍后再试");
+            }
+        }
+        return true;
+    }
+}
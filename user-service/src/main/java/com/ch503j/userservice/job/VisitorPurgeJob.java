@@ -0,0 +1,174 @@
+package com.ch503j.userservice.job;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.ch503j.userservice.mapper.UserMapper;
+import com.ch503j.userservice.pojo.entity.User;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 过期游客清理任务
+ * <p>
+ * 每个新浏览器都会生成一条 VISITOR 记录，长期不访问的游客按主键分小批清理（物理删除或逻辑删除），
+ * 每批单独提交、批次之间暂停，避免长时间持有行锁和占满数据库。
+ * 每次运行前后记录表大小和 visitor_id 查询耗时，便于对比清理效果。
+ */
+@Slf4j
+@Component
+public class VisitorPurgeJob {
+
+    private static final int LOOKUP_PROBES = 20;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Value("${user.visitor-purge.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 超过多少天未访问的游客会被清理
+     */
+    @Value("${user.visitor-purge.idle-days:30}")
+    private int idleDays;
+
+    /**
+     * 清理方式：hard 物理删除，soft 逻辑删除（is_delete = 1，visitor_id 改写为 原值#主键，游客回访时可重新注册）
+     */
+    @Value("${user.visitor-purge.mode:hard}")
+    private String mode;
+
+    @Value("${user.visitor-purge.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 批次之间暂停的毫秒数
+     */
+    @Value("${user.visitor-purge.pause-ms:200}")
+    private long pauseMillis;
+
+    /**
+     * 单次运行最多处理的批数
+     */
+    @Value("${user.visitor-purge.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder purgedRows = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @Scheduled(initialDelayString = "${user.visitor-purge.initial-delay-ms:300000}",
+            fixedDelayString = "${user.visitor-purge.interval-ms:86400000}")
+    public void purge() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            doPurge();
+        } catch (Exception e) {
+            log.warn("过期游客清理失败", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 清理统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("mode", mode);
+        stats.put("idleDays", idleDays);
+        stats.put("runs", runs.sum());
+        stats.put("batches", batches.sum());
+        stats.put("purgedRows", purgedRows.sum());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    private void doPurge() throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+        boolean soft = "soft".equalsIgnoreCase(mode);
+
+        Map<String, Object> tableBefore = tableStats();
+        double lookupBefore = probeLookupMillis();
+
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        int batchCount = 0;
+        long afterId = Long.MIN_VALUE;
+        while (batchCount < maxBatchesPerRun) {
+            List<Long> ids = userMapper.selectStaleVisitorIds(afterId, cutoff, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            // 每批一条语句、自动提交，锁只持有这一批
+            rows += soft ? userMapper.softDeleteStaleVisitors(ids, cutoff) : userMapper.deleteStaleVisitors(ids, cutoff);
+            batchCount++;
+            batches.increment();
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(pauseMillis);
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        purgedRows.add(rows);
+        runs.increment();
+
+        Map<String, Object> run = new HashMap<>();
+        run.put("time", LocalDateTime.now().toString());
+        run.put("cutoff", cutoff.toString());
+        run.put("rows", rows);
+        run.put("batches", batchCount);
+        run.put("elapsedMillis", elapsed);
+        run.put("rowsPerSecond", rows * 1000D / elapsed);
+        run.put("tableBefore", tableBefore);
+        run.put("tableAfter", tableStats());
+        run.put("lookupMillisBefore", lookupBefore);
+        run.put("lookupMillisAfter", probeLookupMillis());
+        lastRun = run;
+
+        log.info("过期游客清理完成：{} 方式清理 {} 行，{} 批，耗时 {} ms", soft ? "逻辑删除" : "物理删除", rows, batchCount, elapsed);
+    }
+
+    /**
+     * 表大小（information_schema 中的估算值，物理删除后需要 ANALYZE / OPTIMIZE 才会明显变化）
+     */
+    private Map<String, Object> tableStats() {
+        try {
+            Map<String, Object> stats = userMapper.selectTableStats();
+            return stats == null ? Map.of() : stats;
+        } catch (Exception e) {
+            log.debug("读取 user 表统计信息失败", e);
+            return Map.of();
+        }
+    }
+
+    /**
+     * 按 visitor_id 查询不存在的值若干次，返回平均耗时（毫秒）
+     */
+    private double probeLookupMillis() {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_PROBES; i++) {
+            userMapper.exists(new LambdaQueryWrapper<User>().eq(User::getVisitorId, UUID.randomUUID().toString()));
+        }
+        return (System.nanoTime() - start) / 1_000_000D / LOOKUP_PROBES;
+    }
+}
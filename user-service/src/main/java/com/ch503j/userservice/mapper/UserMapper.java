@@ -1,9 +1,99 @@
 package com.ch503j.userservice.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.ch503j.userservice.pojo.dto.VisitorHeartbeatDTO;
 import com.ch503j.userservice.pojo.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
+
+    /**
+     * 注册时一次性查出当前游客记录以及 userId、phone 可能冲突的记录
+     * 排序保证当前游客记录、userId 冲突记录在前，最多返回 3 行
+     *
+     * @param visitorId 访客id
+     * @param userId    用户id，为空时不参与查询
+     * @param phone     手机号，为空时不参与查询
+     * @return 候选记录
+     */
+    List<User> selectRegisterCandidates(@Param("visitorId") String visitorId,
+                                        @Param("userId") String userId,
+                                        @Param("phone") String phone);
+
+    /**
+     * 按主键分页读取 userId、phone（用于重建可用性过滤器）
+     *
+     * @param afterId 上一页最后一条的主键
+     * @param limit   每页行数
+     * @return 只包含 id、userId、phone 的用户列表
+     */
+    List<User> selectIdentityPage(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 批量写回最近登录时间和 ip（单条多行 UPDATE，不修改 update_time）
+     *
+     * @param heartbeats 心跳列表，id 不可重复
+     * @return 影响行数
+     */
+    int batchUpdateHeartbeat(@Param("list") List<VisitorHeartbeatDTO> heartbeats);
+
+    /**
+     * 按主键分页查找长期未访问的游客
+     *
+     * @param afterId 上一批最后一条的主键
+     * @param cutoff  最近访问时间早于该时间的游客视为过期
+     * @param limit   每批行数
+     * @return 游客主键
+     */
+    List<Long> selectStaleVisitorIds(@Param("afterId") Long afterId,
+                                     @Param("cutoff") LocalDateTime cutoff,
+                                     @Param("limit") int limit);
+
+    /**
+     * 物理删除长期未访问的游客
+     *
+     * @return 删除行数
+     */
+    int deleteStaleVisitors(@Param("ids") List<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * 逻辑删除长期未访问的游客，同时改写 visitor_id 释放唯一索引
+     *
+     * @return 更新行数
+     */
+    int softDeleteStaleVisitors(@Param("ids") List<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * user 表的行数和数据、索引大小
+     */
+    Map<String, Object> selectTableStats();
+
+    /**
+     * 查询 visitorId / userId / phone 已存在的记录（批量导入去重，包括已逻辑删除的记录）
+     *
+     * @return 只包含 visitorId、userId、phone 的用户列表
+     */
+    List<User> selectExistingKeys(@Param("visitorIds") Collection<String> visitorIds,
+                                  @Param("userIds") Collection<String> userIds,
+                                  @Param("phones") Collection<String> phones);
+
+    /**
+     * 多行插入（主键由调用方预先分配）
+     *
+     * @return 插入行数
+     */
+    int batchInsert(@Param("list") List<User> users);
+
+    /**
+     * 以流式游标读取全部未删除用户（MySQL 逐行返回，不在内存中缓存结果集），需在事务内使用
+     */
+    Cursor<User> selectAllForExport();
 }
@@ -0,0 +1,35 @@
+package com.ch503j.userservice.pojo.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户导入导出的行数据（CSV 列 / NDJSON 字段）
+ */
+@Data
+public class UserTransferDTO {
+
+    private String userId;
+
+    private String username;
+
+    private String phone;
+
+    /**
+     * 密码（导出为库中的哈希值，导入时原样保存；明文密码会在首次登录时升级为 BCrypt）
+     */
+    private String password;
+
+    private String role;
+
+    private Integer status;
+
+    private String visitorId;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime lastSeen;
+
+    private String lastIp;
+}
@@ -0,0 +1,31 @@
+package com.ch503j.userservice.pojo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 游客心跳（最近登录时间和 ip），批量写回数据库时使用
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class VisitorHeartbeatDTO {
+
+    /**
+     * 主键
+     */
+    private Long id;
+
+    /**
+     * 最近登录时间
+     */
+    private LocalDateTime lastSeen;
+
+    /**
+     * 最近登录ip
+     */
+    private String lastIp;
+}
@@ -2,6 +2,7 @@ package com.ch503j.userservice.pojo.entity;
 
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableLogic;
 import com.baomidou.mybatisplus.annotation.TableName;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -75,4 +76,10 @@ public class User {
      * 最近登录ip
      */
     private String lastIp;
+
+    /**
+     * 删除标志位：0未删除，1已删除
+     */
+    @TableLogic
+    private Integer isDelete;
 }
@@ -0,0 +1,24 @@
+package com.ch503j.userservice.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * userId / phone 可用性检查结果，未传入的字段为 null
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvailabilityVO {
+
+    /**
+     * 用户ID是否可用
+     */
+    private Boolean userIdAvailable;
+
+    /**
+     * 手机号是否可用
+     */
+    private Boolean phoneAvailable;
+}
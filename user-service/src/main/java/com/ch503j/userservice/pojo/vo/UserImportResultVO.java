@@ -0,0 +1,47 @@
+package com.ch503j.userservice.pojo.vo;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户批量导入结果
+ */
+@Data
+public class UserImportResultVO {
+
+    /**
+     * 读取的行数（不含表头和空行）
+     */
+    private long total;
+
+    /**
+     * 成功插入的行数
+     */
+    private long inserted;
+
+    /**
+     * 与已有用户（或文件中前面的行）visitorId / userId / phone 重复而跳过的行数
+     */
+    private long duplicates;
+
+    /**
+     * 格式错误、字段不符合表定义或被数据库拒绝的行数
+     */
+    private long invalid;
+
+    /**
+     * 是否因数据库异常中途停止（之前的批次已提交）
+     */
+    private boolean aborted;
+
+    /**
+     * 错误明细（最多保留 100 条）
+     */
+    private List<String> errors = new ArrayList<>();
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+}
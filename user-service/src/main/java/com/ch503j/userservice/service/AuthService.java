@@ -3,6 +3,7 @@ package com.ch503j.userservice.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.ch503j.userservice.pojo.dto.UserDTO;
 import com.ch503j.userservice.pojo.entity.User;
+import com.ch503j.userservice.pojo.vo.AvailabilityVO;
 import com.ch503j.userservice.pojo.vo.UserVO;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -20,5 +21,31 @@ public interface AuthService extends IService<User> {
 
     UserVO register(UserDTO userDTO, HttpServletRequest request, HttpServletResponse response);
 
+    /**
+     * 检查 userId、手机号是否可用（未被注册）
+     * 先经过布隆过滤器，判定一定不存在的直接返回可用，不查数据库
+     *
+     * @param userId 用户ID，可为空
+     * @param phone  手机号，可为空
+     * @return 可用性结果，未传入的字段为 null
+     */
+    AvailabilityVO checkAvailability(String userId, String phone);
+
+    /**
+     * 账号密码登录
+     *
+     * @param userDto  登录信息，需要 userId 和 password
+     * @param request  HTTP请求对象，用于获取客户端信息
+     * @param response HTTP响应对象，用于设置返回信息
+     * @return 登录用户信息
+     */
     UserVO login(UserDTO userDto, HttpServletRequest request, HttpServletResponse response);
+
+    /**
+     * 根据会话令牌获取当前用户（只校验令牌签名，不查库）
+     *
+     * @param request HTTP请求对象，用于读取会话令牌 cookie
+     * @return 当前用户的 userId、角色和状态
+     */
+    UserVO currentUser(HttpServletRequest request);
 }
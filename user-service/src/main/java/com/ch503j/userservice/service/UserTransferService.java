@@ -0,0 +1,30 @@
+package com.ch503j.userservice.service;
+
+import com.ch503j.userservice.pojo.vo.UserImportResultVO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 用户批量导入导出（环境间迁移用户）
+ */
+public interface UserTransferService {
+
+    /**
+     * 流式导入用户，按批多行插入，内存占用与文件大小无关
+     *
+     * @param format 格式：csv（首行为表头）或 ndjson
+     * @param in     请求体输入流
+     * @return 导入结果
+     */
+    UserImportResultVO importUsers(String format, InputStream in) throws IOException;
+
+    /**
+     * 流式导出全部未删除用户（服务端游标逐行读取，不会一次加载整张表）
+     *
+     * @param format 格式：csv 或 ndjson
+     * @param out    响应输出流
+     */
+    void exportUsers(String format, OutputStream out) throws IOException;
+}
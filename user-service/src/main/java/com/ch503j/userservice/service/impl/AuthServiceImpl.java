@@ -1,14 +1,26 @@
 package com.ch503j.userservice.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.ch503j.common.enums.AuthEnum;
 import com.ch503j.common.enums.RoleEnum;
 import com.ch503j.common.exception.BusinessException;
+import com.ch503j.common.token.SessionToken;
+import com.ch503j.common.token.SessionTokenCodec;
+import com.ch503j.common.web.RequestIdentityExtractor;
+import com.ch503j.userservice.cache.UserAvailabilityFilter;
+import com.ch503j.userservice.cache.VisitorSession;
+import com.ch503j.userservice.cache.VisitorSessionCache;
+import com.ch503j.userservice.config.SessionTokenProperties;
 import com.ch503j.userservice.mapper.UserMapper;
 import com.ch503j.userservice.pojo.dto.UserDTO;
 import com.ch503j.userservice.pojo.entity.User;
+import com.ch503j.userservice.pojo.vo.AvailabilityVO;
 import com.ch503j.userservice.pojo.vo.UserVO;
 import com.ch503j.userservice.service.AuthService;
+import com.ch503j.userservice.service.support.PasswordHasher;
+import com.ch503j.userservice.service.support.VisitorHeartbeatBuffer;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,11 +30,12 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.ObjectUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -32,6 +45,27 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
     @Resource
     private UserMapper userMapper;
 
+    @Resource
+    private VisitorSessionCache visitorSessionCache;
+
+    @Resource
+    private VisitorHeartbeatBuffer visitorHeartbeatBuffer;
+
+    @Resource
+    private UserAvailabilityFilter userAvailabilityFilter;
+
+    @Resource
+    private PasswordHasher passwordHasher;
+
+    @Resource
+    private SessionTokenCodec sessionTokenCodec;
+
+    @Resource
+    private SessionTokenProperties sessionTokenProperties;
+
+    @Resource
+    private RequestIdentityExtractor requestIdentityExtractor;
+
 
     @Override
     public UserVO visitorLogin(HttpServletRequest request, HttpServletResponse response) {
@@ -42,21 +76,21 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
         String ip = resolveClientIp(request);
         log.info("访问者 IP: {}", ip);
 
-        // 3. 查库或新建
-        User user = findOrCreateVisitor(visitorId, ip);
-
-        // 4. 设置/刷新 cookie
-        refreshVisitorCookie(response, user.getVisitorId());
+        // 3. 先查缓存，回访游客命中时不再查库
+        VisitorSession cached = visitorSessionCache.get(visitorId);
+        VisitorSession session = cached == null
+                ? findOrCreateVisitor(visitorId, ip) // 查库或新建
+                : touchVisitor(cached, ip);
+        if (session != cached) {
+            visitorSessionCache.put(session);
+        }
 
-        UserVO userVO = new UserVO();
-        userVO.setUserId(user.getUserId());
-        userVO.setVisitorId(user.getVisitorId());
-        userVO.setUsername(user.getUsername());
-        userVO.setRole(user.getRole());
-        userVO.setStatus(user.getStatus());
+        // 4. 设置/刷新 cookie 和会话令牌
+        refreshVisitorCookie(response, session.visitorId());
+        issueSessionToken(response, session.id(), session.userId(), session.role(), session.status());
 
         // 5. 返回 UserVO
-        return userVO;
+        return session.toUserVO();
     }
 
     /**
@@ -77,24 +111,32 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
         if (!StringUtils.hasText(visitorId)) {
             throw new BusinessException("visitorId 缺失");
         }
+        // 注册会修改角色和资料，缓存的游客会话需失效（提交后再失效一次，避免并发登录把旧数据写回缓存）
+        evictVisitorSession(visitorId);
+
+        // 一次查询取回当前游客记录以及 userId、phone 可能冲突的记录
+        List<User> candidates = userMapper.selectRegisterCandidates(visitorId,
+                StringUtils.hasText(userDTO.getUserId()) ? userDTO.getUserId() : null,
+                StringUtils.hasText(userDTO.getPhone()) ? userDTO.getPhone() : null);
+        User user = candidates.stream()
+                .filter(candidate -> visitorId.equals(candidate.getVisitorId()) && Integer.valueOf(0).equals(candidate.getIsDelete()))
+                .findFirst()
+                .orElse(null);
 
-        // 根据 visitorId 查找是否已有对应的游客用户
-        User user = userMapper.selectOne(new QueryWrapper<User>()
-                .eq("visitor_id", visitorId));
+        // 检查除当前游客外，是否有重复的 userId 或 phone
+        hasUniqueUser(candidates, userDTO.getUserId(), userDTO.getPhone(), user == null ? null : user.getId());
 
         String ip = resolveClientIp(request);
 
         try {
             if (user != null) {
                 // ====== 路径1：已有游客 → 升级/完善资料 ======
-                // 检查除当前用户外，是否有重复的 userId、visitorId 或 phone
-                hasUniqueUser(userDTO.getUserId(), visitorId, userDTO.getPhone(), user.getId());
 
                 // 更新用户资料（不覆盖主键、创建时间、visitorId）
                 if (userDTO.getUserId() != null) user.setUserId(userDTO.getUserId());
                 if (StringUtils.hasText(userDTO.getUsername())) user.setUsername(userDTO.getUsername());
                 if (StringUtils.hasText(userDTO.getPhone())) user.setPhone(userDTO.getPhone());
-                if (StringUtils.hasText(userDTO.getPassword())) user.setPassword(userDTO.getPassword());
+                if (StringUtils.hasText(userDTO.getPassword())) user.setPassword(passwordHasher.hash(userDTO.getPassword()));
                 user.setRole(RoleEnum.USER.name()); // 升级为正式用户
                 user.setUpdateTime(LocalDateTime.now());
                 user.setLastIp(ip);
@@ -103,11 +145,9 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
                 userMapper.updateById(user);
             } else {
                 // ====== 路径2：直接注册（但同样携带了 visitorId） ======
-                // 插入前进行唯一性校验，确保 userId、visitorId 和 phone 唯一
-                hasUniqueUser(userDTO.getUserId(), visitorId, userDTO.getPhone(), null);
-
                 user = new User();
                 BeanUtils.copyProperties(userDTO, user);
+                if (StringUtils.hasText(userDTO.getPassword())) user.setPassword(passwordHasher.hash(userDTO.getPassword()));
 
                 user.setVisitorId(visitorId);
                 user.setRole(RoleEnum.USER.name());
@@ -120,62 +160,188 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
                 userMapper.insert(user);
             }
         } catch (DuplicateKeyException ex) {
-            // 并发下可能仍被唯一索引拦截，这里给前端更友好的提示
-            throw new BusinessException("注册冲突：userId 或 visitorId 已存在，请更换后重试");
+            // 并发下可能仍被唯一索引拦截，按冲突的索引给出对应提示
+            throw new BusinessException(resolveDuplicateKeyMessage(ex));
         }
 
+        // 新的 userId、手机号加入可用性过滤器
+        String registeredUserId = user.getUserId();
+        String registeredPhone = user.getPhone();
+        afterCommit(() -> userAvailabilityFilter.add(registeredUserId, registeredPhone));
+
+        // 角色已变化，重新签发会话令牌
+        issueSessionToken(response, user.getId(), user.getUserId(), user.getRole(), user.getStatus());
+
         UserVO userVO = new UserVO();
         BeanUtils.copyProperties(user, userVO);
 
         return userVO;
     }
 
+    @Override
+    public AvailabilityVO checkAvailability(String userId, String phone) {
+        AvailabilityVO availabilityVO = new AvailabilityVO();
+        if (StringUtils.hasText(userId)) {
+            availabilityVO.setUserIdAvailable(!userAvailabilityFilter.mightContainUserId(userId)
+                    || !existsInDb(User::getUserId, userId));
+        }
+        if (StringUtils.hasText(phone)) {
+            availabilityVO.setPhoneAvailable(!userAvailabilityFilter.mightContainPhone(phone)
+                    || !existsInDb(User::getPhone, phone));
+        }
+        return availabilityVO;
+    }
+
+    /**
+     * 过滤器判定可能存在时查库确认
+     */
+    private boolean existsInDb(SFunction<User, ?> column, String value) {
+        boolean exists = userMapper.exists(new LambdaQueryWrapper<User>().eq(column, value));
+        if (!exists) {
+            userAvailabilityFilter.recordFalsePositive();
+        }
+        return exists;
+    }
+
+    /**
+     * 失效游客会话缓存：立即失效一次，提交后再失效一次
+     */
+    private void evictVisitorSession(String visitorId) {
+        visitorSessionCache.evict(visitorId);
+        afterCommit(() -> visitorSessionCache.evict(visitorId));
+    }
+
+    /**
+     * 若处于事务中则在事务提交后执行，否则立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 账号密码登录
+     * 密码校验在独立线程池中进行；库中为明文或强度低于当前配置的密码，校验通过后自动升级
+     *
+     * @param userDto  登录信息，需要 userId 和 password
+     * @param request  HTTP 请求对象，用于获取客户端 IP
+     * @param response HTTP 响应对象，用于刷新 visitorId cookie
+     * @return UserVO 登录用户信息
+     * @throws BusinessException 账号或密码错误、账号被禁用时抛出
+     */
     @Override
     public UserVO login(UserDTO userDto, HttpServletRequest request, HttpServletResponse response) {
-        return null;
+        if (!StringUtils.hasText(userDto.getUserId()) || !StringUtils.hasText(userDto.getPassword())) {
+            throw new BusinessException(400, "账号和密码不能为空");
+        }
+
+        User user = lambdaQuery().eq(User::getUserId, userDto.getUserId()).one();
+
+        // 用户不存在时同样计算一次哈希，避免通过响应时间判断账号是否存在
+        PasswordHasher.VerifyResult result = passwordHasher.verify(userDto.getUserId(), userDto.getPassword(),
+                user == null ? null : user.getPassword());
+        if (user == null || !result.matched()) {
+            throw new BusinessException(401, AuthEnum.USER_NOT_EXIST_OR_PASSWORD_ERROR.getDes());
+        }
+        if (!Integer.valueOf(1).equals(user.getStatus())) {
+            throw new BusinessException(403, "账号已被禁用");
+        }
+
+        String ip = resolveClientIp(request);
+        if (result == PasswordHasher.VerifyResult.MATCHED_NEEDS_UPGRADE) {
+            // 明文或低强度密码升级为当前配置的 BCrypt
+            lambdaUpdate()
+                    .set(User::getPassword, passwordHasher.hash(userDto.getPassword()))
+                    .eq(User::getId, user.getId())
+                    .update();
+            passwordHasher.evict(user.getUserId());
+            log.info("用户 {} 的密码已升级为 BCrypt", user.getUserId());
+        }
+        if (!visitorHeartbeatBuffer.offer(user.getId(), ip, LocalDateTime.now())) {
+            lambdaUpdate()
+                    .set(User::getLastSeen, LocalDateTime.now())
+                    .set(User::getLastIp, ip)
+                    .eq(User::getId, user.getId())
+                    .update();
+        }
+
+        // 登录后浏览器的 visitorId 指向该账号
+        visitorSessionCache.evict(user.getVisitorId());
+        refreshVisitorCookie(response, user.getVisitorId());
+        issueSessionToken(response, user.getId(), user.getUserId(), user.getRole(), user.getStatus());
+
+        return VisitorSession.of(user).toUserVO();
+    }
+
+    /**
+     * 根据会话令牌获取当前用户，只校验签名，不查库
+     */
+    @Override
+    public UserVO currentUser(HttpServletRequest request) {
+        SessionToken token = sessionTokenCodec.verify(getCookie(request, sessionTokenProperties.getCookieName()),
+                System.currentTimeMillis() / 1000);
+        if (token == null) {
+            throw new BusinessException(401, AuthEnum.USER_NOT_LOGIN.getDes());
+        }
+        UserVO userVO = new UserVO();
+        userVO.setUserId(token.userId());
+        userVO.setRole(token.role());
+        userVO.setStatus(token.status());
+        return userVO;
+    }
+
+    /**
+     * 签发会话令牌并写入 cookie
+     */
+    private void issueSessionToken(HttpServletResponse response, Long id, String userId, String role, Integer status) {
+        long expiresAt = System.currentTimeMillis() / 1000 + sessionTokenProperties.getTtlSeconds();
+        String token = sessionTokenCodec.issue(new SessionToken(id, userId, role, status == null ? 0 : status, expiresAt));
+
+        Cookie cookie = new Cookie(sessionTokenProperties.getCookieName(), token);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) sessionTokenProperties.getTtlSeconds());
+        response.addCookie(cookie);
     }
 
     /**
      * 从 Cookie 获取 visitorId
      */
     private String getVisitorIdFromCookie(HttpServletRequest request) {
-        if (request.getCookies() == null) {
-            return null;
-        }
-        return Arrays.stream(request.getCookies())
-                .filter(cookie -> "visitorId".equals(cookie.getName()))
-                .map(Cookie::getValue)
-                .findFirst()
-                .orElse(null);
+        return getCookie(request, "visitorId");
+    }
+
+    /**
+     * 获取指定名称的 Cookie 值
+     */
+    private String getCookie(HttpServletRequest request, String name) {
+        return requestIdentityExtractor.cookie(request, name);
     }
 
     /**
      * 解析客户端 IP
      */
     private String resolveClientIp(HttpServletRequest request) {
-        String[] headers = {"X-Forwarded-For", "Proxy-Client-IP", "WL-Proxy-Client-IP"};
-        for (String header : headers) {
-            String ip = request.getHeader(header);
-            if (ip != null && !ip.isEmpty() && !"unknown".equalsIgnoreCase(ip)) {
-                return ip.contains(",") ? ip.split(",")[0].trim() : ip;
-            }
-        }
-        return request.getRemoteAddr();
+        return requestIdentityExtractor.clientIp(request);
     }
 
     /**
      * 查库或新建游客用户
      */
-    private User findOrCreateVisitor(String visitorId, String ip) {
-        User user;
-
+    private VisitorSession findOrCreateVisitor(String visitorId, String ip) {
         if (visitorId != null) {
-            user = lambdaQuery().eq(User::getVisitorId, visitorId).one();
+            User user = lambdaQuery().eq(User::getVisitorId, visitorId).one();
+            visitorSessionCache.recordDbQuery();
             if (user != null) {
-                user.setLastSeen(LocalDateTime.now());
-                user.setLastIp(ip); // 更新最新 IP
-                updateById(user);
-                return user;
+                return touchVisitor(VisitorSession.of(user), ip);
             }
             log.warn("Cookie 中 visitorId={} 在数据库不存在，将重新生成", visitorId);
         }
@@ -187,7 +353,29 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
         if (!save(visitorUser)) {
             throw new BusinessException("保存游客信息失败");
         }
-        return visitorUser;
+        visitorSessionCache.recordDbWrite();
+        return VisitorSession.of(visitorUser);
+    }
+
+    /**
+     * 刷新游客最近登录时间和 ip
+     * 心跳先进入写缓冲，合并后批量写回；缓冲区不可用时按写回间隔直接写库，且只更新这两列
+     */
+    private VisitorSession touchVisitor(VisitorSession session, String ip) {
+        long now = System.currentTimeMillis();
+        boolean buffered = visitorHeartbeatBuffer.offer(session.id(), ip, LocalDateTime.now());
+        if (!visitorSessionCache.needsTouch(session, ip, now)) {
+            return session;
+        }
+        if (!buffered) {
+            lambdaUpdate()
+                    .set(User::getLastSeen, LocalDateTime.now())
+                    .set(User::getLastIp, ip)
+                    .eq(User::getId, session.id())
+                    .update();
+            visitorSessionCache.recordDbWrite();
+        }
+        return session.touched(ip, now);
     }
 
     /**
@@ -221,43 +409,40 @@ public class AuthServiceImpl extends ServiceImpl<UserMapper, User> implements Au
     /**
      * 检查用户信息的唯一性
      *
-     * @param userId 用户ID，用于检查用户ID的唯一性
-     * @param visitorId 游客ID，用于检查游客身份的唯一性
-     * @param phone 手机号码，用于检查手机号的唯一性
-     * @param excludeId 排除的ID，检查时排除此ID的记录
+     * @param candidates 按 visitorId、userId、phone 查出的候选记录
+     * @param userId     用户ID，用于检查用户ID的唯一性
+     * @param phone      手机号码，用于检查手机号的唯一性
+     * @param excludeId  排除的ID，检查时排除此ID的记录
      */
-    private void hasUniqueUser(String userId, String visitorId, String phone, Long excludeId) {
-        // 检查游客ID的唯一性
-        checkUnique("visitor_id", visitorId, excludeId, "该游客用户已存在，请更换浏览器环境再试");
-        // 检查用户ID的唯一性
-        checkUnique("user_id", userId, excludeId, "用户ID已存在");
-        // 检查手机号的唯一性
-        checkUnique("phone", phone, excludeId, "手机号已存在");
+    private void hasUniqueUser(List<User> candidates, String userId, String phone, Long excludeId) {
+        for (User candidate : candidates) {
+            if (candidate.getId().equals(excludeId)) {
+                continue;
+            }
+            // 检查用户ID的唯一性
+            if (StringUtils.hasText(userId) && userId.equals(candidate.getUserId())) {
+                throw new BusinessException("用户ID已存在");
+            }
+            // 检查手机号的唯一性
+            if (StringUtils.hasText(phone) && phone.equals(candidate.getPhone())) {
+                throw new BusinessException("手机号已存在");
+            }
+        }
     }
 
-
     /**
-     * 检查指定列的值是否唯一
-     *
-     * @param column 要检查的列名
-     * @param value 要检查的值
-     * @param excludeId 排除的ID，用于更新时排除自身记录
-     * @param message 唯一性校验失败时的错误信息
+     * 根据违反的唯一索引返回对应的提示
      */
-    private void checkUnique(String column, String value, Long excludeId, String message) {
-        // 如果值为空，则不进行唯一性校验
-        if (ObjectUtils.isEmpty(value)) {
-            return;
-        }
-
-        // 查询指定列值相同的记录数量，排除指定ID的记录
-        long count = userMapper.selectCount(new QueryWrapper<User>()
-                .eq(column, value)
-                .ne(excludeId != null, "id", excludeId));
-
-        // 如果存在相同值的记录，则抛出业务异常
-        if (count > 0) {
-            throw new BusinessException(message);
+    private String resolveDuplicateKeyMessage(DuplicateKeyException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        if (message != null) {
+            if (message.contains("uk_user_id")) {
+                return "用户ID已存在";
+            }
+            if (message.contains("uk_visitor_id")) {
+                return "该游客用户已存在，请更换浏览器环境再试";
+            }
         }
+        return "注册冲突：userId 或 visitorId 已存在，请更换后重试";
     }
 }
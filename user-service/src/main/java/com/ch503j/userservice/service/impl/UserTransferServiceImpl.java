@@ -0,0 +1,341 @@
+package com.ch503j.userservice.service.impl;
+
+import com.ch503j.common.enums.RoleEnum;
+import com.ch503j.common.exception.BusinessException;
+import com.ch503j.common.utils.IdGenerator;
+import com.ch503j.userservice.cache.UserAvailabilityFilter;
+import com.ch503j.userservice.mapper.UserMapper;
+import com.ch503j.userservice.pojo.dto.UserTransferDTO;
+import com.ch503j.userservice.pojo.entity.User;
+import com.ch503j.userservice.pojo.vo.UserImportResultVO;
+import com.ch503j.userservice.service.UserTransferService;
+import com.ch503j.userservice.service.support.UserCsvCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Slf4j
+@Service
+public class UserTransferServiceImpl implements UserTransferService {
+
+    private static final int MAX_ERRORS = 100;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Resource
+    private UserAvailabilityFilter userAvailabilityFilter;
+
+    /**
+     * 每条 INSERT 语句包含的行数
+     */
+    @Value("${user.transfer.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public UserImportResultVO importUsers(String format, InputStream in) throws IOException {
+        boolean csv = isCsv(format);
+        UserImportResultVO result = new UserImportResultVO();
+        long start = System.currentTimeMillis();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        String line;
+        long lineNo = 0;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || (csv && lineNo == 1 && line.startsWith("userId"))) {
+                    continue;
+                }
+                result.setTotal(result.getTotal() + 1);
+                UserTransferDTO dto;
+                try {
+                    dto = csv ? UserCsvCodec.parse(line) : objectMapper.readValue(line, UserTransferDTO.class);
+                } catch (Exception e) {
+                    result.setInvalid(result.getInvalid() + 1);
+                    addError(result, "第 " + lineNo + " 行格式错误：" + e.getMessage());
+                    continue;
+                }
+                String error = validate(dto);
+                if (error != null) {
+                    result.setInvalid(result.getInvalid() + 1);
+                    addError(result, "第 " + lineNo + " 行数据无效：" + error);
+                    continue;
+                }
+                batch.add(new ImportRow(lineNo, dto));
+                if (batch.size() >= batchSize) {
+                    flushBatch(batch, result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                flushBatch(batch, result);
+            }
+        } catch (DataAccessException e) {
+            // 数据库不可用等非数据问题：之前的批次已提交，返回已处理的结果
+            log.warn("用户导入在第 {} 行附近中断", lineNo, e);
+            result.setAborted(true);
+            addError(result, "第 " + lineNo + " 行附近导入中断，之前的行已导入：" + e.getMostSpecificCause().getMessage());
+        }
+
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        result.setRowsPerSecond(result.getTotal() * 1000D / Math.max(1, result.getElapsedMillis()));
+        log.info("用户导入完成：读取 {} 行，插入 {} 行，重复 {} 行，无效 {} 行，耗时 {} ms",
+                result.getTotal(), result.getInserted(), result.getDuplicates(), result.getInvalid(), result.getElapsedMillis());
+        return result;
+    }
+
+    @Override
+    public void exportUsers(String format, OutputStream out) throws IOException {
+        boolean csv = isCsv(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(UserCsvCodec.HEADER);
+            writer.write('\n');
+        }
+
+        // 流式游标需要在同一个连接（事务）内逐行读取
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<User> cursor = userMapper.selectAllForExport()) {
+                    for (User user : cursor) {
+                        UserTransferDTO dto = toTransferDTO(user);
+                        if (csv) {
+                            UserCsvCodec.write(writer, dto);
+                        } else {
+                            writer.write(objectMapper.writeValueAsString(dto));
+                            writer.write('\n');
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * 写入一批：先过滤文件内和库中重复的 visitorId / userId / phone，再多行插入
+     */
+    private void flushBatch(List<ImportRow> batch, UserImportResultVO result) {
+        Set<String> visitorIds = new HashSet<>();
+        Set<String> userIds = new HashSet<>();
+        Set<String> phones = new HashSet<>();
+        List<ImportRow> rows = new ArrayList<>(batch.size());
+        List<User> users = new ArrayList<>(batch.size());
+        long[] ids = IdGenerator.nextIds(batch.size());
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < batch.size(); i++) {
+            User user = toUser(batch.get(i).dto(), ids[i], now);
+            // 同一批内重复
+            if (!visitorIds.add(user.getVisitorId())
+                    || (user.getUserId() != null && !userIds.add(user.getUserId()))
+                    || (user.getPhone() != null && !phones.add(user.getPhone()))) {
+                result.setDuplicates(result.getDuplicates() + 1);
+                continue;
+            }
+            rows.add(batch.get(i));
+            users.add(user);
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        // 与库中已有数据（包括前面批次刚导入的）重复
+        Set<String> existingVisitorIds = new HashSet<>();
+        Set<String> existingUserIds = new HashSet<>();
+        Set<String> existingPhones = new HashSet<>();
+        for (User existing : userMapper.selectExistingKeys(visitorIds, userIds, phones)) {
+            existingVisitorIds.add(existing.getVisitorId());
+            if (existing.getUserId() != null) {
+                existingUserIds.add(existing.getUserId());
+            }
+            if (existing.getPhone() != null) {
+                existingPhones.add(existing.getPhone());
+            }
+        }
+        List<ImportRow> insertRows = new ArrayList<>(users.size());
+        List<User> toInsert = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (existingVisitorIds.contains(user.getVisitorId())
+                    || (user.getUserId() != null && existingUserIds.contains(user.getUserId()))
+                    || (user.getPhone() != null && existingPhones.contains(user.getPhone()))) {
+                result.setDuplicates(result.getDuplicates() + 1);
+            } else {
+                insertRows.add(rows.get(i));
+                toInsert.add(user);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        List<User> inserted = toInsert;
+        try {
+            userMapper.batchInsert(toInsert);
+            result.setInserted(result.getInserted() + toInsert.size());
+        } catch (DataIntegrityViolationException e) {
+            // 检查之后被并发写入，或某行未通过数据库约束：逐行重试，只跳过出错的行
+            inserted = new ArrayList<>(toInsert.size());
+            for (int i = 0; i < toInsert.size(); i++) {
+                User user = toInsert.get(i);
+                try {
+                    userMapper.insert(user);
+                    result.setInserted(result.getInserted() + 1);
+                    inserted.add(user);
+                } catch (DuplicateKeyException duplicate) {
+                    result.setDuplicates(result.getDuplicates() + 1);
+                } catch (DataIntegrityViolationException invalid) {
+                    result.setInvalid(result.getInvalid() + 1);
+                    addError(result, "第 " + insertRows.get(i).lineNo() + " 行写入失败："
+                            + invalid.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        for (User user : inserted) {
+            userAvailabilityFilter.add(user.getUserId(), user.getPhone());
+        }
+    }
+
+    /**
+     * 按 user 表的列定义校验一行，避免整批插入因单行数据被数据库拒绝
+     *
+     * @return 错误原因，通过时返回 null
+     */
+    private String validate(UserTransferDTO dto) {
+        if (StringUtils.hasText(dto.getUserId())) {
+            String userId = dto.getUserId();
+            if (userId.length() > 19 || !userId.chars().allMatch(Character::isDigit)) {
+                return "userId 必须为数字";
+            }
+            try {
+                Long.parseLong(userId);
+            } catch (NumberFormatException e) {
+                return "userId 超出范围";
+            }
+        }
+        if (StringUtils.hasText(dto.getRole())
+                && Arrays.stream(RoleEnum.values()).noneMatch(role -> role.getRole().equals(dto.getRole()))) {
+            return "role 只能是 USER、ADMIN、VISITOR";
+        }
+        if (dto.getStatus() != null && (dto.getStatus() < Byte.MIN_VALUE || dto.getStatus() > Byte.MAX_VALUE)) {
+            return "status 超出范围";
+        }
+        if (tooLong(dto.getUsername(), 50)) {
+            return "username 超过 50 个字符";
+        }
+        if (tooLong(dto.getPhone(), 20)) {
+            return "phone 超过 20 个字符";
+        }
+        if (tooLong(dto.getPassword(), 255)) {
+            return "password 超过 255 个字符";
+        }
+        if (tooLong(dto.getVisitorId(), 64)) {
+            return "visitorId 超过 64 个字符";
+        }
+        if (tooLong(dto.getLastIp(), 45)) {
+            return "lastIp 超过 45 个字符";
+        }
+        return null;
+    }
+
+    private boolean tooLong(String value, int maxLength) {
+        return value != null && value.length() > maxLength;
+    }
+
+    private User toUser(UserTransferDTO dto, long id, LocalDateTime now) {
+        User user = new User();
+        user.setId(id);
+        user.setUserId(StringUtils.hasText(dto.getUserId()) ? dto.getUserId() : null);
+        user.setUsername(dto.getUsername());
+        user.setPhone(StringUtils.hasText(dto.getPhone()) ? dto.getPhone() : null);
+        user.setPassword(dto.getPassword());
+        user.setRole(StringUtils.hasText(dto.getRole()) ? dto.getRole() : RoleEnum.USER.getRole());
+        user.setStatus(dto.getStatus() == null ? 1 : dto.getStatus());
+        user.setVisitorId(StringUtils.hasText(dto.getVisitorId()) ? dto.getVisitorId() : UUID.randomUUID().toString());
+        user.setCreateTime(dto.getCreateTime() == null ? now : dto.getCreateTime());
+        user.setUpdateTime(now);
+        user.setLastSeen(dto.getLastSeen());
+        user.setLastIp(dto.getLastIp());
+        user.setIsDelete(0);
+        return user;
+    }
+
+    private UserTransferDTO toTransferDTO(User user) {
+        UserTransferDTO dto = new UserTransferDTO();
+        dto.setUserId(user.getUserId());
+        dto.setUsername(user.getUsername());
+        dto.setPhone(user.getPhone());
+        dto.setPassword(user.getPassword());
+        dto.setRole(user.getRole());
+        dto.setStatus(user.getStatus());
+        dto.setVisitorId(user.getVisitorId());
+        dto.setCreateTime(user.getCreateTime());
+        dto.setLastSeen(user.getLastSeen());
+        dto.setLastIp(user.getLastIp());
+        return dto;
+    }
+
+    private boolean isCsv(String format) {
+        if ("csv".equalsIgnoreCase(format)) {
+            return true;
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return false;
+        }
+        throw new BusinessException(400, "不支持的格式：" + format + "，仅支持 csv、ndjson");
+    }
+
+    private void addError(UserImportResultVO result, String error) {
+        if (result.getErrors().size() < MAX_ERRORS) {
+            result.getErrors().add(error);
+        }
+    }
+
+    /**
+     * 待导入的一行及其行号
+     */
+    private record ImportRow(long lineNo, UserTransferDTO dto) {
+    }
+}
@@ -0,0 +1,338 @@
+package com.ch503j.userservice.service.support;
+
+import com.ch503j.common.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密码哈希与校验
+ * <p>
+ * - 使用 BCrypt，强度（cost）可配置，哈希和校验都在独立的有界线程池中执行
+ * - 校验成功的结果按 userId + 摘要缓存一段时间，同一用户短时间内重复登录不再重复计算 BCrypt；
+ * 摘要使用进程内随机密钥的 HMAC，密码或库中哈希变化时自然失效
+ * - 兼容历史明文密码，校验通过后由调用方升级为 BCrypt
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * 测量时允许的最大强度和每个强度的最大次数：强度 12 单次约几百毫秒，再高会长时间占用哈希线程
+     */
+    private static final int CALIBRATE_MAX_STRENGTH = 12;
+    private static final int CALIBRATE_MAX_ROUNDS = 10;
+
+    @Resource(name = "passwordHashExecutor")
+    private ThreadPoolTaskExecutor passwordHashExecutor;
+
+    /**
+     * BCrypt 强度（4~31），每加 1 计算量翻倍
+     */
+    @Value("${user.password.bcrypt-strength:10}")
+    private int strength;
+
+    /**
+     * 等待哈希/校验结果的超时时间（毫秒）
+     */
+    @Value("${user.password.timeout-ms:3000}")
+    private long timeoutMillis;
+
+    /**
+     * 校验成功结果缓存时间（秒），0 表示不缓存
+     */
+    @Value("${user.password.verified-cache-ttl-seconds:600}")
+    private long verifiedCacheTtlSeconds;
+
+    @Value("${user.password.verified-cache-max-entries:10000}")
+    private int verifiedCacheMaxEntries;
+
+    private BCryptPasswordEncoder encoder;
+
+    /**
+     * 用户不存在时用于校验的哈希，使响应耗时与用户存在时一致
+     */
+    private String dummyHash;
+
+    private byte[] digestKey;
+
+    /**
+     * userId -> 校验成功的摘要，按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<String, Verified> verified = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder computeNanos = new LongAdder();
+    private final LongAdder computations = new LongAdder();
+
+    /**
+     * 同一时间只允许一次强度测量
+     */
+    private final AtomicBoolean calibrating = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(strength);
+        digestKey = new byte[32];
+        new SecureRandom().nextBytes(digestKey);
+        dummyHash = encoder.encode("dummy-password");
+        log.info("密码哈希已初始化：BCrypt strength={}", strength);
+    }
+
+    /**
+     * 计算密码哈希
+     */
+    public String hash(String rawPassword) {
+        hashes.increment();
+        return compute(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param userId          用户ID（用于校验结果缓存），为空时不走缓存
+     * @param rawPassword     明文密码
+     * @param encodedPassword 库中保存的密码，为空时按用户不存在处理（仍会计算一次哈希）
+     * @return 校验结果
+     */
+    public VerifyResult verify(String userId, String rawPassword, String encodedPassword) {
+        verifications.increment();
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            compute(() -> encoder.matches(rawPassword, dummyHash));
+            return VerifyResult.FAILED;
+        }
+
+        if (!isBCrypt(encodedPassword)) {
+            // 历史明文密码：常量时间比较，通过后需要升级
+            boolean matched = MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    encodedPassword.getBytes(StandardCharsets.UTF_8));
+            return matched ? VerifyResult.MATCHED_NEEDS_UPGRADE : VerifyResult.FAILED;
+        }
+
+        String digest = userId == null || verifiedCacheTtlSeconds <= 0 ? null : digest(rawPassword, encodedPassword);
+        if (digest != null && isVerified(userId, digest)) {
+            cacheHits.increment();
+            return VerifyResult.MATCHED;
+        }
+
+        boolean matched = compute(() -> encoder.matches(rawPassword, encodedPassword));
+        if (!matched) {
+            return VerifyResult.FAILED;
+        }
+        if (digest != null) {
+            putVerified(userId, digest);
+        }
+        return encoder.upgradeEncoding(encodedPassword) ? VerifyResult.MATCHED_NEEDS_UPGRADE : VerifyResult.MATCHED;
+    }
+
+    /**
+     * 失效某个用户的校验缓存（修改密码时调用）
+     */
+    public synchronized void evict(String userId) {
+        verified.remove(userId);
+    }
+
+    /**
+     * 测量不同强度下单次哈希的耗时，用于按机器性能选择强度
+     * 每次计算作为单独的任务提交到哈希线程池，与登录请求一起排队，不占用请求线程，也不会长时间独占哈希线程
+     *
+     * @param fromStrength 起始强度
+     * @param toStrength   结束强度
+     * @param rounds       每个强度计算的次数
+     * @return 强度 -> 单次平均耗时（毫秒）和单核每秒可完成的次数
+     */
+    public Map<String, Object> calibrate(int fromStrength, int toStrength, int rounds) {
+        if (fromStrength < 4 || toStrength > CALIBRATE_MAX_STRENGTH || fromStrength > toStrength
+                || rounds < 1 || rounds > CALIBRATE_MAX_ROUNDS) {
+            throw new BusinessException(400, "强度范围需在 4~" + CALIBRATE_MAX_STRENGTH + " 之间，次数需在 1~" + CALIBRATE_MAX_ROUNDS + " 之间");
+        }
+        if (!calibrating.compareAndSet(false, true)) {
+            throw new BusinessException(429, "已有强度测量正在进行，请稍后再试");
+        }
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (int s = fromStrength; s <= toStrength; s++) {
+                BCryptPasswordEncoder candidate = new BCryptPasswordEncoder(s);
+                String encoded = submit(() -> candidate.encode("calibrate-password"));
+                long totalNanos = 0;
+                for (int i = 0; i < rounds; i++) {
+                    totalNanos += submit(() -> {
+                        long start = System.nanoTime();
+                        candidate.matches("calibrate-password", encoded);
+                        return System.nanoTime() - start;
+                    });
+                }
+                double avgMillis = totalNanos / 1_000_000D / rounds;
+
+                Map<String, Object> row = new HashMap<>();
+                row.put("avgMillis", avgMillis);
+                row.put("perCorePerSecond", avgMillis == 0 ? 0D : 1000D / avgMillis);
+                row.put("poolPerSecond", avgMillis == 0 ? 0D : 1000D / avgMillis * passwordHashExecutor.getMaxPoolSize());
+                result.put(String.valueOf(s), row);
+            }
+            return result;
+        } finally {
+            calibrating.set(false);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> stats() {
+        long computeCount = computations.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("strength", strength);
+        stats.put("threads", passwordHashExecutor.getMaxPoolSize());
+        stats.put("activeThreads", passwordHashExecutor.getActiveCount());
+        stats.put("queueSize", passwordHashExecutor.getThreadPoolExecutor().getQueue().size());
+        stats.put("hashes", hashes.sum());
+        stats.put("verifications", verifications.sum());
+        stats.put("verifiedCacheHits", cacheHits.sum());
+        synchronized (this) {
+            stats.put("verifiedCacheEntries", verified.size());
+        }
+        stats.put("computations", computeCount);
+        stats.put("avgComputeMillis", computeCount == 0 ? 0D : computeNanos.sum() / 1_000_000D / computeCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("timeouts", timeouts.sum());
+        return stats;
+    }
+
+    /**
+     * 在哈希线程池中执行并等待结果，计入耗时统计
+     */
+    private <T> T compute(Callable<T> task) {
+        return submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return task.call();
+            } finally {
+                computeNanos.add(System.nanoTime() - start);
+                computations.increment();
+            }
+        });
+    }
+
+    /**
+     * 在哈希线程池中执行并等待结果
+     */
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = passwordHashExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusinessException(503, "登录人数过多，请稍后再试");
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            throw new BusinessException(503, "登录人数过多，请稍后再试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("密码校验被中断");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码哈希计算失败", e.getCause());
+        }
+    }
+
+    private boolean isBCrypt(String encodedPassword) {
+        return encodedPassword.startsWith("$2a$") || encodedPassword.startsWith("$2b$") || encodedPassword.startsWith("$2y$");
+    }
+
+    private String digest(String rawPassword, String encodedPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(digestKey, HMAC_ALGORITHM));
+            mac.update(rawPassword.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("密码摘要计算失败", e);
+        }
+    }
+
+    private synchronized boolean isVerified(String userId, String digest) {
+        Verified entry = verified.get(userId);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expireAt() < System.currentTimeMillis()) {
+            verified.remove(userId);
+            return false;
+        }
+        return MessageDigest.isEqual(entry.digest().getBytes(StandardCharsets.US_ASCII), digest.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private synchronized void putVerified(String userId, String digest) {
+        verified.put(userId, new Verified(digest, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(verifiedCacheTtlSeconds)));
+
+        // 按最久未访问的顺序淘汰
+        Iterator<Verified> it = verified.values().iterator();
+        while (verified.size() > verifiedCacheMaxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 密码校验结果
+     */
+    public enum VerifyResult {
+        /**
+         * 校验通过
+         */
+        MATCHED,
+        /**
+         * 校验通过，但库中为明文或强度与当前配置不一致，需要重新哈希
+         */
+        MATCHED_NEEDS_UPGRADE,
+        /**
+         * 校验失败
+         */
+        FAILED;
+
+        public boolean matched() {
+            return this != FAILED;
+        }
+    }
+
+    private record Verified(String digest, long expireAt) {
+    }
+}
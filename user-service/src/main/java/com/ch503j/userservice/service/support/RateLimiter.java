@@ -0,0 +1,201 @@
+package com.ch503j.userservice.service.support;
+
+import com.ch503j.userservice.config.RateLimitProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁令牌桶限流（GCRA 算法）
+ * <p>
+ * 每个 (规则, key) 对应一个令牌桶，桶内只保存一个"理论到达时间"（AtomicLong），CAS 更新，不加锁。
+ * 桶按 key 分散在 ConcurrentHashMap 中；令牌已补满的桶与新桶等价，定期清理以限制内存。
+ * 桶数量达到上限时，新 key 按哈希分到每条规则的若干个溢出桶，宁可误伤也不放开；
+ * 溢出桶分片后，大量伪造 key 只会与少数正常用户共用额度，不会把所有新用户限在同一个桶里。
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    /**
+     * 接口路径 -> 规则
+     */
+    private Map<String, List<RuleState>> rulesByPath = Collections.emptyMap();
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 桶满时触发的即时清理最多每秒一次，避免每个新 key 都全表扫描
+     */
+    private static final long INLINE_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong lastInlineSweep = new AtomicLong(System.nanoTime() - INLINE_SWEEP_INTERVAL_NANOS);
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        Map<String, List<RuleState>> rules = new HashMap<>();
+        List<RateLimitProperties.Rule> configured = rateLimitProperties.getRules();
+        for (int i = 0; i < configured.size(); i++) {
+            RateLimitProperties.Rule rule = configured.get(i);
+            rules.computeIfAbsent(rule.getPath(), path -> new ArrayList<>()).add(new RuleState(i, rule));
+        }
+        rulesByPath = rules;
+        log.info("接口限流规则：{}", rules.keySet());
+    }
+
+    public boolean isEnabled() {
+        return rateLimitProperties.isEnabled();
+    }
+
+    /**
+     * 某个接口路径上的限流规则
+     */
+    public List<RuleState> rules(String path) {
+        return rulesByPath.getOrDefault(path, Collections.emptyList());
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @param rule 规则
+     * @param key  限流 key（IP 或 visitorId）
+     * @return 是否放行
+     */
+    public boolean tryAcquire(RuleState rule, String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(rule, key);
+        while (true) {
+            long tat = bucket.get();
+            long newTat = Math.max(tat, now) + rule.intervalNanos;
+            if (newTat - now > rule.burstNanos) {
+                rule.rejected.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                rule.allowed.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 清理令牌已补满的桶
+     */
+    @Scheduled(fixedDelayString = "${user.rate-limit.sweep-interval-ms:30000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        // 溢出桶（key 为 规则下标#分片）也会被清理，下次使用时重新创建
+        buckets.entrySet().removeIf(entry -> {
+            boolean idle = entry.getValue().get() - now <= 0;
+            if (idle) {
+                evictions.increment();
+            }
+            return idle;
+        });
+    }
+
+    /**
+     * 限流统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> rules = new LinkedHashMap<>();
+        rulesByPath.values().forEach(list -> list.forEach(rule -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put("path", rule.path);
+            row.put("key", rule.keyType);
+            row.put("permitsPerSecond", TimeUnit.SECONDS.toNanos(1) / (double) rule.intervalNanos);
+            row.put("burst", rule.burstNanos / rule.intervalNanos);
+            row.put("allowed", rule.allowed.sum());
+            row.put("rejected", rule.rejected.sum());
+            rules.put(rule.path + "#" + rule.keyType, row);
+        }));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", rateLimitProperties.isEnabled());
+        stats.put("buckets", buckets.size());
+        stats.put("maxBuckets", rateLimitProperties.getMaxBuckets());
+        stats.put("overflowShards", rateLimitProperties.getOverflowShards());
+        stats.put("evictions", evictions.sum());
+        stats.put("overflows", overflows.sum());
+        stats.put("rules", rules);
+        return stats;
+    }
+
+    private AtomicLong bucket(RuleState rule, String key) {
+        String bucketKey = rule.index + ":" + key;
+        AtomicLong bucket = buckets.get(bucketKey);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= rateLimitProperties.getMaxBuckets()) {
+            long now = System.nanoTime();
+            long last = lastInlineSweep.get();
+            if (now - last >= INLINE_SWEEP_INTERVAL_NANOS && lastInlineSweep.compareAndSet(last, now)) {
+                sweep();
+            }
+            if (buckets.size() >= rateLimitProperties.getMaxBuckets()) {
+                overflows.increment();
+                int shard = Math.floorMod(key.hashCode(), Math.max(1, rateLimitProperties.getOverflowShards()));
+                return buckets.computeIfAbsent(rule.index + "#" + shard, k -> new AtomicLong(System.nanoTime()));
+            }
+        }
+        return buckets.computeIfAbsent(bucketKey, k -> new AtomicLong(System.nanoTime()));
+    }
+
+    /**
+     * 规则及其统计
+     */
+    public static class RuleState {
+
+        private final int index;
+
+        private final String path;
+
+        private final String keyType;
+
+        /**
+         * 每个令牌的补充间隔
+         */
+        private final long intervalNanos;
+
+        /**
+         * 桶容量对应的时间窗口
+         */
+        private final long burstNanos;
+
+        private final LongAdder allowed = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        RuleState(int index, RateLimitProperties.Rule rule) {
+            this.index = index;
+            this.path = rule.getPath();
+            this.keyType = rule.getKey();
+            this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rule.getPermitsPerSecond()));
+            this.burstNanos = intervalNanos * Math.max(1, rule.getBurst());
+        }
+
+        public boolean keyByVisitor() {
+            return "visitor".equalsIgnoreCase(keyType);
+        }
+    }
+}
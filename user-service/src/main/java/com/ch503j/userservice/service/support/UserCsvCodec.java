@@ -0,0 +1,132 @@
+package com.ch503j.userservice.service.support;
+
+import com.ch503j.userservice.pojo.dto.UserTransferDTO;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户导入导出的 CSV 编解码（RFC 4180，字段内不支持换行）
+ */
+public final class UserCsvCodec {
+
+    public static final String HEADER = "userId,username,phone,password,role,status,visitorId,createTime,lastSeen,lastIp";
+
+    private static final int COLUMNS = 10;
+
+    private UserCsvCodec() {
+    }
+
+    /**
+     * 解析一行 CSV
+     *
+     * @throws IllegalArgumentException 列数不对或引号不匹配
+     */
+    public static UserTransferDTO parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != COLUMNS) {
+            throw new IllegalArgumentException("列数应为 " + COLUMNS + "，实际为 " + fields.size());
+        }
+        UserTransferDTO dto = new UserTransferDTO();
+        dto.setUserId(fields.get(0));
+        dto.setUsername(fields.get(1));
+        dto.setPhone(fields.get(2));
+        dto.setPassword(fields.get(3));
+        dto.setRole(fields.get(4));
+        dto.setStatus(fields.get(5) == null ? null : Integer.valueOf(fields.get(5)));
+        dto.setVisitorId(fields.get(6));
+        dto.setCreateTime(fields.get(7) == null ? null : LocalDateTime.parse(fields.get(7)));
+        dto.setLastSeen(fields.get(8) == null ? null : LocalDateTime.parse(fields.get(8)));
+        dto.setLastIp(fields.get(9));
+        return dto;
+    }
+
+    /**
+     * 写出一行 CSV（含换行）
+     */
+    public static void write(Writer writer, UserTransferDTO dto) throws IOException {
+        writeField(writer, dto.getUserId());
+        writer.write(',');
+        writeField(writer, dto.getUsername());
+        writer.write(',');
+        writeField(writer, dto.getPhone());
+        writer.write(',');
+        writeField(writer, dto.getPassword());
+        writer.write(',');
+        writeField(writer, dto.getRole());
+        writer.write(',');
+        writeField(writer, dto.getStatus() == null ? null : dto.getStatus().toString());
+        writer.write(',');
+        writeField(writer, dto.getVisitorId());
+        writer.write(',');
+        writeField(writer, dto.getCreateTime() == null ? null : dto.getCreateTime().toString());
+        writer.write(',');
+        writeField(writer, dto.getLastSeen() == null ? null : dto.getLastSeen().toString());
+        writer.write(',');
+        writeField(writer, dto.getLastIp());
+        writer.write('\n');
+    }
+
+    /**
+     * 切分一行，空字段返回 null
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号不匹配");
+        }
+        fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+        return fields;
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean needQuote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needQuote = true;
+                break;
+            }
+        }
+        if (!needQuote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,165 @@
+package com.ch503j.userservice.service.support;
+
+import com.ch503j.userservice.mapper.UserMapper;
+import com.ch503j.userservice.pojo.dto.VisitorHeartbeatDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 游客心跳写缓冲
+ * <p>
+ * 每次游客访问只把最近登录时间和 ip 放进内存，同一用户多次访问只保留最后一次，
+ * 由定时任务合并成多行 UPDATE 批量写回；缓冲区满时返回 false，由调用方直接写库。
+ * 服务关闭时会把剩余心跳全部写回。
+ */
+@Slf4j
+@Component
+public class VisitorHeartbeatBuffer {
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Value("${user.heartbeat.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓冲的用户数上限
+     */
+    @Value("${user.heartbeat.max-pending:50000}")
+    private int maxPending;
+
+    /**
+     * 每条 UPDATE 语句包含的行数
+     */
+    @Value("${user.heartbeat.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 用户主键 -> 待写回的心跳
+     */
+    private final ConcurrentHashMap<Long, VisitorHeartbeatDTO> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+
+    /**
+     * 记录一次心跳
+     *
+     * @param id       用户主键
+     * @param ip       登录ip
+     * @param lastSeen 登录时间
+     * @return 是否已放入缓冲区，false 表示未开启或缓冲区已满
+     */
+    public boolean offer(Long id, String ip, LocalDateTime lastSeen) {
+        if (!enabled) {
+            return false;
+        }
+        if (pending.size() >= maxPending && !pending.containsKey(id)) {
+            rejected.increment();
+            return false;
+        }
+        offered.increment();
+        if (pending.put(id, new VisitorHeartbeatDTO(id, lastSeen, ip)) != null) {
+            coalesced.increment();
+        }
+        return true;
+    }
+
+    /**
+     * 定时把缓冲区写回数据库
+     */
+    @Scheduled(fixedDelayString = "${user.heartbeat.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        List<VisitorHeartbeatDTO> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Long> it = pending.keySet().iterator();
+        while (it.hasNext()) {
+            // remove 拿到的是当前最新的心跳，之后的心跳会重新进入缓冲区，不会丢失
+            VisitorHeartbeatDTO heartbeat = pending.remove(it.next());
+            if (heartbeat != null) {
+                batch.add(heartbeat);
+            }
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        flushes.increment();
+        flushNanos.add(System.nanoTime() - start);
+        lastFlushMillis.set(elapsedMillis);
+        maxFlushMillis.accumulateAndGet(elapsedMillis, Math::max);
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+        log.info("游客心跳缓冲已写回，累计写回 {} 行", flushedRows.sum());
+    }
+
+    /**
+     * 缓冲区统计信息
+     */
+    public Map<String, Object> stats() {
+        long offeredCount = offered.sum();
+        long flushedCount = flushedRows.sum();
+        long flushCount = flushes.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", pending.size());
+        stats.put("maxPending", maxPending);
+        stats.put("offered", offeredCount);
+        stats.put("coalesced", coalesced.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("flushedRows", flushedCount);
+        stats.put("failedRows", failedRows.sum());
+        // 合并比：每写回一行平均吸收了多少次心跳
+        stats.put("coalescingRatio", flushedCount == 0 ? 0D : (double) offeredCount / flushedCount);
+        stats.put("flushes", flushCount);
+        stats.put("avgFlushMillis", flushCount == 0 ? 0D : flushNanos.sum() / 1_000_000D / flushCount);
+        stats.put("lastFlushMillis", lastFlushMillis.get());
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        return stats;
+    }
+
+    private void write(List<VisitorHeartbeatDTO> batch) {
+        try {
+            userMapper.batchUpdateHeartbeat(batch);
+            flushedRows.add(batch.size());
+        } catch (Exception e) {
+            // 心跳只是最近访问信息，写失败直接丢弃，下次访问会重新记录
+            failedRows.add(batch.size());
+            log.warn("游客心跳批量写回失败，丢弃 {} 条", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.ch503j.workflow.cache;
+
+import com.ch503j.workflow.pojo.dto.TaskDto;
+import com.ch503j.workflow.service.support.TaskDtoAssembler;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.IdentityService;
+import org.flowable.engine.TaskService;
+import org.flowable.idm.api.Group;
+import org.flowable.task.api.Task;
+import org.flowable.task.api.TaskInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 待办任务内存索引（单节点）
+ * <p>
+ * 索引以“用户/候选组”为 key，缓存该 key 下所有未完成任务：
+ * - U:{userId}  分配给该用户、或该用户本人是候选人的任务
+ * - G:{groupId} 该候选组可认领的任务
+ * 读取用户待办时合并用户自身 key 与其所在组的 key，避免每次都去查 identity link 表。
+ * <p>
+ * 索引按需加载，由 {@link CandidateTaskIndexListener} 在任务创建/分配/完成/删除时失效相关 key，
+ * 下次读取时重新加载。key 数量有上限，超出后按 LRU 淘汰。
+ * <p>
+ * 加载在锁外查询数据库，慢查询不会阻塞其他 key 的读取和失效；加载期间该 key 被失效时，查询结果只返回给本次调用，不写入索引。
+ */
+@Slf4j
+@Component
+public class CandidateTaskIndex {
+
+    private static final String USER_PREFIX = "U:";
+    private static final String GROUP_PREFIX = "G:";
+
+    /**
+     * 分配给该用户、或该用户本人（不含所在组）是候选人的任务；TaskQuery 的 taskCandidateUser 会展开用户所在组
+     */
+    private static final String USER_TASK_SQL = "SELECT RES.* FROM ACT_RU_TASK RES"
+            + " WHERE RES.ASSIGNEE_ = #{userId}"
+            + " OR (RES.ASSIGNEE_ IS NULL AND EXISTS ("
+            + " SELECT 1 FROM ACT_RU_IDENTITYLINK LINK"
+            + " WHERE LINK.TASK_ID_ = RES.ID_ AND LINK.TYPE_ = 'candidate' AND LINK.USER_ID_ = #{userId}))";
+
+    private static final Comparator<TaskDto> TASK_ORDER = Comparator
+            .comparing(TaskDto::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(TaskDto::getTaskId);
+
+    @Resource
+    private TaskService taskService;
+
+    @Resource
+    private IdentityService identityService;
+
+    @Resource
+    private TaskDtoAssembler taskDtoAssembler;
+
+    /**
+     * 是否启用索引，关闭后待办查询直接走数据库
+     */
+    @Value("${workflow.candidate-index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 用户所属组的缓存时间（秒），组成员关系变化不会触发流程事件，只能靠过期刷新
+     */
+    @Value("${workflow.candidate-index.group-ttl-seconds:60}")
+    private long groupTtlSeconds;
+
+    /**
+     * 最多缓存的 key 数（用户 key 与组 key 合计），用户所属组的缓存数量同样受此限制
+     */
+    @Value("${workflow.candidate-index.max-keys:10000}")
+    private int maxKeys;
+
+    /**
+     * key -> 该 key 下的任务（按创建时间、任务ID升序，只读），按访问顺序排列（LRU）
+     * 以下三个 Map 均由 this 保护
+     */
+    private final LinkedHashMap<String, List<TaskDto>> tasksByKey = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * taskId -> 引用了该任务的 key，任务变化时据此失效
+     */
+    private final Map<String, Set<String>> keysByTask = new HashMap<>();
+
+    /**
+     * 正在加载的 key -> 加载序号；key 被失效时移除，加载完成时据此判断结果是否还能写入
+     */
+    private final Map<String, Long> loading = new HashMap<>();
+
+    private long loadSequence;
+
+    /**
+     * userId -> 所属组，按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<String, CachedGroups> groupsByUser = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询用户可见的全部待办（已分配给我 + 我或我所在组可认领），按 (创建时间, 任务ID) 升序
+     */
+    public List<TaskDto> getTasks(String userId) {
+        Map<String, TaskDto> merged = new LinkedHashMap<>();
+        getOrLoad(USER_PREFIX + userId).forEach(t -> merged.putIfAbsent(t.getTaskId(), t));
+        for (String groupId : groupsOf(userId)) {
+            getOrLoad(GROUP_PREFIX + groupId).forEach(t -> merged.putIfAbsent(t.getTaskId(), t));
+        }
+
+        List<TaskDto> result = new ArrayList<>(merged.values());
+        result.sort(TASK_ORDER);
+        return result;
+    }
+
+    /**
+     * 任务发生变化：失效之前引用过该任务的 key，以及本次变化涉及的用户/组
+     *
+     * @param taskId   任务ID
+     * @param userIds  本次变化涉及的用户（办理人、候选人）
+     * @param groupIds 本次变化涉及的候选组
+     */
+    public synchronized void onTaskChanged(String taskId, Collection<String> userIds, Collection<String> groupIds) {
+        Set<String> keys = new HashSet<>();
+        Set<String> previous = keysByTask.remove(taskId);
+        if (previous != null) {
+            keys.addAll(previous);
+        }
+        userIds.stream().filter(Objects::nonNull).forEach(u -> keys.add(USER_PREFIX + u));
+        groupIds.stream().filter(Objects::nonNull).forEach(g -> keys.add(GROUP_PREFIX + g));
+        invalidate(keys);
+    }
+
+    /**
+     * 清空整个索引
+     */
+    public synchronized void invalidateAll() {
+        tasksByKey.clear();
+        keysByTask.clear();
+        loading.clear();
+        groupsByUser.clear();
+        invalidations.increment();
+    }
+
+    /**
+     * 对比索引与数据库中用户的待办，不一致时失效该用户相关 key
+     *
+     * @param userId 用户ID
+     * @return 对比结果：consistent / missingInIndex / extraInIndex
+     */
+    public Map<String, Object> checkConsistency(String userId) {
+        Set<String> indexed = getTasks(userId).stream()
+                .map(TaskDto::getTaskId)
+                .collect(Collectors.toSet());
+        Set<String> actual = taskService.createTaskQuery()
+                .or()
+                .taskAssignee(userId)
+                .taskCandidateUser(userId)
+                .endOr()
+                .list()
+                .stream()
+                .map(TaskInfo::getId)
+                .collect(Collectors.toSet());
+
+        Set<String> missing = new HashSet<>(actual);
+        missing.removeAll(indexed);
+        Set<String> extra = new HashSet<>(indexed);
+        extra.removeAll(actual);
+
+        boolean consistent = missing.isEmpty() && extra.isEmpty();
+        if (!consistent) {
+            log.warn("待办索引与数据库不一致，userId={}，缺失={}，多余={}", userId, missing, extra);
+            Set<String> keys = new HashSet<>();
+            keys.add(USER_PREFIX + userId);
+            groupsOf(userId).forEach(g -> keys.add(GROUP_PREFIX + g));
+            synchronized (this) {
+                groupsByUser.remove(userId);
+                invalidate(keys);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("consistent", consistent);
+        result.put("missingInIndex", missing);
+        result.put("extraInIndex", extra);
+        return result;
+    }
+
+    /**
+     * 索引统计信息
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (this) {
+            stats.put("keys", tasksByKey.size());
+            stats.put("trackedTasks", keysByTask.size());
+            stats.put("cachedUsers", groupsByUser.size());
+        }
+        stats.put("maxKeys", maxKeys);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0D : (double) hitCount / total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    /**
+     * 调用方需持有 this 锁
+     */
+    private void invalidate(Set<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            loading.remove(key);
+            untrack(key, tasksByKey.remove(key));
+        }
+        invalidations.increment();
+    }
+
+    private List<TaskDto> getOrLoad(String key) {
+        long sequence;
+        synchronized (this) {
+            List<TaskDto> cached = tasksByKey.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            sequence = ++loadSequence;
+            loading.put(key, sequence);
+        }
+        misses.increment();
+
+        List<TaskDto> loaded = null;
+        try {
+            loaded = load(key);
+            return loaded;
+        } finally {
+            synchronized (this) {
+                // 序号不一致说明加载期间 key 被失效，或有更新的加载在进行，本次结果不写入
+                if (loading.remove(key, sequence) && loaded != null) {
+                    untrack(key, tasksByKey.put(key, loaded));
+                    track(key, loaded);
+                    evictIfNecessary();
+                }
+            }
+        }
+    }
+
+    private void track(String key, List<TaskDto> tasks) {
+        for (TaskDto dto : tasks) {
+            keysByTask.computeIfAbsent(dto.getTaskId(), k -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void untrack(String key, List<TaskDto> tasks) {
+        if (tasks == null) {
+            return;
+        }
+        for (TaskDto dto : tasks) {
+            Set<String> keys = keysByTask.get(dto.getTaskId());
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTask.remove(dto.getTaskId());
+            }
+        }
+    }
+
+    private void evictIfNecessary() {
+        Iterator<Map.Entry<String, List<TaskDto>>> it = tasksByKey.entrySet().iterator();
+        while (tasksByKey.size() > maxKeys && it.hasNext()) {
+            Map.Entry<String, List<TaskDto>> eldest = it.next();
+            it.remove();
+            untrack(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    private List<TaskDto> load(String key) {
+        String id = key.substring(2);
+        List<Task> tasks;
+        if (key.startsWith(GROUP_PREFIX)) {
+            tasks = taskService.createTaskQuery()
+                    .taskCandidateGroup(id)
+                    .list();
+        } else {
+            // 组的任务由 G: key 单独缓存，这里只查用户本人，不展开所在组
+            tasks = taskService.createNativeTaskQuery()
+                    .sql(USER_TASK_SQL)
+                    .parameter("userId", id)
+                    .list();
+        }
+
+        List<TaskDto> dtoList = taskDtoAssembler.toTaskDtoList(tasks);
+        dtoList.sort(TASK_ORDER);
+        return Collections.unmodifiableList(dtoList);
+    }
+
+    private List<String> groupsOf(String userId) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CachedGroups cached = groupsByUser.get(userId);
+            if (cached != null && cached.expireAt() > now) {
+                return cached.groupIds();
+            }
+        }
+
+        List<String> groupIds = identityService.createGroupQuery()
+                .groupMember(userId)
+                .list()
+                .stream()
+                .map(Group::getId)
+                .toList();
+        synchronized (this) {
+            groupsByUser.put(userId, new CachedGroups(groupIds, now + groupTtlSeconds * 1000));
+            Iterator<String> it = groupsByUser.keySet().iterator();
+            while (groupsByUser.size() > maxKeys && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return groupIds;
+    }
+
+    private record CachedGroups(List<String> groupIds, long expireAt) {
+    }
+}
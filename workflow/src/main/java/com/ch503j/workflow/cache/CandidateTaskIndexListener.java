@@ -0,0 +1,105 @@
+package com.ch503j.workflow.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionContext;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.engine.RuntimeService;
+import org.flowable.identitylink.api.IdentityLinkInfo;
+import org.flowable.task.api.Task;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 待办索引失效监听器
+ * <p>
+ * 监听任务创建/分配/完成/删除以及任务候选人变化，失效 {@link CandidateTaskIndex} 中受影响的 key。
+ * 事件在事务内触发时先失效一次，事务提交后再失效一次，
+ * 防止提交前有并发读请求把旧数据重新加载进索引。
+ */
+@Slf4j
+@Component
+public class CandidateTaskIndexListener implements FlowableEventListener {
+
+    @Resource
+    private RuntimeService runtimeService;
+
+    @Resource
+    private CandidateTaskIndex candidateTaskIndex;
+
+    @PostConstruct
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.TASK_CREATED,
+                FlowableEngineEventType.TASK_ASSIGNED,
+                FlowableEngineEventType.TASK_COMPLETED,
+                FlowableEngineEventType.ENTITY_CREATED,
+                FlowableEngineEventType.ENTITY_DELETED);
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!candidateTaskIndex.isEnabled() || !(event instanceof FlowableEntityEvent entityEvent)) {
+            return;
+        }
+
+        Object entity = entityEvent.getEntity();
+        if (entity instanceof Task task) {
+            List<String> userIds = new ArrayList<>();
+            List<String> groupIds = new ArrayList<>();
+            userIds.add(task.getAssignee());
+            collectCandidates(task.getIdentityLinks(), userIds, groupIds);
+            invalidate(task.getId(), userIds, groupIds);
+        } else if (entity instanceof IdentityLinkInfo link && link.getTaskId() != null) {
+            List<String> userIds = new ArrayList<>();
+            List<String> groupIds = new ArrayList<>();
+            userIds.add(link.getUserId());
+            groupIds.add(link.getGroupId());
+            invalidate(link.getTaskId(), userIds, groupIds);
+        }
+    }
+
+    private void collectCandidates(List<? extends IdentityLinkInfo> links, List<String> userIds, List<String> groupIds) {
+        if (links == null) {
+            return;
+        }
+        for (IdentityLinkInfo link : links) {
+            userIds.add(link.getUserId());
+            groupIds.add(link.getGroupId());
+        }
+    }
+
+    private void invalidate(String taskId, List<String> userIds, List<String> groupIds) {
+        candidateTaskIndex.onTaskChanged(taskId, userIds, groupIds);
+
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext != null) {
+            transactionContext.addTransactionListener(TransactionState.COMMITTED,
+                    commandContext -> candidateTaskIndex.onTaskChanged(taskId, userIds, groupIds));
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        // 索引失效失败不能影响流程本身的流转
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
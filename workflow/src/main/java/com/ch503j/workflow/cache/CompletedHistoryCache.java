@@ -0,0 +1,269 @@
+package com.ch503j.workflow.cache;
+
+import com.ch503j.workflow.pojo.vo.CursorPageVO;
+import com.ch503j.workflow.pojo.vo.HistoryVO;
+import com.ch503j.workflow.service.support.HistoryArchiveStore;
+import com.ch503j.workflow.service.support.HistoryTimelineReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已结束流程实例的历史时间线缓存
+ * <p>
+ * 流程结束后其历史记录不再变化，缓存序列化后的完整时间线，重复查看已办结案件时不再查询三张历史表。
+ * 按 LRU 淘汰，同时限制总字节数和条目数；删除部署时按流程定义失效。
+ * 已归档（历史表中已删除）的实例从归档表读取后同样进入缓存。
+ * <p>
+ * 分页查询只读缓存，未命中时由调用方按游标分页查询历史表，不会为了一页去读取完整时间线；
+ * 命中时直接在序列化数据上跳过前面的记录，只反序列化当前页。
+ */
+@Slf4j
+@Component
+public class CompletedHistoryCache {
+
+    private static final TypeReference<List<HistoryVO>> TIMELINE_TYPE = new TypeReference<>() {
+    };
+
+    @Resource
+    private HistoryService historyService;
+
+    @Resource
+    private HistoryTimelineReader historyTimelineReader;
+
+    @Resource
+    private HistoryArchiveStore historyArchiveStore;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${workflow.history-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存总字节数上限
+     */
+    @Value("${workflow.history-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * 缓存条目数上限
+     */
+    @Value("${workflow.history-cache.max-entries:10000}")
+    private int maxEntries;
+
+    /**
+     * processInstanceId -> 序列化后的时间线，按访问顺序排列（LRU）
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 获取已结束流程实例的完整时间线
+     * 缓存未命中时：流程已结束则读取历史表并写入缓存；历史表中已不存在则读取归档；流程未结束返回 null，由调用方直接查询
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 完整时间线，流程未结束或不存在时返回 null
+     */
+    public List<HistoryVO> getOrLoad(String processInstanceId) {
+        if (enabled) {
+            byte[] cached = get(processInstanceId);
+            if (cached != null) {
+                hits.increment();
+                return deserialize(cached);
+            }
+            misses.increment();
+        }
+
+        HistoricProcessInstance instance = historyService.createHistoricProcessInstanceQuery()
+                .processInstanceId(processInstanceId)
+                .singleResult();
+        if (instance == null) {
+            return loadArchived(processInstanceId);
+        }
+        if (instance.getEndTime() == null || !enabled) {
+            return null;
+        }
+        return load(processInstanceId, instance.getProcessDefinitionId());
+    }
+
+    /**
+     * 从缓存中读取一页时间线，游标与 {@link HistoryTimelineReader#readPage} 通用
+     * 已归档的实例读取归档（归档为单条记录，只能整体读取）；其它未命中的情况返回 null，由调用方分页查询历史表
+     *
+     * @param processInstanceId 流程实例ID
+     * @param cursor            上一页返回的 nextCursor，首页传空
+     * @param pageSize          每页条数
+     * @return 当前页，未缓存时返回 null
+     */
+    public CursorPageVO<HistoryVO> getPage(String processInstanceId, String cursor, int pageSize) {
+        if (enabled) {
+            byte[] cached = get(processInstanceId);
+            if (cached != null) {
+                hits.increment();
+                return historyTimelineReader.slice((from, limit) -> readRange(cached, from, limit), cursor, pageSize);
+            }
+            misses.increment();
+        }
+
+        long exists = historyService.createHistoricProcessInstanceQuery()
+                .processInstanceId(processInstanceId)
+                .count();
+        if (exists > 0) {
+            return null;
+        }
+        List<HistoryVO> archived = loadArchived(processInstanceId);
+        return archived == null ? null : historyTimelineReader.slice(archived, cursor, pageSize);
+    }
+
+    /**
+     * 读取完整时间线并写入缓存（流程结束事件触发时预热调用），缓存关闭时不读取
+     *
+     * @param processInstanceId   已结束的流程实例ID
+     * @param processDefinitionId 流程定义ID
+     * @return 完整时间线，缓存关闭时返回 null
+     */
+    public List<HistoryVO> load(String processInstanceId, String processDefinitionId) {
+        if (!enabled) {
+            return null;
+        }
+        List<HistoryVO> timeline = historyTimelineReader.readAll(processInstanceId);
+        try {
+            put(processInstanceId, new Entry(processDefinitionId, objectMapper.writeValueAsBytes(timeline)));
+            loads.increment();
+        } catch (IOException e) {
+            log.warn("历史时间线序列化失败，processInstanceId={}", processInstanceId, e);
+        }
+        return timeline;
+    }
+
+    private List<HistoryVO> loadArchived(String processInstanceId) {
+        HistoryArchiveStore.ArchivedTimeline archived = historyArchiveStore.load(processInstanceId);
+        if (archived == null) {
+            return null;
+        }
+        if (enabled) {
+            try {
+                put(processInstanceId, new Entry(archived.processDefinitionId(), objectMapper.writeValueAsBytes(archived.timeline())));
+                loads.increment();
+            } catch (IOException e) {
+                log.warn("历史时间线序列化失败，processInstanceId={}", processInstanceId, e);
+            }
+        }
+        return archived.timeline();
+    }
+
+    /**
+     * 失效指定流程定义下的全部缓存
+     *
+     * @param processDefinitionIds 流程定义ID
+     */
+    public synchronized void evictProcessDefinitions(Collection<String> processDefinitionIds) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (processDefinitionIds.contains(entry.processDefinitionId())) {
+                currentBytes -= entry.payload().length;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", entries.size());
+        stats.put("bytes", currentBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0D : (double) hitCount / total);
+        stats.put("loads", loads.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private synchronized byte[] get(String processInstanceId) {
+        Entry entry = entries.get(processInstanceId);
+        return entry == null ? null : entry.payload();
+    }
+
+    private synchronized void put(String processInstanceId, Entry entry) {
+        if (entry.payload().length > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(processInstanceId, entry);
+        if (previous != null) {
+            currentBytes -= previous.payload().length;
+        }
+        currentBytes += entry.payload().length;
+
+        // 按最久未访问的顺序淘汰
+        Iterator<Entry> it = entries.values().iterator();
+        while ((currentBytes > maxBytes || entries.size() > maxEntries) && it.hasNext()) {
+            Entry eldest = it.next();
+            currentBytes -= eldest.payload().length;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 从序列化的时间线中读取 [from, from + limit) 范围内的记录，前面的记录只跳过不反序列化
+     */
+    private List<HistoryVO> readRange(byte[] payload, int from, int limit) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("历史时间线格式错误");
+            }
+            List<HistoryVO> records = new ArrayList<>(Math.min(limit, 64));
+            int index = 0;
+            while (records.size() < limit && parser.nextToken() == JsonToken.START_OBJECT) {
+                if (index++ < from) {
+                    parser.skipChildren();
+                } else {
+                    records.add(objectMapper.readValue(parser, HistoryVO.class));
+                }
+            }
+            return records;
+        } catch (IOException e) {
+            throw new IllegalStateException("历史时间线反序列化失败", e);
+        }
+    }
+
+    private List<HistoryVO> deserialize(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, TIMELINE_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException("历史时间线反序列化失败", e);
+        }
+    }
+
+    private record Entry(String processDefinitionId, byte[] payload) {
+    }
+}
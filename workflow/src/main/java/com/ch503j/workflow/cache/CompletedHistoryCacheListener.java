@@ -0,0 +1,82 @@
+package com.ch503j.workflow.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionContext;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.engine.RuntimeService;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流程结束时预热历史时间线缓存
+ * <p>
+ * 事务提交后才能读到完整的历史数据，因此在提交后把预热任务交给后台线程执行，不占用请求线程
+ */
+@Slf4j
+@Component
+public class CompletedHistoryCacheListener implements FlowableEventListener {
+
+    @Resource
+    private RuntimeService runtimeService;
+
+    @Resource
+    private CompletedHistoryCache completedHistoryCache;
+
+    @Resource(name = "historyCacheExecutor")
+    private TaskExecutor historyCacheExecutor;
+
+    @PostConstruct
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.PROCESS_COMPLETED,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_TERMINATE_END_EVENT,
+                FlowableEngineEventType.PROCESS_COMPLETED_WITH_ERROR_END_EVENT);
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event instanceof FlowableEngineEvent engineEvent) || engineEvent.getProcessInstanceId() == null) {
+            return;
+        }
+        String processInstanceId = engineEvent.getProcessInstanceId();
+        String processDefinitionId = engineEvent.getProcessDefinitionId();
+
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext != null) {
+            transactionContext.addTransactionListener(TransactionState.COMMITTED,
+                    commandContext -> warmUp(processInstanceId, processDefinitionId));
+        }
+    }
+
+    private void warmUp(String processInstanceId, String processDefinitionId) {
+        historyCacheExecutor.execute(() -> {
+            try {
+                completedHistoryCache.load(processInstanceId, processDefinitionId);
+            } catch (Exception e) {
+                log.warn("预热历史时间线缓存失败，processInstanceId={}", processInstanceId, e);
+            }
+        });
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ch503j.workflow.cache;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.bpmn.model.BpmnModel;
+import org.flowable.bpmn.model.UserTask;
+import org.flowable.engine.RepositoryService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 流程定义元数据缓存
+ * <p>
+ * 按流程定义预先解析每个用户任务节点的元数据（是否审批节点），
+ * completeTask 直接读取缓存，不再每次调用 getBpmnModel 遍历模型。
+ * <p>
+ * 流程定义部署后不可变，因此同一个 processDefinitionId 只解析一次：
+ * 新部署的流程定义由 {@link ProcessDefinitionMetadataCacheListener} 在部署提交后解析，
+ * 启动时预热库中所有最新版本，其它历史版本在首次使用时解析；删除部署时按 deploymentId 失效。
+ */
+@Slf4j
+@Component
+public class ProcessDefinitionMetadataCache {
+
+    private static final String FLOWABLE_NAMESPACE = "http://flowable.org/bpmn";
+
+    @Resource
+    private RepositoryService repositoryService;
+
+    /**
+     * processDefinitionId -> 编译后的元数据
+     */
+    private final Map<String, CompiledDefinition> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时预热所有最新版本的流程定义
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<ProcessDefinition> latest = repositoryService.createProcessDefinitionQuery()
+                .latestVersion()
+                .list();
+        latest.forEach(pd -> definitions.computeIfAbsent(pd.getId(), this::compile));
+        log.info("流程定义元数据缓存预热完成，共 {} 个流程定义", latest.size());
+    }
+
+    /**
+     * 解析并缓存指定流程定义（部署提交后调用）
+     *
+     * @param processDefinitionId 流程定义ID
+     */
+    public void warmUp(String processDefinitionId) {
+        definitions.computeIfAbsent(processDefinitionId, this::compile);
+    }
+
+    /**
+     * 获取任务节点元数据
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param taskDefinitionKey   任务节点ID
+     * @return 节点元数据，非用户任务或不存在时返回 {@link TaskMetadata#NONE}
+     */
+    public TaskMetadata getTaskMetadata(String processDefinitionId, String taskDefinitionKey) {
+        return definitions.computeIfAbsent(processDefinitionId, this::compile)
+                .tasks()
+                .getOrDefault(taskDefinitionKey, TaskMetadata.NONE);
+    }
+
+    /**
+     * 失效某个部署下的全部流程定义
+     *
+     * @param deploymentId 部署ID
+     */
+    public void evictDeployment(String deploymentId) {
+        definitions.values().removeIf(d -> Objects.equals(d.deploymentId(), deploymentId));
+    }
+
+    private CompiledDefinition compile(String processDefinitionId) {
+        ProcessDefinition definition = repositoryService.getProcessDefinition(processDefinitionId);
+        BpmnModel bpmnModel = repositoryService.getBpmnModel(processDefinitionId);
+
+        Map<String, TaskMetadata> tasks = new HashMap<>();
+        for (UserTask userTask : bpmnModel.getMainProcess().findFlowElementsOfType(UserTask.class, true)) {
+            boolean approveTask = "true".equalsIgnoreCase(userTask.getAttributeValue(FLOWABLE_NAMESPACE, "isApproveTask"));
+            tasks.put(userTask.getId(), new TaskMetadata(approveTask));
+        }
+        return new CompiledDefinition(definition.getDeploymentId(), tasks);
+    }
+
+    private record CompiledDefinition(String deploymentId, Map<String, TaskMetadata> tasks) {
+    }
+
+    /**
+     * 用户任务节点元数据
+     *
+     * @param approveTask 是否审批节点（flowable:isApproveTask="true"），提交时必须给出 approve
+     */
+    public record TaskMetadata(boolean approveTask) {
+
+        public static final TaskMetadata NONE = new TaskMetadata(false);
+    }
+}
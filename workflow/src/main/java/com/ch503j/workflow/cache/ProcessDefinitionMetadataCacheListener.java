@@ -0,0 +1,81 @@
+package com.ch503j.workflow.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.common.engine.impl.cfg.TransactionContext;
+import org.flowable.common.engine.impl.cfg.TransactionState;
+import org.flowable.common.engine.impl.context.Context;
+import org.flowable.engine.RuntimeService;
+import org.flowable.engine.repository.ProcessDefinition;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 部署流程定义时解析元数据
+ * <p>
+ * 部署事务提交后流程定义才能被其它命令读取，因此在提交后交给后台线程解析，不拖慢部署请求；
+ * 解析失败时 completeTask 首次使用该定义会再解析一次
+ */
+@Slf4j
+@Component
+public class ProcessDefinitionMetadataCacheListener implements FlowableEventListener {
+
+    @Resource
+    private RuntimeService runtimeService;
+
+    @Resource
+    private ProcessDefinitionMetadataCache metadataCache;
+
+    @Resource(name = "applicationTaskExecutor")
+    private TaskExecutor applicationTaskExecutor;
+
+    @PostConstruct
+    public void register() {
+        runtimeService.addEventListener(this, FlowableEngineEventType.ENTITY_INITIALIZED);
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (!(event instanceof FlowableEntityEvent entityEvent)
+                || !(entityEvent.getEntity() instanceof ProcessDefinition definition)) {
+            return;
+        }
+        String processDefinitionId = definition.getId();
+
+        TransactionContext transactionContext = Context.getTransactionContext();
+        if (transactionContext != null) {
+            transactionContext.addTransactionListener(TransactionState.COMMITTED,
+                    commandContext -> warmUp(processDefinitionId));
+        }
+    }
+
+    private void warmUp(String processDefinitionId) {
+        applicationTaskExecutor.execute(() -> {
+            try {
+                metadataCache.warmUp(processDefinitionId);
+            } catch (Exception e) {
+                log.warn("解析流程定义元数据失败，processDefinitionId={}", processDefinitionId, e);
+            }
+        });
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
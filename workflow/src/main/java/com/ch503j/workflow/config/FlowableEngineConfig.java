@@ -0,0 +1,114 @@
+package com.ch503j.workflow.config;
+
+import com.ch503j.workflow.engine.AsyncJobExecutorMetrics;
+import com.ch503j.workflow.engine.AsyncSubProcessParseHandler;
+import com.ch503j.workflow.engine.BoundedVirtualThreadExecutor;
+import com.ch503j.workflow.engine.HistoryLevelParseHandler;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.parse.BpmnParseHandler;
+import org.flowable.spring.SpringProcessEngineConfiguration;
+import org.flowable.spring.boot.EngineConfigurationConfigurer;
+import org.flowable.spring.boot.process.Process;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Flowable 引擎扩展配置
+ * <p>
+ * - 按配置给指定流程的子流程加上异步续办
+ * - 按流程定义覆盖历史级别
+ * - 为异步执行器提供作业线程池（JDK 21+ 可选虚拟线程，否则使用有界平台线程池）
+ */
+@Slf4j
+@Configuration
+public class FlowableEngineConfig implements EngineConfigurationConfigurer<SpringProcessEngineConfiguration> {
+
+    /**
+     * 是否在子流程边界异步续办（需要同时开启 flowable.async-executor-activate）
+     */
+    @Value("${workflow.async.subprocess-continuations:false}")
+    private boolean subprocessContinuations;
+
+    /**
+     * 需要异步续办的流程定义 key
+     */
+    @Value("${workflow.async.processes:PatentProcess}")
+    private List<String> asyncProcessKeys;
+
+    @Resource
+    private WorkflowHistoryProperties historyProperties;
+
+    @Override
+    public void configure(SpringProcessEngineConfiguration configuration) {
+        List<BpmnParseHandler> handlers = configuration.getPreBpmnParseHandlers() == null
+                ? new ArrayList<>() : new ArrayList<>(configuration.getPreBpmnParseHandlers());
+
+        if (subprocessContinuations) {
+            handlers.add(new AsyncSubProcessParseHandler(new HashSet<>(asyncProcessKeys)));
+            log.info("已开启子流程异步续办，流程：{}", asyncProcessKeys);
+        }
+
+        // 按流程定义覆盖历史级别
+        if (!historyProperties.getLevels().isEmpty()) {
+            configuration.setEnableProcessDefinitionHistoryLevel(true);
+            handlers.add(new HistoryLevelParseHandler(historyProperties.getLevels()));
+            log.info("已开启按流程定义配置历史级别：{}", historyProperties.getLevels());
+        }
+
+        configuration.setPreBpmnParseHandlers(handlers);
+    }
+
+    /**
+     * 异步作业线程池
+     * 开启虚拟线程且运行在 JDK 21+ 时每个作业一个虚拟线程，同时执行数和等待数按 pool-size / queue-capacity 限制；
+     * 否则使用同样大小的有界平台线程池。两种方式下超出上限的作业都会被退回，等待下一轮获取
+     */
+    @Bean
+    @Process
+    public TaskExecutor processTaskExecutor(AsyncJobExecutorMetrics metrics,
+                                            @Value("${workflow.async.virtual-threads:false}") boolean virtualThreads,
+                                            @Value("${workflow.async.pool-size:8}") int poolSize,
+                                            @Value("${workflow.async.queue-capacity:256}") int queueCapacity) {
+        if (virtualThreads) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null) {
+                BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(
+                        virtualExecutor, metrics::decorate, poolSize, queueCapacity);
+                metrics.bind("virtual", executor::getQueueDepth);
+                log.info("异步作业使用虚拟线程执行，并发上限 {}，等待上限 {}", poolSize, queueCapacity);
+                return executor;
+            }
+            log.warn("当前 JDK 不支持虚拟线程，异步作业回退到平台线程池");
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("flowable-async-job-");
+        executor.setTaskDecorator(metrics::decorate);
+        metrics.bind("platform", () -> executor.getThreadPoolExecutor().getQueue().size());
+        return executor;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，工程按 JDK 17 编译，运行在 JDK 21+ 时才可用
+     */
+    private ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.ch503j.workflow.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 工作流服务内部使用的线程池
+ */
+@Configuration
+public class WorkflowExecutorConfig {
+
+    /**
+     * MVC 异步请求线程池：/history/{id}/stream 等 NDJSON 接口的 StreamingResponseBody 在这里写出；
+     * 下面的终止任务线程池会让 Boot 跳过默认的 applicationTaskExecutor，所以显式声明并设为 @Primary
+     */
+    @Primary
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * 批量终止任务的调度线程：负责分页读取流程实例并分发给 terminateWorkerExecutor
+     * 同一时间只允许一个批量终止任务运行，因此单线程即可
+     */
+    @Bean(name = "terminateCoordinatorExecutor")
+    public ThreadPoolTaskExecutor terminateCoordinatorExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("terminate-coordinator-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * 批量终止任务的工作线程：并行删除流程实例
+     * 队列有界，队列满时由调度线程自己执行，起到背压作用
+     */
+    @Bean(name = "terminateWorkerExecutor")
+    public ThreadPoolTaskExecutor terminateWorkerExecutor(@Value("${workflow.terminate.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 4);
+        executor.setThreadNamePrefix("terminate-worker-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * 历史时间线缓存预热线程
+     * 预热只是优化，队列满时直接丢弃，读取时会再按需加载
+     */
+    @Bean(name = "historyCacheExecutor")
+    public ThreadPoolTaskExecutor historyCacheExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("history-cache-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        return executor;
+    }
+}
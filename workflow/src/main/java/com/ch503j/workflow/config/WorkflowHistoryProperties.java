@@ -0,0 +1,63 @@
+package com.ch503j.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程历史相关配置（workflow.history.*）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "workflow.history")
+public class WorkflowHistoryProperties {
+
+    /**
+     * 按流程定义 key 覆盖历史级别（none / activity / audit / full），未配置的沿用 flowable.history-level
+     */
+    private Map<String, String> levels = new HashMap<>();
+
+    /**
+     * 历史归档配置
+     */
+    private Archive archive = new Archive();
+
+    @Data
+    public static class Archive {
+
+        /**
+         * 是否开启归档
+         */
+        private boolean enabled = false;
+
+        /**
+         * 需要归档的流程定义 key
+         */
+        private List<String> processKeys = new ArrayList<>(List.of("PatentProcess"));
+
+        /**
+         * 流程结束超过多少天后归档
+         */
+        private int retentionDays = 180;
+
+        /**
+         * 归档记录保留天数（按流程结束时间），超过后删除，0 表示永久保留
+         */
+        private int purgeAfterDays = 1825;
+
+        /**
+         * 每批处理的流程实例数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 单次运行最多处理的批数，避免一次占用太久
+         */
+        private int maxBatchesPerRun = 50;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ch503j.workflow.controller;
+
+import com.ch503j.common.pojo.dto.BaseResponse;
+import com.ch503j.workflow.cache.CandidateTaskIndex;
+import com.ch503j.workflow.cache.CompletedHistoryCache;
+import com.ch503j.workflow.engine.AsyncJobExecutorMetrics;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 运行指标查询
+ * <p>
+ * 提供工作流服务内各类缓存、索引的命中率等指标，以及一致性校验接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Resource
+    private CandidateTaskIndex candidateTaskIndex;
+
+    @Resource
+    private CompletedHistoryCache completedHistoryCache;
+
+    @Resource
+    private AsyncJobExecutorMetrics asyncJobExecutorMetrics;
+
+    /**
+     * 待办索引统计（key 数量、命中率、失效次数）
+     */
+    @GetMapping("/candidate-index/stats")
+    public BaseResponse<Map<String, Object>> candidateIndexStats() {
+
+        return BaseResponse.success(candidateTaskIndex.stats());
+    }
+
+    /**
+     * 校验某个用户的待办索引与数据库是否一致，不一致时会自动失效该用户相关索引
+     *
+     * @param userId 用户ID
+     */
+    @GetMapping("/candidate-index/check/{userId}")
+    public BaseResponse<Map<String, Object>> checkCandidateIndex(@PathVariable String userId) {
+
+        return BaseResponse.success(candidateTaskIndex.checkConsistency(userId));
+    }
+
+    /**
+     * 清空待办索引
+     */
+    @PostMapping("/candidate-index/reset")
+    public BaseResponse<String> resetCandidateIndex() {
+        candidateTaskIndex.invalidateAll();
+        return BaseResponse.success("待办索引已清空");
+    }
+
+    /**
+     * 已结束流程历史时间线缓存统计（条目数、字节数、命中率、淘汰次数）
+     */
+    @GetMapping("/history-cache/stats")
+    public BaseResponse<Map<String, Object>> historyCacheStats() {
+
+        return BaseResponse.success(completedHistoryCache.stats());
+    }
+
+    /**
+     * 异步作业执行指标（获取延迟、队列深度、排队等待时间、执行耗时）
+     */
+    @GetMapping("/async-executor/stats")
+    public BaseResponse<Map<String, Object>> asyncExecutorStats() {
+
+        return BaseResponse.success(asyncJobExecutorMetrics.stats());
+    }
+}
@@ -1,6 +1,7 @@
 package com.ch503j.workflow.controller;
 
 import com.ch503j.common.pojo.dto.BaseResponse;
+import com.ch503j.workflow.pojo.vo.TerminateJobVO;
 import com.ch503j.workflow.service.ProcessService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -27,14 +28,37 @@ public class ProcessController {
      * 终止系统中所有在流转的流程实例
      * <p>
      * 说明：
-     * - 通过 RuntimeService 查询所有正在运行的流程实例
-     * - 调用 deleteProcessInstance 方法逐个终止实例，并可记录原因
+     * - 以后台任务方式执行，接口立即返回 jobId，可通过 /terminateAll/{jobId} 查询进度
+     * - 按实例ID分页读取运行中的流程实例，分块后在线程池中并行调用 deleteProcessInstance，并记录原因
+     * - 同一时间只允许一个批量终止任务运行
      * - 请谨慎调用，该操作不可恢复，会删除所有正在执行的流程实例
      */
     @PostMapping("/terminateAll")
-    public BaseResponse<List<Map<String, String>>> terminateAllProcesses(@RequestParam(required = false) String reason) {
+    public BaseResponse<TerminateJobVO> terminateAllProcesses(@RequestParam(required = false) String reason) {
 
-        return BaseResponse.success(processService.terminateAllProcesses(reason));
+        return BaseResponse.success("批量终止任务已启动", processService.terminateAllProcesses(reason));
+    }
+
+    /**
+     * 查询批量终止任务进度（已终止数、失败数、吞吐量）
+     *
+     * @param jobId 批量终止任务ID
+     */
+    @GetMapping("/terminateAll/{jobId}")
+    public BaseResponse<TerminateJobVO> getTerminateJob(@PathVariable String jobId) {
+
+        return BaseResponse.success(processService.getTerminateJob(jobId));
+    }
+
+    /**
+     * 取消批量终止任务，已终止的流程实例不会恢复
+     *
+     * @param jobId 批量终止任务ID
+     */
+    @PostMapping("/terminateAll/{jobId}/cancel")
+    public BaseResponse<TerminateJobVO> cancelTerminateJob(@PathVariable String jobId) {
+
+        return BaseResponse.success(processService.cancelTerminateJob(jobId));
     }
 
     /**
@@ -2,11 +2,18 @@ package com.ch503j.workflow.controller;
 
 import com.ch503j.common.pojo.dto.BaseResponse;
 import com.ch503j.workflow.pojo.dto.TaskDto;
+import com.ch503j.workflow.pojo.dto.WorkflowRequestDto;
+import com.ch503j.workflow.pojo.vo.BatchCompleteResultVO;
+import com.ch503j.workflow.pojo.vo.CursorPageVO;
 import com.ch503j.workflow.pojo.vo.HistoryVO;
 import com.ch503j.workflow.service.WorkflowDemoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -35,9 +42,17 @@ import java.util.Map;
 @RequestMapping("/workflow")
 public class WorkflowDemoController {
 
+    /**
+     * 流式输出待办时每次向数据库拉取的条数
+     */
+    private static final int STREAM_PAGE_SIZE = 200;
+
     @Resource
     private WorkflowDemoService workflowDemoService;
 
+    @Resource
+    private ObjectMapper objectMapper;
+
     /**
      * 启动流程
      *
@@ -64,13 +79,63 @@ public class WorkflowDemoController {
     /**
      * 查询候选组待办任务（针对候选组）
      *
-     * @param userId 用户ID
+     * @param userId   用户ID
+     * @param pageNum  页码，从 1 开始
+     * @param pageSize 每页条数，最大 200
      * @return 用户可见的待办任务列表
      */
     @GetMapping("/candidate/{userId}")
-    public BaseResponse<List<TaskDto>> getCandidateTasks(@PathVariable String userId) {
+    public BaseResponse<List<TaskDto>> getCandidateTasks(@PathVariable String userId,
+                                                         @RequestParam(defaultValue = "1") Integer pageNum,
+                                                         @RequestParam(defaultValue = "50") Integer pageSize) {
+
+        return BaseResponse.success(workflowDemoService.getCandidateTasks(userId, pageNum, pageSize));
+    }
+
+
+    /**
+     * 游标分页查询待办任务（适合待办量很大的用户）
+     *
+     * @param userId   用户ID
+     * @param cursor   上一页返回的 nextCursor，首页不传
+     * @param pageSize 每页条数，最大 200
+     * @return 当前页任务及下一页游标
+     */
+    @GetMapping("/candidate/{userId}/cursor")
+    public BaseResponse<CursorPageVO<TaskDto>> getCandidateTasksByCursor(@PathVariable String userId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "50") Integer pageSize) {
+
+        return BaseResponse.success(workflowDemoService.getCandidateTasksByCursor(userId, cursor, pageSize));
+    }
+
+
+    /**
+     * 以 NDJSON 流式返回用户全部待办任务（每行一个 TaskDto）
+     * 内部按游标逐页查询、逐页写出，不会把全部任务加载进内存
+     *
+     * @param userId 用户ID
+     */
+    @GetMapping(value = "/candidate/{userId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCandidateTasks(@PathVariable String userId) {
 
-        return BaseResponse.success(workflowDemoService.getCandidateTasks(userId));
+        StreamingResponseBody body = out -> {
+            String cursor = null;
+            boolean hasMore;
+            do {
+                CursorPageVO<TaskDto> page = workflowDemoService.getCandidateTasksByCursor(userId, cursor, STREAM_PAGE_SIZE);
+                for (TaskDto dto : page.getRecords()) {
+                    out.write(objectMapper.writeValueAsBytes(dto));
+                    out.write('\n');
+                }
+                out.flush();
+                cursor = page.getNextCursor();
+                hasMore = Boolean.TRUE.equals(page.getHasMore());
+            } while (hasMore);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
 
@@ -120,6 +185,19 @@ public class WorkflowDemoController {
         return BaseResponse.success(workflowDemoService.completeTask(taskId, userId, variables, nextAssignee, approve, comment), taskId);
     }
 
+    /**
+     * 批量提交任务（审批）
+     * 每个任务在独立事务中提交，单个任务失败不影响其它任务，单次最多 100 个
+     *
+     * @param requests 提交参数列表，每项 taskId、userId 必传，其余参数含义同 /complete
+     * @return 每个任务的提交结果
+     */
+    @PostMapping("/complete/batch")
+    public BaseResponse<List<BatchCompleteResultVO>> batchCompleteTasks(@RequestBody List<WorkflowRequestDto> requests) {
+
+        return BaseResponse.success(workflowDemoService.batchCompleteTasks(requests));
+    }
+
     /**
      * 查询流程实例的历史流转记录
      *
@@ -131,4 +209,48 @@ public class WorkflowDemoController {
 
         return BaseResponse.success(workflowDemoService.getProcessHistory(processInstanceId));
     }
+
+    /**
+     * 分页查询流程实例的历史流转记录
+     * 活动、任务、批注三类记录按时间归并，每页只读取约 pageSize 行 * 3
+     *
+     * @param processInstanceId 流程实例ID
+     * @param cursor            上一页返回的 nextCursor，首页不传
+     * @param pageSize          每页条数，最大 200
+     * @return 当前页历史记录及下一页游标
+     */
+    @GetMapping("/history/{processInstanceId}/page")
+    public BaseResponse<CursorPageVO<HistoryVO>> getProcessHistoryPage(@PathVariable String processInstanceId,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(defaultValue = "50") Integer pageSize) {
+
+        return BaseResponse.success(workflowDemoService.getProcessHistoryPage(processInstanceId, cursor, pageSize));
+    }
+
+    /**
+     * 以 NDJSON 流式返回流程实例的完整历史流转记录（每行一个 HistoryVO）
+     *
+     * @param processInstanceId 流程实例ID
+     */
+    @GetMapping(value = "/history/{processInstanceId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProcessHistory(@PathVariable String processInstanceId) {
+
+        StreamingResponseBody body = out -> {
+            String cursor = null;
+            boolean hasMore;
+            do {
+                CursorPageVO<HistoryVO> page = workflowDemoService.getProcessHistoryPage(processInstanceId, cursor, STREAM_PAGE_SIZE);
+                for (HistoryVO vo : page.getRecords()) {
+                    out.write(objectMapper.writeValueAsBytes(vo));
+                    out.write('\n');
+                }
+                out.flush();
+                cursor = page.getNextCursor();
+                hasMore = Boolean.TRUE.equals(page.getHasMore());
+            } while (hasMore);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
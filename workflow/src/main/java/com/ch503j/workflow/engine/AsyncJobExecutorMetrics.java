@@ -0,0 +1,128 @@
+package com.ch503j.workflow.engine;
+
+import org.flowable.job.api.Job;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 异步作业执行指标
+ * <p>
+ * 通过 TaskDecorator 包装交给作业线程池的每个作业，统计排队等待时间（作业被获取后到开始执行）、
+ * 执行耗时、执行中数量以及线程池队列深度；
+ * 获取延迟（作业到期到被获取）由 {@link AsyncJobMetricsListener} 在作业执行事件中读取作业的到期时间后记录，
+ * 获取线程拿到作业后立即交给线程池，因此以交给线程池的时间作为获取时间
+ */
+@Component
+public class AsyncJobExecutorMetrics {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong running = new AtomicLong();
+
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final LongAdder totalExecutionMillis = new LongAdder();
+    private final AtomicLong maxExecutionMillis = new AtomicLong();
+
+    private final LongAdder acquisitionSamples = new LongAdder();
+    private final LongAdder totalAcquisitionMillis = new LongAdder();
+    private final AtomicLong maxAcquisitionMillis = new AtomicLong();
+
+    /**
+     * 当前线程正在执行的作业交给线程池的时间
+     */
+    private final ThreadLocal<Long> handedOverAt = new ThreadLocal<>();
+
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    private volatile String executorType = "unknown";
+
+    /**
+     * 绑定线程池信息
+     *
+     * @param executorType 线程池类型（virtual / platform）
+     * @param queueDepth   队列深度
+     */
+    public void bind(String executorType, IntSupplier queueDepth) {
+        this.executorType = executorType;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * 包装作业，记录排队和执行耗时
+     */
+    public Runnable decorate(Runnable job) {
+        long submitAt = System.currentTimeMillis();
+        submitted.increment();
+        return () -> {
+            long startAt = System.currentTimeMillis();
+            record(totalWaitMillis, maxWaitMillis, startAt - submitAt);
+            running.incrementAndGet();
+            handedOverAt.set(submitAt);
+            try {
+                job.run();
+                completed.increment();
+            } catch (RuntimeException | Error e) {
+                failed.increment();
+                throw e;
+            } finally {
+                handedOverAt.remove();
+                running.decrementAndGet();
+                record(totalExecutionMillis, maxExecutionMillis, System.currentTimeMillis() - startAt);
+            }
+        };
+    }
+
+    /**
+     * 记录作业的获取延迟：到期时间（无到期时间的异步作业取创建时间）到被获取
+     * 只统计经由作业线程池执行的作业，同一作业只记录一次
+     *
+     * @param job 正在执行的作业
+     */
+    public void recordAcquisition(Job job) {
+        Long acquiredAt = handedOverAt.get();
+        if (acquiredAt == null) {
+            return;
+        }
+        handedOverAt.remove();
+        Date dueAt = job.getDuedate() != null ? job.getDuedate() : job.getCreateTime();
+        if (dueAt == null) {
+            return;
+        }
+        acquisitionSamples.increment();
+        record(totalAcquisitionMillis, maxAcquisitionMillis, Math.max(0, acquiredAt - dueAt.getTime()));
+    }
+
+    public Map<String, Object> stats() {
+        long finished = completed.sum() + failed.sum();
+        long started = finished + running.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("executorType", executorType);
+        stats.put("queueDepth", queueDepth.getAsInt());
+        stats.put("running", running.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("avgWaitMillis", started == 0 ? 0D : (double) totalWaitMillis.sum() / started);
+        stats.put("maxWaitMillis", maxWaitMillis.get());
+        stats.put("avgExecutionMillis", finished == 0 ? 0D : (double) totalExecutionMillis.sum() / finished);
+        stats.put("maxExecutionMillis", maxExecutionMillis.get());
+        long samples = acquisitionSamples.sum();
+        stats.put("avgAcquisitionMillis", samples == 0 ? 0D : (double) totalAcquisitionMillis.sum() / samples);
+        stats.put("maxAcquisitionMillis", maxAcquisitionMillis.get());
+        return stats;
+    }
+
+    private void record(LongAdder total, AtomicLong max, long millis) {
+        total.add(millis);
+        max.accumulateAndGet(millis, Math::max);
+    }
+}
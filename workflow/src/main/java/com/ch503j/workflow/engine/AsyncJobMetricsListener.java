@@ -0,0 +1,55 @@
+package com.ch503j.workflow.engine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.flowable.common.engine.api.delegate.event.FlowableEngineEventType;
+import org.flowable.common.engine.api.delegate.event.FlowableEntityEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEvent;
+import org.flowable.common.engine.api.delegate.event.FlowableEventListener;
+import org.flowable.engine.RuntimeService;
+import org.flowable.job.api.Job;
+import org.springframework.stereotype.Component;
+
+/**
+ * 作业执行结束时记录获取延迟
+ * <p>
+ * 执行事件在作业线程内同步分发，此时能拿到作业的到期时间，与 {@link AsyncJobExecutorMetrics} 记下的获取时间相减
+ */
+@Component
+public class AsyncJobMetricsListener implements FlowableEventListener {
+
+    @Resource
+    private RuntimeService runtimeService;
+
+    @Resource
+    private AsyncJobExecutorMetrics asyncJobExecutorMetrics;
+
+    @PostConstruct
+    public void register() {
+        runtimeService.addEventListener(this,
+                FlowableEngineEventType.JOB_EXECUTION_SUCCESS,
+                FlowableEngineEventType.JOB_EXECUTION_FAILURE);
+    }
+
+    @Override
+    public void onEvent(FlowableEvent event) {
+        if (event instanceof FlowableEntityEvent entityEvent && entityEvent.getEntity() instanceof Job job) {
+            asyncJobExecutorMetrics.recordAcquisition(job);
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    @Override
+    public boolean isFireOnTransactionLifecycleEvent() {
+        return false;
+    }
+
+    @Override
+    public String getOnTransaction() {
+        return null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ch503j.workflow.engine;
+
+import org.flowable.bpmn.model.BaseElement;
+import org.flowable.bpmn.model.SubProcess;
+import org.flowable.engine.impl.bpmn.parser.BpmnParse;
+import org.flowable.engine.impl.bpmn.parser.handler.AbstractBpmnParseHandler;
+
+import java.util.Set;
+
+/**
+ * 在解析流程定义时把指定流程中的子流程标记为异步（flowable:async="true"）
+ * <p>
+ * 子流程入口处产生异步作业，上一个任务提交后请求线程即可返回，子流程的推进交给异步执行器。
+ * 通过配置开启，开发环境异步执行器关闭时不要开启，否则作业不会被执行。
+ */
+public class AsyncSubProcessParseHandler extends AbstractBpmnParseHandler<SubProcess> {
+
+    /**
+     * 需要异步续办的流程定义 key
+     */
+    private final Set<String> processKeys;
+
+    public AsyncSubProcessParseHandler(Set<String> processKeys) {
+        this.processKeys = processKeys;
+    }
+
+    @Override
+    protected Class<? extends BaseElement> getHandledType() {
+        return SubProcess.class;
+    }
+
+    @Override
+    protected void executeParse(BpmnParse bpmnParse, SubProcess subProcess) {
+        if (bpmnParse.getCurrentProcess() != null && processKeys.contains(bpmnParse.getCurrentProcess().getId())) {
+            subProcess.setAsynchronous(true);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ch503j.workflow.engine;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 有界的虚拟线程作业执行器
+ * <p>
+ * 虚拟线程执行器本身不限制并发，这里用两个信号量补上与平台线程池相同的边界：
+ * 同时执行的作业不超过 poolSize，已接收未执行的作业不超过 queueCapacity（在各自的虚拟线程里等待执行许可）；
+ * 两者都满时拒绝，作业退回给 Flowable，等待下一轮获取
+ */
+public class BoundedVirtualThreadExecutor implements TaskExecutor {
+
+    private final ExecutorService delegate;
+
+    private final TaskDecorator taskDecorator;
+
+    private final int poolSize;
+
+    private final int capacity;
+
+    /**
+     * 已接收（执行中 + 等待中）的作业许可
+     */
+    private final Semaphore accepted;
+
+    /**
+     * 执行许可
+     */
+    private final Semaphore running;
+
+    public BoundedVirtualThreadExecutor(ExecutorService delegate, TaskDecorator taskDecorator, int poolSize, int queueCapacity) {
+        this.delegate = delegate;
+        this.taskDecorator = taskDecorator;
+        this.poolSize = Math.max(1, poolSize);
+        this.capacity = this.poolSize + Math.max(0, queueCapacity);
+        this.accepted = new Semaphore(capacity);
+        this.running = new Semaphore(this.poolSize);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!accepted.tryAcquire()) {
+            throw new TaskRejectedException("异步作业已达上限：" + capacity);
+        }
+        Runnable decorated = taskDecorator.decorate(task);
+        try {
+            delegate.execute(() -> {
+                try {
+                    running.acquireUninterruptibly();
+                    try {
+                        decorated.run();
+                    } finally {
+                        running.release();
+                    }
+                } finally {
+                    accepted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            accepted.release();
+            throw new TaskRejectedException("虚拟线程执行器已关闭", e);
+        }
+    }
+
+    /**
+     * 已接收但还在等待执行许可的作业数
+     */
+    public int getQueueDepth() {
+        int acceptedCount = capacity - accepted.availablePermits();
+        int runningCount = poolSize - running.availablePermits();
+        return Math.max(0, acceptedCount - runningCount);
+    }
+}
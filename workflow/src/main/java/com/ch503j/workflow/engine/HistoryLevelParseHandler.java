@@ -0,0 +1,50 @@
+package com.ch503j.workflow.engine;
+
+import org.flowable.bpmn.model.BaseElement;
+import org.flowable.bpmn.model.ExtensionElement;
+import org.flowable.bpmn.model.Process;
+import org.flowable.engine.impl.bpmn.parser.BpmnParse;
+import org.flowable.engine.impl.bpmn.parser.handler.AbstractBpmnParseHandler;
+
+import java.util.Map;
+
+/**
+ * 在解析流程定义时按配置写入 flowable:historyLevel 扩展元素，实现按流程定义覆盖历史级别
+ * <p>
+ * 需要引擎开启 enableProcessDefinitionHistoryLevel；流程图中已显式声明 historyLevel 的以流程图为准
+ */
+public class HistoryLevelParseHandler extends AbstractBpmnParseHandler<Process> {
+
+    private static final String HISTORY_LEVEL = "historyLevel";
+
+    private static final String FLOWABLE_NAMESPACE = "http://flowable.org/bpmn";
+
+    /**
+     * 流程定义 key -> 历史级别
+     */
+    private final Map<String, String> levels;
+
+    public HistoryLevelParseHandler(Map<String, String> levels) {
+        this.levels = levels;
+    }
+
+    @Override
+    protected Class<? extends BaseElement> getHandledType() {
+        return Process.class;
+    }
+
+    @Override
+    protected void executeParse(BpmnParse bpmnParse, Process process) {
+        String level = levels.get(process.getId());
+        if (level == null || process.getExtensionElements().containsKey(HISTORY_LEVEL)) {
+            return;
+        }
+
+        ExtensionElement historyLevel = new ExtensionElement();
+        historyLevel.setName(HISTORY_LEVEL);
+        historyLevel.setNamespace(FLOWABLE_NAMESPACE);
+        historyLevel.setNamespacePrefix("flowable");
+        historyLevel.setElementText(level);
+        process.addExtensionElement(historyLevel);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ch503j.workflow.job;
+
+import com.ch503j.workflow.config.WorkflowHistoryProperties;
+import com.ch503j.workflow.pojo.vo.HistoryVO;
+import com.ch503j.workflow.service.support.HistoryArchiveStore;
+import com.ch503j.workflow.service.support.HistoryTimelineReader;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.history.HistoricProcessInstance;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程历史归档任务
+ * <p>
+ * 定期把结束超过 retentionDays 天的流程实例历史从 ACT_HI_* 表迁移到归档表：
+ * 读取完整时间线 -> 压缩写入归档表 -> 删除历史流程实例（同一事务），
+ * 查询历史时若历史表中已不存在会自动读取归档。
+ * 归档记录超过 purgeAfterDays 天（按流程结束时间）后分批删除。
+ */
+@Slf4j
+@Component
+public class HistoryArchiveJob {
+
+    @Resource
+    private HistoryService historyService;
+
+    @Resource
+    private HistoryTimelineReader historyTimelineReader;
+
+    @Resource
+    private HistoryArchiveStore historyArchiveStore;
+
+    @Resource
+    private WorkflowHistoryProperties historyProperties;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Scheduled(initialDelayString = "${workflow.history.archive.initial-delay-ms:60000}",
+            fixedDelayString = "${workflow.history.archive.interval-ms:3600000}")
+    public void archive() {
+        WorkflowHistoryProperties.Archive config = historyProperties.getArchive();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getRetentionDays()));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long start = System.currentTimeMillis();
+        int archived = 0;
+        int failed = 0;
+
+        for (String processKey : config.getProcessKeys()) {
+            // 归档成功的实例会从历史表删除，因此始终从头读取；失败的实例跳过
+            int skip = 0;
+            for (int batch = 0; batch < config.getMaxBatchesPerRun(); batch++) {
+                List<HistoricProcessInstance> instances = historyService.createHistoricProcessInstanceQuery()
+                        .processDefinitionKey(processKey)
+                        .finished()
+                        .finishedBefore(cutoff)
+                        .orderByProcessInstanceEndTime().asc()
+                        .listPage(skip, config.getBatchSize());
+                if (instances.isEmpty()) {
+                    break;
+                }
+
+                for (HistoricProcessInstance instance : instances) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> archiveOne(instance));
+                        archived++;
+                    } catch (Exception e) {
+                        skip++;
+                        failed++;
+                        log.warn("流程历史归档失败，processInstanceId={}", instance.getId(), e);
+                    }
+                }
+            }
+        }
+
+        int purged = purge(config);
+
+        if (archived > 0 || failed > 0 || purged > 0) {
+            log.info("流程历史归档完成：归档 {} 个，失败 {} 个，删除过期归档 {} 个，耗时 {} ms",
+                    archived, failed, purged, System.currentTimeMillis() - start);
+        }
+    }
+
+    private int purge(WorkflowHistoryProperties.Archive config) {
+        if (config.getPurgeAfterDays() <= 0) {
+            return 0;
+        }
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getPurgeAfterDays()));
+        int purged = 0;
+        for (int batch = 0; batch < config.getMaxBatchesPerRun(); batch++) {
+            int deleted = historyArchiveStore.purge(before, config.getBatchSize());
+            purged += deleted;
+            if (deleted < config.getBatchSize()) {
+                break;
+            }
+        }
+        return purged;
+    }
+
+    private void archiveOne(HistoricProcessInstance instance) {
+        List<HistoryVO> timeline = historyTimelineReader.readAll(instance.getId());
+        historyArchiveStore.save(instance.getId(),
+                instance.getProcessDefinitionId(),
+                instance.getBusinessKey(),
+                instance.getEndTime(),
+                timeline);
+        historyService.deleteHistoricProcessInstance(instance.getId());
+    }
+}
@@ -0,0 +1,105 @@
+package com.ch503j.workflow.job;
+
+import com.ch503j.workflow.pojo.vo.TerminateJobVO;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量终止流程实例任务的运行状态（多线程共享）
+ */
+public class TerminateJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String FAILED = "FAILED";
+
+    /**
+     * 失败明细最多保留条数
+     */
+    private static final int MAX_FAILURES = 100;
+
+    @Getter
+    private final String jobId;
+
+    @Getter
+    private final String reason;
+
+    private final long total;
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final List<String> failures = new ArrayList<>();
+
+    private volatile String status = RUNNING;
+
+    private volatile boolean cancelRequested;
+
+    private volatile long endMillis;
+
+    public TerminateJob(String jobId, String reason, long total) {
+        this.jobId = jobId;
+        this.reason = reason;
+        this.total = total;
+    }
+
+    public void recordDeleted() {
+        deleted.incrementAndGet();
+    }
+
+    public void recordFailure(String processInstanceId, String message) {
+        failed.incrementAndGet();
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES) {
+                failures.add(processInstanceId + ": " + message);
+            }
+        }
+    }
+
+    public void requestCancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public boolean isRunning() {
+        return RUNNING.equals(status);
+    }
+
+    public void finish(String finalStatus) {
+        this.endMillis = System.currentTimeMillis();
+        this.status = finalStatus;
+    }
+
+    public TerminateJobVO toVO() {
+        long end = endMillis > 0 ? endMillis : System.currentTimeMillis();
+        long elapsed = Math.max(end - startMillis, 1);
+        long deletedCount = deleted.get();
+
+        TerminateJobVO vo = new TerminateJobVO();
+        vo.setJobId(jobId);
+        vo.setStatus(status);
+        vo.setReason(reason);
+        vo.setTotal(total);
+        vo.setDeleted(deletedCount);
+        vo.setFailed(failed.get());
+        synchronized (failures) {
+            vo.setFailures(new ArrayList<>(failures));
+        }
+        vo.setElapsedMillis(elapsed);
+        vo.setThroughputPerSecond(deletedCount * 1000D / elapsed);
+        vo.setStartTime(new Date(startMillis));
+        vo.setEndTime(endMillis > 0 ? new Date(endMillis) : null);
+        return vo;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ch503j.workflow.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量提交任务时单个任务的处理结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCompleteResultVO {
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 是否提交成功
+     */
+    private Boolean success;
+
+    /**
+     * 提交结果或失败原因
+     */
+    private String message;
+
+    public static BatchCompleteResultVO success(String taskId, String message) {
+        return new BatchCompleteResultVO(taskId, true, message);
+    }
+
+    public static BatchCompleteResultVO fail(String taskId, String message) {
+        return new BatchCompleteResultVO(taskId, false, message);
+    }
+}
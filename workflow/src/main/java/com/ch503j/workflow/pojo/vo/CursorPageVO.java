@@ -0,0 +1,33 @@
+package com.ch503j.workflow.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ * <p>
+ * 下一页请求时将 nextCursor 原样传回即可，hasMore 为 false 时表示已经到底
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageVO<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 下一页游标（没有更多数据时为 null）
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+}
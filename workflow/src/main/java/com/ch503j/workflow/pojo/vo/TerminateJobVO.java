@@ -0,0 +1,62 @@
+package com.ch503j.workflow.pojo.vo;
+
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 批量终止流程实例任务的进度
+ */
+@Data
+public class TerminateJobVO {
+
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 任务状态：RUNNING / COMPLETED / CANCELLED / FAILED
+     */
+    private String status;
+
+    /**
+     * 终止原因
+     */
+    private String reason;
+
+    /**
+     * 任务开始时运行中的流程实例数（估算值，执行期间可能有新实例启动）
+     */
+    private Long total;
+
+    /**
+     * 已终止数量
+     */
+    private Long deleted;
+
+    /**
+     * 终止失败数量
+     */
+    private Long failed;
+
+    /**
+     * 失败明细（最多保留前 100 条，格式：实例ID: 原因）
+     */
+    private List<String> failures;
+
+    /**
+     * 每秒终止实例数
+     */
+    private Double throughputPerSecond;
+
+    /**
+     * 已耗时（毫秒）
+     */
+    private Long elapsedMillis;
+
+    private Date startTime;
+
+    private Date endTime;
+}
@@ -1,11 +1,29 @@
 package com.ch503j.workflow.service;
 
+import com.ch503j.workflow.pojo.vo.TerminateJobVO;
+
 import java.util.List;
 import java.util.Map;
 
 public interface ProcessService {
 
-    List<Map<String, String>> terminateAllProcesses(String reason);
+    /**
+     * 启动后台任务终止所有运行中的流程实例
+     *
+     * @param reason 终止原因
+     * @return 任务初始状态（含 jobId）
+     */
+    TerminateJobVO terminateAllProcesses(String reason);
+
+    /**
+     * 查询批量终止任务进度
+     */
+    TerminateJobVO getTerminateJob(String jobId);
+
+    /**
+     * 取消批量终止任务（已终止的实例不会恢复）
+     */
+    TerminateJobVO cancelTerminateJob(String jobId);
 
     List<String> getRunningProcessInstances();
 
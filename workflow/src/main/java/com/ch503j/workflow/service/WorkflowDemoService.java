@@ -1,6 +1,9 @@
 package com.ch503j.workflow.service;
 
 import com.ch503j.workflow.pojo.dto.TaskDto;
+import com.ch503j.workflow.pojo.dto.WorkflowRequestDto;
+import com.ch503j.workflow.pojo.vo.BatchCompleteResultVO;
+import com.ch503j.workflow.pojo.vo.CursorPageVO;
 import com.ch503j.workflow.pojo.vo.HistoryVO;
 
 import java.util.List;
@@ -10,11 +13,39 @@ public interface WorkflowDemoService {
 
     String startProcess(String processKey, String businessKey, String startUserId);
 
-    List<TaskDto> getCandidateTasks(String userId);
+    List<TaskDto> getCandidateTasks(String userId, Integer pageNum, Integer pageSize);
+
+    /**
+     * 游标分页查询待办任务，按 (创建时间, 任务ID) 升序
+     *
+     * @param userId   用户ID
+     * @param cursor   上一页返回的 nextCursor，首页传空
+     * @param pageSize 每页条数
+     * @return 当前页任务及下一页游标
+     */
+    CursorPageVO<TaskDto> getCandidateTasksByCursor(String userId, String cursor, Integer pageSize);
 
     String delegateTask(String taskId, String ownerId, String delegateToUserId);
 
     String completeTask(String taskId, String userId, Map<String, Object> variables, String nextAssignee, Boolean approve, String comment);
 
+    /**
+     * 批量提交任务，每个任务在独立事务中提交，返回逐个任务的结果
+     *
+     * @param requests 提交参数（taskId、userId 必传，其余同单个提交）
+     * @return 每个任务的提交结果，顺序与入参一致
+     */
+    List<BatchCompleteResultVO> batchCompleteTasks(List<WorkflowRequestDto> requests);
+
     List<HistoryVO> getProcessHistory(String processInstanceId);
+
+    /**
+     * 分页查询流程历史时间线（活动、任务、批注按时间归并）
+     *
+     * @param processInstanceId 流程实例ID
+     * @param cursor            上一页返回的 nextCursor，首页传空
+     * @param pageSize          每页条数
+     * @return 当前页时间线及下一页游标
+     */
+    CursorPageVO<HistoryVO> getProcessHistoryPage(String processInstanceId, String cursor, Integer pageSize);
 }
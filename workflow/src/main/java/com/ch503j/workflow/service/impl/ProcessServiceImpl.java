@@ -1,48 +1,191 @@
 package com.ch503j.workflow.service.impl;
 
 import com.ch503j.common.exception.BusinessException;
+import com.ch503j.workflow.cache.CompletedHistoryCache;
+import com.ch503j.workflow.cache.ProcessDefinitionMetadataCache;
+import com.ch503j.workflow.job.TerminateJob;
+import com.ch503j.workflow.pojo.vo.TerminateJobVO;
 import com.ch503j.workflow.service.ProcessService;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.flowable.engine.RepositoryService;
 import org.flowable.engine.RuntimeService;
 import org.flowable.engine.repository.ProcessDefinition;
 import org.flowable.engine.runtime.ProcessInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
 public class ProcessServiceImpl implements ProcessService {
 
+    /**
+     * 按ID升序分页读取顶层流程实例（子流程实例会随父实例一起删除）
+     */
+    private static final String ROOT_INSTANCE_PAGE_SQL = "SELECT RES.* FROM ACT_RU_EXECUTION RES"
+            + " WHERE RES.PARENT_ID_ IS NULL AND RES.SUPER_EXEC_ IS NULL AND RES.ID_ > #{lastId}"
+            + " ORDER BY RES.ID_ ASC";
+
+    /**
+     * 保留的历史批量终止任务数
+     */
+    private static final int MAX_REMEMBERED_JOBS = 20;
+
+    /**
+     * 每页读取的流程实例数
+     */
+    @Value("${workflow.terminate.page-size:500}")
+    private int terminatePageSize;
+
+    /**
+     * 每个并行块包含的流程实例数
+     */
+    @Value("${workflow.terminate.chunk-size:50}")
+    private int terminateChunkSize;
+
     @Resource
     private RuntimeService runtimeService;
 
     @Resource
     private RepositoryService repositoryService;
 
+    @Resource
+    private ProcessDefinitionMetadataCache metadataCache;
+
+    @Resource
+    private CompletedHistoryCache completedHistoryCache;
+
+    @Resource(name = "terminateCoordinatorExecutor")
+    private ThreadPoolTaskExecutor terminateCoordinatorExecutor;
+
+    @Resource(name = "terminateWorkerExecutor")
+    private ThreadPoolTaskExecutor terminateWorkerExecutor;
+
+    /**
+     * jobId -> 批量终止任务（按创建顺序）
+     */
+    private final Map<String, TerminateJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * 当前（或最近一次）批量终止任务
+     */
+    private final AtomicReference<TerminateJob> currentJob = new AtomicReference<>();
+
     @Override
-    public List<Map<String, String>> terminateAllProcesses(String reason) {
+    public synchronized TerminateJobVO terminateAllProcesses(String reason) {
+        TerminateJob running = currentJob.get();
+        if (running != null && running.isRunning()) {
+            throw new BusinessException("已有批量终止任务在执行，jobId=" + running.getJobId());
+        }
 
-        List<ProcessInstance> runningInstances = runtimeService.createProcessInstanceQuery().list();
-        if (runningInstances.isEmpty()) {
+        // 只统计顶层实例，与 ROOT_INSTANCE_PAGE_SQL 实际删除的行一致（子流程实例随父实例删除）
+        long total = runtimeService.createProcessInstanceQuery().excludeSubprocesses(true).count();
+        if (total == 0) {
             throw new BusinessException("没有正在运行的流程实例");
         }
 
         String terminationReason = (reason != null && !reason.isEmpty()) ? reason : "系统管理员终止";
-        List<Map<String, String>> terminatedInfo = runningInstances.stream()
-                .map(pi -> {
-                    // 先记录信息
-                    Map<String, String> info = Map.of(
-                            "id", pi.getId()
-                    );
-                    // 删除实例
-                    runtimeService.deleteProcessInstance(pi.getId(), terminationReason);
-                    return info;
-                }).toList();
-
-        return terminatedInfo;
+        TerminateJob job = new TerminateJob(UUID.randomUUID().toString(), terminationReason, total);
+        // 先提交再登记：上一个任务已 finish 但调度线程尚未归还时会被拒绝，此时不能留下一个永远 RUNNING 的任务
+        try {
+            terminateCoordinatorExecutor.execute(() -> runTerminateJob(job));
+        } catch (TaskRejectedException e) {
+            throw new BusinessException("上一个批量终止任务正在收尾，请稍后重试");
+        }
+        rememberJob(job);
+        currentJob.set(job);
+        return job.toVO();
+    }
+
+    @Override
+    public TerminateJobVO getTerminateJob(String jobId) {
+        return findJob(jobId).toVO();
+    }
+
+    @Override
+    public TerminateJobVO cancelTerminateJob(String jobId) {
+        TerminateJob job = findJob(jobId);
+        job.requestCancel();
+        return job.toVO();
+    }
+
+    /**
+     * 执行批量终止：按实例ID keyset 分页读取，每页拆成若干块并行删除，整页完成后再读下一页
+     */
+    private void runTerminateJob(TerminateJob job) {
+        String lastId = "";
+        try {
+            while (!job.isCancelRequested()) {
+                List<ProcessInstance> page = runtimeService.createNativeProcessInstanceQuery()
+                        .sql(ROOT_INSTANCE_PAGE_SQL)
+                        .parameter("lastId", lastId)
+                        .listPage(0, terminatePageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+
+                List<String> ids = page.stream().map(ProcessInstance::getId).toList();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int from = 0; from < ids.size(); from += terminateChunkSize) {
+                    List<String> chunk = ids.subList(from, Math.min(from + terminateChunkSize, ids.size()));
+                    futures.add(terminateWorkerExecutor.submit(() -> deleteChunk(job, chunk)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            job.finish(job.isCancelRequested() ? TerminateJob.CANCELLED : TerminateJob.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish(TerminateJob.CANCELLED);
+        } catch (Exception e) {
+            log.error("批量终止流程实例任务异常，jobId={}", job.getJobId(), e);
+            job.finish(TerminateJob.FAILED);
+        }
+        log.info("批量终止流程实例任务结束：{}", job.toVO());
+    }
+
+    private void deleteChunk(TerminateJob job, List<String> processInstanceIds) {
+        for (String id : processInstanceIds) {
+            if (job.isCancelRequested()) {
+                return;
+            }
+            try {
+                runtimeService.deleteProcessInstance(id, job.getReason());
+                job.recordDeleted();
+            } catch (Exception e) {
+                job.recordFailure(id, e.getMessage());
+            }
+        }
+    }
+
+    private TerminateJob findJob(String jobId) {
+        TerminateJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException("批量终止任务不存在，jobId=" + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * 只保留最近若干个任务的状态，避免无限增长
+     */
+    private void rememberJob(TerminateJob job) {
+        synchronized (jobs) {
+            if (jobs.size() >= MAX_REMEMBERED_JOBS) {
+                Iterator<String> it = jobs.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+            jobs.put(job.getJobId(), job);
+        }
     }
 
     @Override
@@ -92,7 +235,9 @@ public class ProcessServiceImpl implements ProcessService {
             return "未找到 processId=" + processId + " 的流程定义";
         }
 
+        completedHistoryCache.evictProcessDefinitions(processDefinitions.stream().map(ProcessDefinition::getId).toList());
         for (ProcessDefinition pd : processDefinitions) {
+            metadataCache.evictDeployment(pd.getDeploymentId());
             repositoryService.deleteDeployment(pd.getDeploymentId(), true); // true 表示级联删除，包含流程实例
         }
 
@@ -1,28 +1,83 @@
 package com.ch503j.workflow.service.impl;
 
 import com.ch503j.common.exception.BusinessException;
+import com.ch503j.workflow.cache.CandidateTaskIndex;
+import com.ch503j.workflow.cache.CompletedHistoryCache;
+import com.ch503j.workflow.cache.ProcessDefinitionMetadataCache;
+import com.ch503j.workflow.cache.ProcessDefinitionMetadataCache.TaskMetadata;
 import com.ch503j.workflow.pojo.dto.TaskDto;
+import com.ch503j.workflow.pojo.dto.WorkflowRequestDto;
+import com.ch503j.workflow.pojo.vo.BatchCompleteResultVO;
+import com.ch503j.workflow.pojo.vo.CursorPageVO;
 import com.ch503j.workflow.pojo.vo.HistoryVO;
 import com.ch503j.workflow.service.WorkflowDemoService;
+import com.ch503j.workflow.service.support.HistoryTimelineReader;
+import com.ch503j.workflow.service.support.TaskDtoAssembler;
 import jakarta.annotation.Resource;
-import org.flowable.bpmn.model.BpmnModel;
-import org.flowable.bpmn.model.FlowElement;
-import org.flowable.bpmn.model.UserTask;
+import lombok.extern.slf4j.Slf4j;
 import org.flowable.engine.*;
-import org.flowable.engine.history.HistoricActivityInstance;
 import org.flowable.engine.runtime.ProcessInstance;
-import org.flowable.engine.task.Comment;
 import org.flowable.task.api.DelegationState;
+import org.flowable.task.api.NativeTaskQuery;
 import org.flowable.task.api.Task;
-import org.flowable.task.api.history.HistoricTaskInstance;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class WorkflowDemoServiceImpl implements WorkflowDemoService {
 
+    /**
+     * 待办列表默认每页条数
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * 待办列表单页最大条数，防止一次性拉取过多任务
+     */
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * 下一节点经办人变量名（对应流程图中的 ${assigneeUserId}）
+     */
+    private static final String ASSIGNEE_VARIABLE = "assigneeUserId";
+
+    /**
+     * 批量提交单次最多任务数
+     */
+    @Value("${workflow.batch-complete.max-size:100}")
+    private int batchMaxSize;
+
+    /**
+     * 批量提交时单个任务事务超时时间（秒）
+     */
+    @Value("${workflow.batch-complete.item-timeout-seconds:30}")
+    private int batchItemTimeoutSeconds;
+
+    /**
+     * 待办任务游标查询（已分配给我 或 我/我所在组为候选人），按 (创建时间, 任务ID) 升序
+     * Flowable 的 TaskQuery 无法表达 (createTime, id) 的复合比较，这里走原生 SQL 做 keyset 分页
+     */
+    private static final String CANDIDATE_TASK_SQL = "SELECT RES.* FROM ACT_RU_TASK RES"
+            + " WHERE (RES.ASSIGNEE_ = #{userId}"
+            + " OR (RES.ASSIGNEE_ IS NULL AND EXISTS ("
+            + " SELECT 1 FROM ACT_RU_IDENTITYLINK LINK"
+            + " WHERE LINK.TASK_ID_ = RES.ID_ AND LINK.TYPE_ = 'candidate'"
+            + " AND (LINK.USER_ID_ = #{userId}"
+            + " OR LINK.GROUP_ID_ IN (SELECT MEM.GROUP_ID_ FROM ACT_ID_MEMBERSHIP MEM WHERE MEM.USER_ID_ = #{userId})))))";
+
+    private static final String CANDIDATE_TASK_AFTER_CURSOR = " AND (RES.CREATE_TIME_ > #{afterTime}"
+            + " OR (RES.CREATE_TIME_ = #{afterTime} AND RES.ID_ > #{afterId}))";
+
+    private static final String CANDIDATE_TASK_ORDER = " ORDER BY RES.CREATE_TIME_ ASC, RES.ID_ ASC";
+
     @Resource
     private RuntimeService runtimeService; // 流程运行服务，用于启动流程实例、查询流程状态等
 
@@ -33,10 +88,22 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
     private IdentityService identityService; // 身份服务，用于设置操作用户等
 
     @Resource
-    private HistoryService historyService; // 历史服务，用于查询流程历史数据
+    private PlatformTransactionManager transactionManager;
+
+    @Resource
+    private TaskDtoAssembler taskDtoAssembler;
 
     @Resource
-    private RepositoryService repositoryService;
+    private CandidateTaskIndex candidateTaskIndex;
+
+    @Resource
+    private ProcessDefinitionMetadataCache metadataCache;
+
+    @Resource
+    private HistoryTimelineReader historyTimelineReader;
+
+    @Resource
+    private CompletedHistoryCache completedHistoryCache;
 
 
     @Override
@@ -47,35 +114,89 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
     }
 
     @Override
-    public List<TaskDto> getCandidateTasks(String userId) {
+    public List<TaskDto> getCandidateTasks(String userId, Integer pageNum, Integer pageSize) {
+        int size = normalizePageSize(pageSize);
+        int page = (pageNum == null || pageNum < 1) ? 1 : pageNum;
+
+        // 启用待办索引时直接从内存读取
+        if (candidateTaskIndex.isEnabled()) {
+            List<TaskDto> all = candidateTaskIndex.getTasks(userId);
+            int from = Math.min((page - 1) * size, all.size());
+            int to = Math.min(from + size, all.size());
+            return new ArrayList<>(all.subList(from, to));
+        }
+
         List<Task> tasks = taskService.createTaskQuery()
                 .or()
                 .taskAssignee(userId)        // 已认领的任务（分配给我）
                 .taskCandidateUser(userId)   // 未认领的候选任务
                 .endOr()
                 .orderByTaskCreateTime().asc()
-                .list();
-
-        List<TaskDto> dtoList = tasks.stream().map(t -> {
-            TaskDto dto = new TaskDto();
-            dto.setTaskId(t.getId());
-            dto.setTaskName(t.getName());
-            dto.setAssignee(t.getAssignee());
-            dto.setCreateTime(t.getCreateTime());
-            dto.setProcessInstanceId(t.getProcessInstanceId());
-            dto.setProcessDefinitionId(t.getProcessDefinitionId());
-
-            // 查 businessKey
-            ProcessInstance pi = runtimeService.createProcessInstanceQuery()
-                    .processInstanceId(t.getProcessInstanceId())
-                    .singleResult();
-            if (pi != null) {
-                dto.setBusinessKey(pi.getBusinessKey());
+                .orderByTaskId().asc()       // 创建时间相同时保证分页顺序稳定
+                .listPage((page - 1) * size, size);
+
+        return taskDtoAssembler.toTaskDtoList(tasks);
+    }
+
+    @Override
+    public CursorPageVO<TaskDto> getCandidateTasksByCursor(String userId, String cursor, Integer pageSize) {
+        int size = normalizePageSize(pageSize);
+
+        NativeTaskQuery query = taskService.createNativeTaskQuery()
+                .parameter("userId", userId);
+        if (StringUtils.hasText(cursor)) {
+            TaskCursor after = TaskCursor.decode(cursor);
+            query.sql(CANDIDATE_TASK_SQL + CANDIDATE_TASK_AFTER_CURSOR + CANDIDATE_TASK_ORDER)
+                    .parameter("afterTime", after.createTime())
+                    .parameter("afterId", after.taskId());
+        } else {
+            query.sql(CANDIDATE_TASK_SQL + CANDIDATE_TASK_ORDER);
+        }
+
+        // 多查一条用来判断是否还有下一页
+        List<Task> tasks = query.listPage(0, size + 1);
+        boolean hasMore = tasks.size() > size;
+        if (hasMore) {
+            tasks = tasks.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Task last = tasks.get(tasks.size() - 1);
+            nextCursor = new TaskCursor(last.getCreateTime(), last.getId()).encode();
+        }
+        return new CursorPageVO<>(taskDtoAssembler.toTaskDtoList(tasks), nextCursor, hasMore);
+    }
+
+    /**
+     * 待办任务游标：上一页最后一条任务的 (创建时间, 任务ID)
+     */
+    private record TaskCursor(Date createTime, String taskId) {
+
+        String encode() {
+            String raw = createTime.getTime() + ":" + taskId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TaskCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int idx = raw.indexOf(':');
+                return new TaskCursor(new Date(Long.parseLong(raw.substring(0, idx))), raw.substring(idx + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BusinessException("cursor 参数无效");
             }
-            return dto;
-        }).collect(Collectors.toList());
+        }
+    }
 
-        return dtoList;
+    /**
+     * 规范分页大小，超过上限时按上限处理
+     */
+    private int normalizePageSize(Integer pageSize) {
+        if (pageSize == null || pageSize < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
     }
 
     @Override
@@ -107,6 +228,68 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
         if (task == null) {
             throw new BusinessException("任务不存在或已完成");
         }
+        return doCompleteTask(task, userId, variables, nextAssignee, approve, comment);
+    }
+
+    @Override
+    public List<BatchCompleteResultVO> batchCompleteTasks(List<WorkflowRequestDto> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new BusinessException("批量提交的任务不能为空");
+        }
+        if (requests.size() > batchMaxSize) {
+            throw new BusinessException("单次最多批量提交 " + batchMaxSize + " 个任务");
+        }
+
+        // 1. 一次查询取回本批全部任务，替代逐个 singleResult
+        Set<String> taskIds = requests.stream()
+                .map(WorkflowRequestDto::getTaskId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Task> taskMap = new HashMap<>();
+        if (!taskIds.isEmpty()) {
+            taskService.createTaskQuery()
+                    .taskIds(taskIds)
+                    .list()
+                    .forEach(t -> taskMap.put(t.getId(), t));
+        }
+
+        // 2. 每个任务一个独立事务（带超时），单个失败不影响其它任务
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setTimeout(batchItemTimeoutSeconds);
+
+        List<BatchCompleteResultVO> results = new ArrayList<>(requests.size());
+        for (WorkflowRequestDto request : requests) {
+            String taskId = request.getTaskId();
+            Task task = taskMap.get(taskId);
+            if (task == null) {
+                results.add(BatchCompleteResultVO.fail(taskId, "任务不存在或已完成"));
+                continue;
+            }
+            try {
+                String message = transactionTemplate.execute(status -> doCompleteTask(task,
+                        request.getUserId(),
+                        request.getVariables() == null ? null : new HashMap<>(request.getVariables()),
+                        request.getNextAssignee(),
+                        request.getApprove(),
+                        request.getComment()));
+                results.add(BatchCompleteResultVO.success(taskId, message));
+            } catch (BusinessException e) {
+                results.add(BatchCompleteResultVO.fail(taskId, e.getMessage()));
+            } catch (Exception e) {
+                log.error("批量提交任务失败，taskId={}", taskId, e);
+                results.add(BatchCompleteResultVO.fail(taskId, "提交失败：" + e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 提交单个任务：批注、解除委托、校验审批参数、认领并完成
+     *
+     * @param task 已查询出的任务
+     */
+    private String doCompleteTask(Task task, String userId, Map<String, Object> variables, String nextAssignee, Boolean approve, String comment) {
+        String taskId = task.getId();
 
         // 2. 如果有批注，先加批注
         if (comment != null && !comment.isEmpty()) {
@@ -122,24 +305,18 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
             taskService.saveTask(task);
         }
 
-        // 4. 获取流程模型
-        BpmnModel bpmnModel = repositoryService.getBpmnModel(task.getProcessDefinitionId());
-        FlowElement flowElement = bpmnModel.getMainProcess().getFlowElement(task.getTaskDefinitionKey());
+        // 4. 读取节点元数据（部署时解析好，不再每次遍历流程模型）
+        TaskMetadata metadata = metadataCache.getTaskMetadata(task.getProcessDefinitionId(), task.getTaskDefinitionKey());
 
         // 5. 审核任务逻辑
-        if (flowElement instanceof UserTask) {
-            UserTask userTask = (UserTask) flowElement;
-            String isApproveTask = userTask.getAttributeValue("http://flowable.org/bpmn", "isApproveTask");
-
-            if ("true".equalsIgnoreCase(isApproveTask)) {
-                if (approve == null) {
-                    throw new BusinessException("审批任务必须提供 approve 参数");
-                }
-                if (variables == null) {
-                    variables = new HashMap<>();
-                }
-                variables.put("approve", approve);
+        if (metadata.approveTask()) {
+            if (approve == null) {
+                throw new BusinessException("审批任务必须提供 approve 参数");
+            }
+            if (variables == null) {
+                variables = new HashMap<>();
             }
+            variables.put("approve", approve);
         }
 
         // 6. 指定下一节点 assignee
@@ -147,7 +324,7 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
             if (variables == null) {
                 variables = new HashMap<>();
             }
-            variables.put("assigneeUserId", nextAssignee);
+            variables.put(ASSIGNEE_VARIABLE, nextAssignee);
         }
 
         // 7. 认领任务
@@ -164,76 +341,22 @@ public class WorkflowDemoServiceImpl implements WorkflowDemoService {
 
     @Override
     public List<HistoryVO> getProcessHistory(String processInstanceId) {
-        List<HistoryVO> dtoList = new ArrayList<>();
-
-        // === 活动历史（节点执行） ===
-        List<HistoricActivityInstance> activityList = historyService
-                .createHistoricActivityInstanceQuery()
-                .processInstanceId(processInstanceId)
-                .orderByHistoricActivityInstanceStartTime().asc()
-                .list();
-
-        for (HistoricActivityInstance h : activityList) {
-            HistoryVO dto = new HistoryVO();
-            dto.setActivityId(h.getActivityId());
-            dto.setActivityName(h.getActivityName());
-            dto.setActivityType(h.getActivityType());
-            dto.setAssignee(h.getAssignee());
-            dto.setStartTime(h.getStartTime());
-            dto.setEndTime(h.getEndTime());
-            dto.setActionType("activity");
-            dto.setTaskId(h.getTaskId());
-            dto.setExecutionId(h.getExecutionId());
-            dto.setProcessDefinitionId(h.getProcessDefinitionId());
-            dtoList.add(dto);
-        }
-
-        // === 任务历史（任务维度，能看到转办/完成等） ===
-        List<HistoricTaskInstance> taskList = historyService
-                .createHistoricTaskInstanceQuery()
-                .processInstanceId(processInstanceId)
-                .orderByHistoricTaskInstanceStartTime().asc()
-                .list();
-
-        for (HistoricTaskInstance t : taskList) {
-            HistoryVO dto = new HistoryVO();
-            dto.setActivityId(t.getTaskDefinitionKey());
-            dto.setActivityName(t.getName());
-            dto.setActivityType("userTask");
-            dto.setAssignee(t.getAssignee());
-            dto.setStartTime(t.getStartTime());
-            dto.setEndTime(t.getEndTime());
-            dto.setActionType("task");
-            dto.setTaskId(t.getId());
-            dto.setExecutionId(t.getExecutionId());
-            dto.setProcessDefinitionId(t.getProcessDefinitionId());
-            dto.setOwner(t.getOwner());
-            dtoList.add(dto);
-        }
-
-        // === 批注历史（转办/委派/审批意见等） ===
-        List<Comment> commentList = taskService.getProcessInstanceComments(processInstanceId);
-        for (Comment c : commentList) {
-            HistoryVO dto = new HistoryVO();
-            dto.setActivityId(c.getTaskId());
-            dto.setActivityName("批注");
-            dto.setActivityType("comment");
-            dto.setAssignee(c.getUserId());
-            dto.setStartTime(c.getTime());
-            dto.setEndTime(null);
-            dto.setActionType("comment");
-            dto.setTaskId(c.getTaskId());
-            dto.setExecutionId(null); // 批注没有 executionId
-            dto.setProcessDefinitionId(null);
-            dto.setComment(c.getFullMessage());
-            dtoList.add(dto);
-        }
-
-        // === 统一排序（按时间线） ===
-        dtoList.sort(Comparator.comparing(
-                HistoryVO::getStartTime,
-                Comparator.nullsLast(Comparator.naturalOrder())
-        ));
-        return dtoList;
+        // 已结束的流程优先读缓存
+        List<HistoryVO> cached = completedHistoryCache.getOrLoad(processInstanceId);
+        if (cached != null) {
+            return cached;
+        }
+        return historyTimelineReader.readAll(processInstanceId);
+    }
+
+    @Override
+    public CursorPageVO<HistoryVO> getProcessHistoryPage(String processInstanceId, String cursor, Integer pageSize) {
+        int size = normalizePageSize(pageSize);
+        // 缓存命中（或已归档）时从缓存截取，否则按游标分页查询历史表，不读取完整时间线
+        CursorPageVO<HistoryVO> cached = completedHistoryCache.getPage(processInstanceId, cursor, size);
+        if (cached != null) {
+            return cached;
+        }
+        return historyTimelineReader.readPage(processInstanceId, cursor, size);
     }
 }
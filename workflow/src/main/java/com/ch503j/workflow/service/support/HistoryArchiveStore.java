@@ -0,0 +1,177 @@
+package com.ch503j.workflow.service.support;
+
+import com.ch503j.workflow.config.WorkflowHistoryProperties;
+import com.ch503j.workflow.pojo.vo.HistoryVO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流程历史归档存储
+ * <p>
+ * 已归档流程实例的完整时间线以 gzip 压缩的 JSON 存放在 WF_HISTORY_ARCHIVE 表中，每个实例一行。
+ * 读取只取决于归档表是否存在，与是否开启归档无关：关闭归档后已归档的时间线仍然可以查看。
+ */
+@Component
+public class HistoryArchiveStore {
+
+    private static final TypeReference<List<HistoryVO>> TIMELINE_TYPE = new TypeReference<>() {
+    };
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS WF_HISTORY_ARCHIVE ("
+            + " PROC_INST_ID_ VARCHAR(64) NOT NULL,"
+            + " PROC_DEF_ID_ VARCHAR(64) DEFAULT NULL,"
+            + " BUSINESS_KEY_ VARCHAR(255) DEFAULT NULL,"
+            + " END_TIME_ DATETIME(3) DEFAULT NULL,"
+            + " EVENT_COUNT_ INT NOT NULL,"
+            + " PAYLOAD_ LONGBLOB NOT NULL,"
+            + " ARCHIVE_TIME_ DATETIME(3) NOT NULL,"
+            + " PRIMARY KEY (PROC_INST_ID_),"
+            + " KEY IDX_WF_ARCHIVE_END_TIME (END_TIME_)"
+            + ") ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '流程历史归档'";
+
+    private static final String INSERT_SQL = "INSERT INTO WF_HISTORY_ARCHIVE"
+            + " (PROC_INST_ID_, PROC_DEF_ID_, BUSINESS_KEY_, END_TIME_, EVENT_COUNT_, PAYLOAD_, ARCHIVE_TIME_)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE EVENT_COUNT_ = VALUES(EVENT_COUNT_), PAYLOAD_ = VALUES(PAYLOAD_), ARCHIVE_TIME_ = VALUES(ARCHIVE_TIME_)";
+
+    private static final String SELECT_SQL = "SELECT PROC_DEF_ID_, PAYLOAD_ FROM WF_HISTORY_ARCHIVE WHERE PROC_INST_ID_ = ?";
+
+    private static final String TABLE_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.TABLES"
+            + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'WF_HISTORY_ARCHIVE'";
+
+    private static final String PURGE_SQL = "DELETE FROM WF_HISTORY_ARCHIVE WHERE END_TIME_ < ? LIMIT ?";
+
+    /**
+     * 归档表不存在时，间隔多久再检查一次（其它节点开启归档后可能建表）
+     */
+    private static final long TABLE_CHECK_INTERVAL_MILLIS = 60_000;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private WorkflowHistoryProperties historyProperties;
+
+    /**
+     * 归档表是否存在（开启归档时自动建表）
+     */
+    private volatile boolean tableReady;
+
+    /**
+     * 上次确认归档表不存在的时间
+     */
+    private volatile long tableCheckedAt;
+
+    @PostConstruct
+    public void init() {
+        if (historyProperties.getArchive().isEnabled()) {
+            jdbcTemplate.execute(CREATE_TABLE_SQL);
+            tableReady = true;
+        } else {
+            checkTable();
+        }
+    }
+
+    /**
+     * 写入归档（同一实例重复归档时覆盖）
+     */
+    public void save(String processInstanceId, String processDefinitionId, String businessKey, Date endTime, List<HistoryVO> timeline) {
+        jdbcTemplate.update(INSERT_SQL,
+                processInstanceId,
+                processDefinitionId,
+                businessKey,
+                endTime == null ? null : new Timestamp(endTime.getTime()),
+                timeline.size(),
+                compress(timeline),
+                new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * 读取归档的时间线
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 归档记录，未归档或归档表不存在时返回 null
+     */
+    public ArchivedTimeline load(String processInstanceId) {
+        if (!tableReady && !checkTable()) {
+            return null;
+        }
+        List<ArchivedTimeline> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new ArchivedTimeline(rs.getString("PROC_DEF_ID_"), decompress(rs.getBytes("PAYLOAD_"))),
+                processInstanceId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * 删除流程结束时间早于 before 的归档记录（单次最多 limit 条）
+     *
+     * @return 删除条数
+     */
+    public int purge(Date before, int limit) {
+        if (!tableReady) {
+            return 0;
+        }
+        return jdbcTemplate.update(PURGE_SQL, new Timestamp(before.getTime()), limit);
+    }
+
+    /**
+     * 检查归档表是否存在，不存在时一段时间内不再重复检查
+     */
+    private boolean checkTable() {
+        long now = System.currentTimeMillis();
+        if (now - tableCheckedAt < TABLE_CHECK_INTERVAL_MILLIS) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class);
+        tableReady = count != null && count > 0;
+        if (!tableReady) {
+            tableCheckedAt = now;
+        }
+        return tableReady;
+    }
+
+    private byte[] compress(List<HistoryVO> timeline) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, timeline);
+        } catch (IOException e) {
+            throw new IllegalStateException("历史时间线压缩失败", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private List<HistoryVO> decompress(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, TIMELINE_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException("历史时间线解压失败", e);
+        }
+    }
+
+    /**
+     * 归档记录
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param timeline            完整时间线
+     */
+    public record ArchivedTimeline(String processDefinitionId, List<HistoryVO> timeline) {
+    }
+}
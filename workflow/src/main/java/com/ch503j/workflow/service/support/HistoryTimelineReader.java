@@ -0,0 +1,330 @@
+package com.ch503j.workflow.service.support;
+
+import com.ch503j.common.exception.BusinessException;
+import com.ch503j.workflow.pojo.vo.CursorPageVO;
+import com.ch503j.workflow.pojo.vo.HistoryVO;
+import jakarta.annotation.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * 流程历史时间线分页读取
+ * <p>
+ * 时间线由三个各自按 (时间, 主键) 升序的数据源组成：活动历史、任务历史、批注。
+ * 每页从三个源各读取 pageSize + 1 条，做三路归并后输出 pageSize 条，
+ * 游标中记录三个源各自最后输出的 (时间, 主键)，下一页按 keyset 条件从该位置之后继续读，
+ * 不使用 OFFSET，因此无论翻到第几页，单页都只需要扫描约 3 * pageSize 行。
+ * <p>
+ * 排序与 MySQL 升序一致：时间为空的排在最前（Flowable 表结构中三个时间列均为 NOT NULL，这里只是保证两边规则相同）。
+ */
+@Component
+public class HistoryTimelineReader {
+
+    private static final String ACTIVITY_PAGE_SQL = "SELECT ID_, ACT_ID_, ACT_NAME_, ACT_TYPE_, ASSIGNEE_, START_TIME_, END_TIME_,"
+            + " TASK_ID_, EXECUTION_ID_, PROC_DEF_ID_"
+            + " FROM ACT_HI_ACTINST WHERE PROC_INST_ID_ = ?";
+
+    private static final String TASK_PAGE_SQL = "SELECT ID_, TASK_DEF_KEY_, NAME_, ASSIGNEE_, OWNER_, START_TIME_, END_TIME_,"
+            + " EXECUTION_ID_, PROC_DEF_ID_"
+            + " FROM ACT_HI_TASKINST WHERE PROC_INST_ID_ = ?";
+
+    /**
+     * 批注历史分页查询（Flowable 的批注接口不支持分页，这里直接查询 ACT_HI_COMMENT）
+     */
+    private static final String COMMENT_PAGE_SQL = "SELECT ID_, USER_ID_, TIME_, TASK_ID_, MESSAGE_, FULL_MSG_"
+            + " FROM ACT_HI_COMMENT WHERE PROC_INST_ID_ = ?";
+
+    /**
+     * readAll 逐页读取时的每页条数
+     */
+    private static final int READ_ALL_PAGE_SIZE = 200;
+
+    /**
+     * 时间线排序：按开始时间升序，时间为空的排最前（与 MySQL 升序一致）
+     */
+    private static final Comparator<Date> START_TIME_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 读取一页时间线
+     *
+     * @param processInstanceId 流程实例ID
+     * @param cursor            上一页返回的 nextCursor，首页传空
+     * @param pageSize          每页条数
+     * @return 当前页时间线及下一页游标
+     */
+    public CursorPageVO<HistoryVO> readPage(String processInstanceId, String cursor, int pageSize) {
+        TimelineCursor position = TimelineCursor.decode(cursor);
+
+        // 三个源各多读一条，用于判断是否还有下一页
+        List<Deque<TimelineEvent>> sources = List.of(
+                new ArrayDeque<>(readActivities(processInstanceId, position.sources()[0], pageSize + 1)),
+                new ArrayDeque<>(readTasks(processInstanceId, position.sources()[1], pageSize + 1)),
+                new ArrayDeque<>(readComments(processInstanceId, position.sources()[2], pageSize + 1))
+        );
+        SourcePosition[] next = position.sources().clone();
+
+        List<HistoryVO> records = new ArrayList<>(pageSize);
+        while (records.size() < pageSize) {
+            // 取三个源队首中时间最早的一条；时间相同时按 活动 -> 任务 -> 批注 的顺序
+            int earliest = -1;
+            for (int i = 0; i < sources.size(); i++) {
+                TimelineEvent head = sources.get(i).peekFirst();
+                if (head == null) {
+                    continue;
+                }
+                if (earliest < 0 || START_TIME_ORDER.compare(head.vo().getStartTime(),
+                        sources.get(earliest).peekFirst().vo().getStartTime()) < 0) {
+                    earliest = i;
+                }
+            }
+            if (earliest < 0) {
+                break;
+            }
+            TimelineEvent event = sources.get(earliest).pollFirst();
+            records.add(event.vo());
+            next[earliest] = next[earliest].advance(event.vo().getStartTime(), event.id());
+        }
+
+        boolean hasMore = sources.stream().anyMatch(source -> !source.isEmpty());
+        String nextCursor = hasMore ? new TimelineCursor(next).encode() : null;
+        return new CursorPageVO<>(records, nextCursor, hasMore);
+    }
+
+    /**
+     * 读取完整时间线（逐页归并后拼接）
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 按时间排序的完整时间线
+     */
+    public List<HistoryVO> readAll(String processInstanceId) {
+        List<HistoryVO> timeline = new ArrayList<>();
+        String cursor = null;
+        CursorPageVO<HistoryVO> page;
+        do {
+            page = readPage(processInstanceId, cursor, READ_ALL_PAGE_SIZE);
+            timeline.addAll(page.getRecords());
+            cursor = page.getNextCursor();
+        } while (Boolean.TRUE.equals(page.getHasMore()));
+        return timeline;
+    }
+
+    /**
+     * 从已加载的完整时间线中截取一页，游标格式与 {@link #readPage} 一致，两者可以互相接续
+     *
+     * @param timeline 完整时间线
+     * @param cursor   上一页返回的 nextCursor，首页传空
+     * @param pageSize 每页条数
+     * @return 当前页时间线及下一页游标
+     */
+    public CursorPageVO<HistoryVO> slice(List<HistoryVO> timeline, String cursor, int pageSize) {
+        return slice((from, limit) -> timeline.subList(Math.min(from, timeline.size()),
+                (int) Math.min((long) from + limit, timeline.size())), cursor, pageSize);
+    }
+
+    /**
+     * 从完整时间线中截取一页，只读取当前页（多读一条判断是否还有下一页）
+     *
+     * @param range    按下标读取完整时间线的一段
+     * @param cursor   上一页返回的 nextCursor，首页传空
+     * @param pageSize 每页条数
+     * @return 当前页时间线及下一页游标
+     */
+    public CursorPageVO<HistoryVO> slice(TimelineRange range, String cursor, int pageSize) {
+        TimelineCursor position = TimelineCursor.decode(cursor);
+        SourcePosition[] next = position.sources().clone();
+
+        // 归并顺序是确定的，已读取条数之和即为当前位置
+        int from = (int) Math.min(Integer.MAX_VALUE, (long) next[0].count() + next[1].count() + next[2].count());
+        List<HistoryVO> records = new ArrayList<>(range.read(from, pageSize + 1));
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, pageSize));
+        }
+        for (HistoryVO vo : records) {
+            int source = sourceIndex(vo);
+            // 时间线中只有任务记录带有主键，其它源的游标只记条数，再交给 readPage 时按条数定位
+            next[source] = next[source].advance(vo.getStartTime(), source == 1 ? vo.getTaskId() : null);
+        }
+
+        String nextCursor = hasMore ? new TimelineCursor(next).encode() : null;
+        return new CursorPageVO<>(records, nextCursor, hasMore);
+    }
+
+    private int sourceIndex(HistoryVO vo) {
+        return switch (vo.getActionType()) {
+            case "activity" -> 0;
+            case "task" -> 1;
+            default -> 2;
+        };
+    }
+
+    private List<TimelineEvent> readActivities(String processInstanceId, SourcePosition after, int limit) {
+        return queryPage(ACTIVITY_PAGE_SQL, "START_TIME_", processInstanceId, after, limit, (rs, rowNum) -> {
+            HistoryVO dto = new HistoryVO();
+            dto.setActivityId(rs.getString("ACT_ID_"));
+            dto.setActivityName(rs.getString("ACT_NAME_"));
+            dto.setActivityType(rs.getString("ACT_TYPE_"));
+            dto.setAssignee(rs.getString("ASSIGNEE_"));
+            dto.setStartTime(rs.getTimestamp("START_TIME_"));
+            dto.setEndTime(rs.getTimestamp("END_TIME_"));
+            dto.setActionType("activity");
+            dto.setTaskId(rs.getString("TASK_ID_"));
+            dto.setExecutionId(rs.getString("EXECUTION_ID_"));
+            dto.setProcessDefinitionId(rs.getString("PROC_DEF_ID_"));
+            return new TimelineEvent(rs.getString("ID_"), dto);
+        });
+    }
+
+    private List<TimelineEvent> readTasks(String processInstanceId, SourcePosition after, int limit) {
+        return queryPage(TASK_PAGE_SQL, "START_TIME_", processInstanceId, after, limit, (rs, rowNum) -> {
+            HistoryVO dto = new HistoryVO();
+            dto.setActivityId(rs.getString("TASK_DEF_KEY_"));
+            dto.setActivityName(rs.getString("NAME_"));
+            dto.setActivityType("userTask");
+            dto.setAssignee(rs.getString("ASSIGNEE_"));
+            dto.setStartTime(rs.getTimestamp("START_TIME_"));
+            dto.setEndTime(rs.getTimestamp("END_TIME_"));
+            dto.setActionType("task");
+            dto.setTaskId(rs.getString("ID_"));
+            dto.setExecutionId(rs.getString("EXECUTION_ID_"));
+            dto.setProcessDefinitionId(rs.getString("PROC_DEF_ID_"));
+            dto.setOwner(rs.getString("OWNER_"));
+            return new TimelineEvent(rs.getString("ID_"), dto);
+        });
+    }
+
+    private List<TimelineEvent> readComments(String processInstanceId, SourcePosition after, int limit) {
+        return queryPage(COMMENT_PAGE_SQL, "TIME_", processInstanceId, after, limit, (rs, rowNum) -> {
+            byte[] fullMessage = rs.getBytes("FULL_MSG_");
+
+            HistoryVO dto = new HistoryVO();
+            dto.setActivityId(rs.getString("TASK_ID_"));
+            dto.setActivityName("批注");
+            dto.setActivityType("comment");
+            dto.setAssignee(rs.getString("USER_ID_"));
+            dto.setStartTime(rs.getTimestamp("TIME_"));
+            dto.setEndTime(null);
+            dto.setActionType("comment");
+            dto.setTaskId(rs.getString("TASK_ID_"));
+            dto.setExecutionId(null); // 批注没有 executionId
+            dto.setProcessDefinitionId(null);
+            dto.setComment(fullMessage != null ? new String(fullMessage, StandardCharsets.UTF_8) : rs.getString("MESSAGE_"));
+            return new TimelineEvent(rs.getString("ID_"), dto);
+        });
+    }
+
+    /**
+     * 按 (时间, 主键) 升序读取 after 之后的 limit 条
+     * MySQL 升序中 NULL 排在最前：上一条时间为空时，后面是时间为空且主键更大的行以及所有时间不为空的行；
+     * 上一条时间不为空时，时间为空的行都已读过
+     */
+    private List<TimelineEvent> queryPage(String selectSql, String timeColumn, String processInstanceId,
+                                          SourcePosition after, int limit, RowMapper<TimelineEvent> rowMapper) {
+        StringBuilder sql = new StringBuilder(selectSql);
+        List<Object> args = new ArrayList<>();
+        args.add(processInstanceId);
+        if (after.id() != null) {
+            if (after.time() == null) {
+                sql.append(" AND ((").append(timeColumn).append(" IS NULL AND ID_ > ?) OR ").append(timeColumn).append(" IS NOT NULL)");
+                args.add(after.id());
+            } else {
+                sql.append(" AND (").append(timeColumn).append(" > ? OR (").append(timeColumn).append(" = ? AND ID_ > ?))");
+                Timestamp time = new Timestamp(after.time());
+                args.add(time);
+                args.add(time);
+                args.add(after.id());
+            }
+        }
+        sql.append(" ORDER BY ").append(timeColumn).append(" ASC, ID_ ASC LIMIT ?");
+        args.add(limit);
+        if (after.id() == null && after.count() > 0) {
+            // 由 slice 生成的游标没有主键，只能按条数定位（仅在缓存的时间线与实时读取之间切换时出现）
+            sql.append(" OFFSET ?");
+            args.add(after.count());
+        }
+        return jdbcTemplate.query(sql.toString(), rowMapper, args.toArray());
+    }
+
+    private record TimelineEvent(String id, HistoryVO vo) {
+    }
+
+    /**
+     * 单个数据源的读取位置
+     *
+     * @param count 已输出条数（slice 据此定位）
+     * @param time  最后输出一条的时间（毫秒），为空表示时间为空或尚未输出
+     * @param id    最后输出一条的主键，为空表示尚未输出或来自 slice
+     */
+    private record SourcePosition(int count, Long time, String id) {
+
+        static final SourcePosition START = new SourcePosition(0, null, null);
+
+        SourcePosition advance(Date time, String id) {
+            return new SourcePosition(count + 1, time != null ? time.getTime() : null, id);
+        }
+    }
+
+    /**
+     * 时间线游标：三个数据源各自的读取位置
+     */
+    private record TimelineCursor(SourcePosition[] sources) {
+
+        String encode() {
+            StringJoiner raw = new StringJoiner("\n");
+            for (SourcePosition source : sources) {
+                raw.add(source.count() + ":" + (source.time() != null ? source.time() : "") + ":"
+                        + (source.id() != null ? source.id() : ""));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TimelineCursor decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return new TimelineCursor(new SourcePosition[]{SourcePosition.START, SourcePosition.START, SourcePosition.START});
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+                if (parts.length != 3) {
+                    throw new BusinessException("cursor 参数无效");
+                }
+                SourcePosition[] sources = new SourcePosition[3];
+                for (int i = 0; i < 3; i++) {
+                    // 主键放在最后，按前两个分隔符拆分
+                    String[] fields = parts[i].split(":", 3);
+                    int count = Integer.parseInt(fields[0]);
+                    if (count < 0) {
+                        throw new BusinessException("cursor 参数无效");
+                    }
+                    Long time = fields[1].isEmpty() ? null : Long.parseLong(fields[1]);
+                    String id = fields[2].isEmpty() ? null : fields[2];
+                    sources[i] = new SourcePosition(count, time, id);
+                }
+                return new TimelineCursor(sources);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BusinessException("cursor 参数无效");
+            }
+        }
+    }
+
+    /**
+     * 按下标读取完整时间线的一段
+     */
+    @FunctionalInterface
+    public interface TimelineRange {
+
+        /**
+         * @param from  起始下标
+         * @param limit 最多读取条数
+         * @return [from, from + limit) 范围内的记录，超出末尾时返回实际存在的部分
+         */
+        List<HistoryVO> read(int from, int limit);
+    }
+}
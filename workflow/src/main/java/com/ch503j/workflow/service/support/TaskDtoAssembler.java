@@ -0,0 +1,67 @@
+package com.ch503j.workflow.service.support;
+
+import com.ch503j.workflow.pojo.dto.TaskDto;
+import jakarta.annotation.Resource;
+import org.flowable.engine.RuntimeService;
+import org.flowable.task.api.Task;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Task -> TaskDto 转换
+ * <p>
+ * 待办查询、待办索引等多处都需要把 Flowable 的 Task 转成 TaskDto，统一放在这里，
+ * businessKey 通过一次批量查询补齐
+ */
+@Component
+public class TaskDtoAssembler {
+
+    @Resource
+    private RuntimeService runtimeService;
+
+    /**
+     * 将任务列表转换为 TaskDto
+     */
+    public List<TaskDto> toTaskDtoList(List<? extends Task> tasks) {
+        Map<String, String> businessKeys = resolveBusinessKeys(tasks);
+
+        return tasks.stream().map(t -> {
+            TaskDto dto = new TaskDto();
+            dto.setTaskId(t.getId());
+            dto.setTaskName(t.getName());
+            dto.setAssignee(t.getAssignee());
+            dto.setCreateTime(t.getCreateTime());
+            dto.setProcessInstanceId(t.getProcessInstanceId());
+            dto.setProcessDefinitionId(t.getProcessDefinitionId());
+            dto.setBusinessKey(businessKeys.get(t.getProcessInstanceId()));
+            return dto;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 批量查询流程实例的 businessKey
+     * 同一批任务只发起一次流程实例查询，避免每个任务一次 singleResult
+     *
+     * @param tasks 任务列表
+     * @return processInstanceId -> businessKey
+     */
+    private Map<String, String> resolveBusinessKeys(Collection<? extends Task> tasks) {
+        Set<String> processInstanceIds = tasks.stream()
+                .map(Task::getProcessInstanceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (processInstanceIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // businessKey 允许为空，这里不用 Collectors.toMap
+        Map<String, String> businessKeys = new HashMap<>();
+        runtimeService.createProcessInstanceQuery()
+                .processInstanceIds(processInstanceIds)
+                .list()
+                .forEach(pi -> businessKeys.put(pi.getId(), pi.getBusinessKey()));
+        return businessKeys;
+    }
+}